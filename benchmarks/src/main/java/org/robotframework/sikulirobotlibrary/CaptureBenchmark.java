@@ -0,0 +1,110 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sikuli.script.ScreenImage;
+
+import java.awt.AWTException;
+import java.awt.Rectangle;
+import java.awt.Robot;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/* Screen capture latency and allocation: the memory-mapped Xvfb screen file */
+/* against java.awt.Robot, and one poll of the wait loops on an unchanged    */
+/* screen, which reuses the pixels of the dropped capture. The framebuffer   */
+/* benchmarks read the synthetic screen written as an XWD file, or the live  */
+/* screen file given with -Dxvfb.screen=/tmp/Xvfb_screen0. The robot         */
+/* benchmark needs a display as large as the screen, e.g. Xvfb :1 -screen 0 */
+/* 3840x2160x24 -fbdir /tmp with DISPLAY=:1, and fails its setup without one.*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptureBenchmark {
+
+    @Param({"1080p", "4K"})
+    public String screen;
+
+    private File file;
+    private XvfbScreenSource framebuffer;
+    private FrameCache frames;
+    private TileDiffer differ;
+    private ScreenImage frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        String live = System.getProperty("xvfb.screen");
+        if (live != null) {
+            framebuffer = new XvfbScreenSource(new File(live));
+        } else {
+            file = File.createTempFile("Xvfb_screen", "");
+            SyntheticScreen.of(screen, 0).writeXwd(file);
+            framebuffer = new XvfbScreenSource(file);
+        }
+        frames = new FrameCache(framebuffer);
+        differ = new TileDiffer();
+        frame = frames.refresh();
+        differ.update(frame.getImage(), frame.getROI());
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage xvfbFramebuffer() {
+        return framebuffer.capture();
+    }
+
+    /* What WaitEngine does between the sleeps when nothing changed on the screen */
+    @Benchmark
+    public ScreenImage xvfbUnchangedPoll() {
+        ScreenImage latest = frames.refresh();
+        if (differ.update(latest.getImage(), latest.getROI()).isEmpty()) {
+            frame = frames.unchanged(frame, latest);
+        } else {
+            frame = latest;
+        }
+        return frame;
+    }
+
+    /* The benchmarks run headless, the robot is given the display in a JVM of its own */
+    @State(Scope.Benchmark)
+    public static class Display {
+
+        private Robot robot;
+        private Rectangle bounds;
+
+        @Setup
+        public void setUp(CaptureBenchmark benchmark) throws AWTException {
+            robot = new Robot();
+            SyntheticScreen s = SyntheticScreen.of(benchmark.screen, 0);
+            bounds = s.bounds();
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=false")
+    public BufferedImage robot(Display display) {
+        return display.robot.createScreenCapture(display.bounds);
+    }
+}
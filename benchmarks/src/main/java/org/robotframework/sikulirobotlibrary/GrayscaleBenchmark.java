@@ -0,0 +1,63 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/* Gray scale conversion of a full synthetic screen for the OCR: a new gray */
+/* image drawn by Java 2D as Image.convertImageToGrayscale does, against the */
+/* luma computed into the reused buffer, in one band and in bands of rows on */
+/* all the cores.                                                            */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrayscaleBenchmark {
+
+    @Param({"1080p", "1440p", "4K"})
+    public String screen;
+
+    private BufferedImage image;
+    private Grayscale single;
+    private Grayscale parallel;
+
+    @Setup
+    public void setUp() {
+        image = SyntheticScreen.of(screen, 0).image;
+        single = new Grayscale(1);
+        parallel = new Grayscale(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public BufferedImage drawnImage() {
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics g = gray.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return gray;
+    }
+
+    @Benchmark
+    public BufferedImage pooledLuma() {
+        return single.convert(image);
+    }
+
+    @Benchmark
+    public BufferedImage pooledLumaBands() {
+        return parallel.convert(image);
+    }
+}
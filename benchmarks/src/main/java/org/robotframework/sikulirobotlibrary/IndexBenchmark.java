@@ -0,0 +1,110 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sikuli.script.Finder;
+import org.sikuli.script.Image;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* The work of getScreenLocationByIndex with 10 to 1000 matches: finding all */
+/* the icons of a synthetic screen, and building the reading order index and */
+/* selecting from it. The icons are laid out in rows with jittered y values. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    /* The synthetic screen is only needed by findAll, the index benchmarks run without the Sikuli natives */
+    @State(Scope.Benchmark)
+    public static class Screen {
+
+        @Param({"1080p", "1440p", "4K"})
+        public String screen;
+
+        private ScreenImage frame;
+        private Image template;
+
+        @Setup
+        public void setUp(IndexBenchmark benchmark) {
+            SyntheticScreen s = SyntheticScreen.of(screen, benchmark.matches);
+            frame = new ScreenImage(s.bounds(), s.image);
+            template = new Image(s.icon, "icon");
+        }
+    }
+
+    @Param({"10", "100", "1000"})
+    public int matches;
+
+    private final Object frame = new Object();
+    private List<Rectangle> items;
+    private int[] xs;
+    private int[] ys;
+    private MatchIndex.Selector first;
+    private MatchIndex.Selector last;
+    private MatchIndex.Selector cell;
+
+    @Setup
+    public void setUp() {
+        // the index is measured with the requested number of matches even if fewer icons fit on screen
+        items = new ArrayList<Rectangle>();
+        xs = new int[matches];
+        ys = new int[matches];
+        for (int i = 0; i < matches; i++) {
+            Rectangle r = new Rectangle(40 * (i % 40), 40 * (i / 40) + (i * 7) % 5, 32, 32);
+            items.add(r);
+            xs[i] = r.x + 16;
+            ys[i] = r.y + 16;
+        }
+        first = MatchIndex.Selector.parse("icon.png[1]");
+        last = MatchIndex.Selector.parse("icon.png[last]");
+        cell = MatchIndex.Selector.parse("icon.png[" + ((matches - 1) / 40 + 1) + ",1]");
+    }
+
+    @Benchmark
+    public Rectangle buildAndSelectOnce() {
+        return new MatchIndex<Rectangle>("icon.png", frame, items, xs, ys, 16).select(last);
+    }
+
+    @Benchmark
+    public Rectangle buildAndSelectThrice() {
+        MatchIndex<Rectangle> index = new MatchIndex<Rectangle>("icon.png", frame, items, xs, ys, 16);
+        index.select(first);
+        index.select(cell);
+        return index.select(last);
+    }
+
+    @Benchmark
+    public int findAll(Screen s) {
+        int found = 0;
+        Finder f = new Finder(s.frame);
+        try {
+            f.findAll(new Pattern(s.template));
+            while (f.hasNext()) {
+                f.next();
+                found++;
+            }
+        } finally {
+            f.destroy();
+        }
+        return found;
+    }
+}
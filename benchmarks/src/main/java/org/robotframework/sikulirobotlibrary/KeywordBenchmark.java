@@ -0,0 +1,73 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/* The locate keywords end to end, through the real keyword code, on a   */
+/* synthetic screen injected as an in-memory screen source. A new frame  */
+/* is captured for every call, like after any input.                     */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeywordBenchmark {
+
+    @Param({"1080p", "1440p", "4K"})
+    public String screen;
+
+    private File template;
+    private SikuliKeywords keywords;
+    private PrintStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticScreen s = SyntheticScreen.of(screen, 100);
+        template = File.createTempFile("icon", ".png");
+        ImageIO.write(s.icon, "png", template);
+        keywords = new SikuliKeywords(new InMemoryScreenSource(s.image));
+        keywords.setFindObjectTimeout("0");
+        keywords.setFrameCacheMaxAge("0");
+        // the keywords log every match
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+        template.delete();
+    }
+
+    @Benchmark
+    public void find() throws Exception {
+        keywords.find(template.getPath());
+    }
+
+    @Benchmark
+    public void findIndexed() throws Exception {
+        keywords.find(template.getPath() + "[last]");
+    }
+}
@@ -0,0 +1,85 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sikuli.script.Finder;
+import org.sikuli.script.Image;
+import org.sikuli.script.Match;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* The frame level work of getScreenLocation: one template searched from a */
+/* whole synthetic screen, with the exact and the pyramid strategies, and  */
+/* from a small area as done by the location memory and the partial waits. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocateBenchmark {
+
+    @Param({"1080p", "1440p", "4K"})
+    public String screen;
+
+    private ScreenImage frame;
+    private Image template;
+    private Rectangle around;
+    private PyramidMatcher pyramid;
+
+    @Setup
+    public void setUp() {
+        SyntheticScreen s = SyntheticScreen.of(screen, 1);
+        frame = new ScreenImage(s.bounds(), s.image);
+        template = new Image(s.icon, "icon");
+        around = LocationMemory.around(s.icons.get(0));
+        pyramid = new PyramidMatcher();
+    }
+
+    @Benchmark
+    public Match exact() {
+        return find(frame);
+    }
+
+    @Benchmark
+    public Match pyramid() {
+        List<Rectangle> windows = pyramid.candidates(frame, null, template.get(), 0.7D, 5);
+        Match best = null;
+        for (Rectangle window : windows) {
+            Match m = find(frame.getSub(window));
+            if (m != null && (best == null || m.getScore() > best.getScore())) {
+                best = m;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public Match remembered() {
+        return find(frame.getSub(around));
+    }
+
+    private Match find(ScreenImage simg) {
+        Finder f = new Finder(simg);
+        try {
+            f.find(new Pattern(template));
+            return f.hasNext() ? f.next() : null;
+        } finally {
+            f.destroy();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sikuli.script.Image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* The work around the OCR in getScreenLocation_gray: the gray scale        */
+/* conversion of the frame, the pixel hash of the OCR cache, and building   */
+/* and querying the screen text index. The recognition itself needs the    */
+/* Tesseract data files and is not measured; the words of the synthetic     */
+/* screen are known from drawing them.                                      */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcrPathBenchmark {
+
+    @Param({"1080p", "1440p", "4K"})
+    public String screen;
+
+    private BufferedImage image;
+    private Rectangle bounds;
+    private List<OcrWord> words;
+    private ScreenTextIndex index;
+
+    @Setup
+    public void setUp() {
+        SyntheticScreen s = SyntheticScreen.of(screen, 0);
+        image = s.image;
+        bounds = s.bounds();
+        words = s.words;
+        index = new ScreenTextIndex(null, true, words);
+    }
+
+    @Benchmark
+    public BufferedImage grayScale() {
+        return Image.convertImageToGrayscale(image);
+    }
+
+    @Benchmark
+    public long cacheKey() {
+        return OcrCache.key(image, bounds);
+    }
+
+    @Benchmark
+    public ScreenTextIndex buildTextIndex() {
+        return new ScreenTextIndex(null, true, words);
+    }
+
+    @Benchmark
+    public List<OcrWord> lookupPhrase() {
+        return index.lookup("Save as", false, 0);
+    }
+
+    @Benchmark
+    public List<OcrWord> lookupFuzzy() {
+        return index.lookup("settngs", true, 1);
+    }
+}
@@ -0,0 +1,144 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/* Generated desktop-like screens for the benchmarks, no display needed.     */
+/* The screen has a noisy background, window panels, rows of text labels and */
+/* a grid of identical icons, as many as fit. The icon template has exactly  */
+/* the same pixels, so the matches are known in advance. The same seed gives */
+/* the same screen.                                                          */
+final class SyntheticScreen {
+
+    static final int ICON = 32;
+
+    final BufferedImage image;
+    final BufferedImage icon;
+    final List<Rectangle> icons = new ArrayList<Rectangle>();
+    final List<OcrWord> words = new ArrayList<OcrWord>();
+
+    private SyntheticScreen(int width, int height, int iconCount) {
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        icon = icon();
+        Random random = new Random(42);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            for (int y = 0; y < height; y += 4) {
+                for (int x = 0; x < width; x += 4) {
+                    int v = 200 + random.nextInt(24);
+                    g.setColor(new Color(v, v, v + 8));
+                    g.fillRect(x, y, 4, 4);
+                }
+            }
+            for (int i = 0; i < 6; i++) {
+                int w = width / 4 + random.nextInt(width / 4);
+                int h = height / 4 + random.nextInt(height / 4);
+                int x = random.nextInt(width - w);
+                int y = random.nextInt(height - h);
+                g.setColor(new Color(random.nextInt(64) + 160, random.nextInt(64) + 160, 230));
+                g.fillRect(x, y, w, h);
+                g.setColor(Color.DARK_GRAY);
+                g.drawRect(x, y, w - 1, h - 1);
+            }
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+            g.setColor(Color.BLACK);
+            String[] labels = {"File", "Edit", "View", "Save", "Save as", "Open", "Close", "Settings", "Help", "OK", "Cancel"};
+            int lineHeight = 24;
+            for (int y = lineHeight; y < height / 3; y += lineHeight) {
+                int x = 16;
+                while (x < width - 200) {
+                    String label = labels[random.nextInt(labels.length)];
+                    g.drawString(label, x, y);
+                    int lx = x;
+                    for (String word : label.split(" ")) {
+                        int w = g.getFontMetrics().stringWidth(word);
+                        words.add(new OcrWord(word, new Rectangle(lx, y - 12, w, 16), 0.9D));
+                        lx += w + g.getFontMetrics().stringWidth(" ");
+                    }
+                    x += 140 + random.nextInt(60);
+                }
+            }
+            int step = ICON + 4;
+            int cols = (width - 64) / step;
+            for (int i = 0; i < iconCount; i++) {
+                int x = 32 + (i % cols) * step;
+                int y = height / 3 + 16 + (i / cols) * step;
+                if (y + ICON > height) break;
+                g.drawImage(icon, x, y, null);
+                icons.add(new Rectangle(x, y, ICON, ICON));
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /* name is 1080p, 1440p or 4K */
+    static SyntheticScreen of(String name, int iconCount) {
+        if (name.equals("1080p")) return new SyntheticScreen(1920, 1080, iconCount);
+        if (name.equals("1440p")) return new SyntheticScreen(2560, 1440, iconCount);
+        if (name.equals("4K")) return new SyntheticScreen(3840, 2160, iconCount);
+        throw new IllegalArgumentException("Unknown screen " + name + ", expected 1080p, 1440p or 4K");
+    }
+
+    Rectangle bounds() {
+        return new Rectangle(0, 0, image.getWidth(), image.getHeight());
+    }
+
+    /* Writes the screen like Xvfb -fbdir keeps it: an XWD file of 32-bit little-endian pixels */
+    void writeXwd(File file) throws IOException {
+        String name = "Xvfb main window";
+        int width = image.getWidth();
+        int height = image.getHeight();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            int[] header = {100 + name.length() + 1, 7, 2, 24, width, height, 0, 0, 32, 0,
+                            32, 32, 4 * width, 4, 0xff0000, 0xff00, 0xff, 8, 256, 0, width, height, 0, 0, 0};
+            for (int v : header) {
+                out.writeInt(v);
+            }
+            out.write(name.getBytes("US-ASCII"));
+            out.write(0);
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int p : row) {
+                    out.writeInt(Integer.reverseBytes(p));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static BufferedImage icon() {
+        BufferedImage img = new BufferedImage(ICON, ICON, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setColor(new Color(250, 250, 250));
+            g.fillRect(0, 0, ICON, ICON);
+            g.setColor(new Color(30, 110, 200));
+            g.fillOval(3, 3, ICON - 6, ICON - 6);
+            g.setColor(Color.WHITE);
+            g.fillRect(ICON / 2 - 2, 8, 4, ICON - 16);
+            g.fillRect(8, ICON / 2 - 2, ICON - 16, 4);
+            g.setColor(Color.BLACK);
+            g.drawRect(0, 0, ICON - 1, ICON - 1);
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+}
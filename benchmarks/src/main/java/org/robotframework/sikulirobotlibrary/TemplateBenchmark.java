@@ -0,0 +1,66 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/* Template decoding: a PNG cut from the synthetic screen is decoded through */
+/* a fresh template cache, and served from a warm one.                       */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+
+    @Param({"1080p", "1440p", "4K"})
+    public String screen;
+
+    /* Side of the square template in pixels */
+    @Param({"32", "256"})
+    public int size;
+
+    private File file;
+    private TemplateCache warm;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticScreen s = SyntheticScreen.of(screen, 0);
+        file = File.createTempFile("template", ".png");
+        ImageIO.write(s.image.getSubimage(16, 16, size, size), "png", file);
+        warm = new TemplateCache(256L * 1024 * 1024);
+        warm.get(file.getPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return new TemplateCache(256L * 1024 * 1024).get(file.getPath());
+    }
+
+    @Benchmark
+    public BufferedImage cached() throws IOException {
+        return warm.get(file.getPath());
+    }
+}
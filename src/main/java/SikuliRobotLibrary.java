@@ -1,4 +1,9 @@
 import org.robotframework.javalib.library.AnnotationLibrary;
+import org.robotframework.sikulirobotlibrary.PerformanceStats;
+import org.robotframework.sikulirobotlibrary.RemoteServer;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class SikuliRobotLibrary extends AnnotationLibrary {
     public static final String ROBOT_LIBRARY_SCOPE = "GLOBAL";
@@ -7,4 +12,48 @@ public class SikuliRobotLibrary extends AnnotationLibrary {
     public SikuliRobotLibrary() {
         super("org/robotframework/sikulirobotlibrary/SikuliKeywords.class");
     }
+
+    /* Every keyword call is timed, see GetPerformanceStats */
+    @Override
+    public Object runKeyword(String keywordName, Object[] args) {
+        PerformanceStats stats = PerformanceStats.shared();
+        stats.keywordStarted();
+        try {
+            return super.runKeyword(keywordName, args);
+        } finally {
+            stats.keywordFinished(keywordName);
+        }
+    }
+
+    /* Remote server mode, one loopback port per screen starting from the given port:                */
+    /* java -jar SikuliRobotLibrary.jar [--port 8270] [--screens 0,1,...] [--preload path]...         */
+    public static void main(String[] args) throws Exception {
+        long started = System.currentTimeMillis();
+        int port = 8270;
+        String[] screens = { "0" };
+        List<String> preload = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--screens") && i + 1 < args.length) {
+                screens = args[++i].split(",");
+            } else if (args[i].equals("--preload") && i + 1 < args.length) {
+                preload.add(args[++i]);
+            } else {
+                System.err.println("Usage: java -jar SikuliRobotLibrary.jar [--port 8270] [--screens 0,1,...] [--preload path]...");
+                System.exit(2);
+            }
+        }
+        SikuliRobotLibrary library = new SikuliRobotLibrary();
+        RemoteServer server = new RemoteServer(library, library);
+        if (!preload.isEmpty()) {
+            System.out.println("Preloaded " + library.runKeyword("preloadTemplates", preload.toArray()) + " template images");
+        }
+        for (int i = 0; i < screens.length; i++) {
+            int screen = Integer.parseInt(screens[i].trim());
+            int bound = server.serve((port == 0) ? 0 : port + i, screen);
+            System.out.println("Serving screen " + screen + " on http://127.0.0.1:" + bound);
+        }
+        System.out.println("SikuliRobotLibrary remote server ready in " + (System.currentTimeMillis() - started) + " ms");
+    }
 }
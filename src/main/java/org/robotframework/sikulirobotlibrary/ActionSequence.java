@@ -0,0 +1,94 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/* A parsed script of ExecuteActionSequence. Each step is an action name   */
+/* followed by its argument, separated by whitespace, e.g. "CLICK ok.png",  */
+/* "TYPE John Smith" or "PRESS TAB". The argument is the rest of the step   */
+/* as written, so it may contain spaces.                                   */
+class ActionSequence {
+
+    enum Action {
+        CLICK(true),
+        DOUBLE_CLICK(true),
+        RIGHT_CLICK(true),
+        HOVER(true),
+        TYPE(false),
+        PRESS(false),
+        PRESS_COMBINATION(false);
+
+        /* True if the argument is an object located on screen */
+        final boolean pointer;
+
+        Action(boolean pointer) {
+            this.pointer = pointer;
+        }
+    }
+
+    static final class Step {
+        final int number;    // 1-based, for the error messages
+        final Action action;
+        final String argument;
+
+        Step(int number, Action action, String argument) {
+            this.number = number;
+            this.action = action;
+            this.argument = argument;
+        }
+
+        @Override
+        public String toString() {
+            return "step " + number + " (" + action + " " + argument + ")";
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<Step>();
+
+    ActionSequence(String[] script) {
+        for (int i = 0; i < script.length; i++) {
+            String line = script[i].trim();
+            int space = indexOfWhitespace(line);
+            if (space < 0) {
+                throw new IllegalArgumentException("Step " + (i + 1) + " has no argument: " + script[i]);
+            }
+            String name = line.substring(0, space).toUpperCase(Locale.ROOT).replace('-', '_');
+            Action action;
+            try {
+                action = Action.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Step " + (i + 1) + " has an unknown action: " + script[i]);
+            }
+            String argument = line.substring(space + 1);
+            // the text to type is taken as written, the other arguments without the surrounding spaces
+            steps.add(new Step(i + 1, action, (action == Action.TYPE) ? argument : argument.trim()));
+        }
+    }
+
+    List<Step> steps() {
+        return steps;
+    }
+
+    /* The distinct objects located by the steps, in the order of their first use */
+    List<String> targets() {
+        Set<String> targets = new LinkedHashSet<String>();
+        for (Step step : steps) {
+            if (step.action.pointer) {
+                targets.add(step.argument);
+            }
+        }
+        return new ArrayList<String>(targets);
+    }
+
+    private static int indexOfWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
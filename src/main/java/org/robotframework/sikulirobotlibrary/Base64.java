@@ -0,0 +1,92 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.Arrays;
+
+/* The base64 values of XML-RPC (RFC 4648, standard alphabet with padding). */
+/* The decoder skips the whitespace, as the clients may break long values   */
+/* into lines. Kept here because javax.xml.bind is gone from Java 11 and    */
+/* java.util.Base64 is not in Java 6.                                       */
+final class Base64 {
+
+    private static final char[] ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = i;
+        }
+    }
+
+    private Base64() {
+    }
+
+    static String encode(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int n = data.length - i;
+            int b = (data[i] & 0xff) << 16;
+            if (n > 1) {
+                b |= (data[i + 1] & 0xff) << 8;
+            }
+            if (n > 2) {
+                b |= data[i + 2] & 0xff;
+            }
+            sb.append(ALPHABET[b >>> 18]).append(ALPHABET[(b >>> 12) & 0x3f]);
+            sb.append((n > 1) ? ALPHABET[(b >>> 6) & 0x3f] : '=');
+            sb.append((n > 2) ? ALPHABET[b & 0x3f] : '=');
+        }
+        return sb.toString();
+    }
+
+    static byte[] decode(String text) {
+        byte[] out = new byte[text.length() / 4 * 3 + 3];
+        int length = 0;
+        int bits = 0;
+        int count = 0;
+        int padding = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (c == '=') {
+                padding++;
+                count++;
+            } else {
+                int v = (c < VALUES.length) ? VALUES[c] : -1;
+                if (v < 0 || padding > 0) {
+                    throw new IllegalArgumentException("Invalid base64 character '" + c + "' at " + i);
+                }
+                bits = (bits << 6) | v;
+                count++;
+            }
+            if (count == 4) {
+                if (padding > 2) {
+                    throw new IllegalArgumentException("Invalid base64 padding at " + i);
+                }
+                bits <<= 6 * padding;
+                out[length++] = (byte) (bits >>> 16);
+                if (padding < 2) {
+                    out[length++] = (byte) (bits >>> 8);
+                }
+                if (padding < 1) {
+                    out[length++] = (byte) bits;
+                }
+                if (padding > 0) {
+                    // nothing may follow the padding
+                    padding = 3;
+                }
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count != 0) {
+            throw new IllegalArgumentException("Truncated base64 value of " + text.length() + " characters");
+        }
+        byte[] data = new byte[length];
+        System.arraycopy(out, 0, data, 0, length);
+        return data;
+    }
+}
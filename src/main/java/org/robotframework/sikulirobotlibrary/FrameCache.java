@@ -0,0 +1,118 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/* Keeps the latest full screen capture for a short, configurable time, so that */
+/* back-to-back locate operations can share one frame instead of re-capturing.  */
+/* Every keyword producing mouse or keyboard input must call invalidate().      */
+/* The poll loops hand back the captures that turned out identical to the      */
+/* earlier frame (see unchanged), and their pixels are reused by the next      */
+/* capture, so polling an unchanged screen does not allocate new frames from   */
+/* the sources that can capture into an existing image.                        */
+class FrameCache {
+
+    private ScreenSource source;
+    private long maxAgeMillis = 50L;
+    private ScreenImage frame;
+    private long frameTime;
+    private boolean handedOut;
+    private BufferedImage spare;
+    private long hits;
+    private long misses;
+    private long recycled;
+
+    FrameCache(ScreenSource source) {
+        this.source = source;
+    }
+
+    synchronized void setSource(ScreenSource source) {
+        this.source = source;
+        frame = null;
+        spare = null;
+    }
+
+    synchronized ScreenSource getSource() {
+        return source;
+    }
+
+    /* Returns the cached frame if it is young enough, otherwise captures a new one. */
+    /* The pixels of a frame returned here are never reused for another capture.    */
+    synchronized ScreenImage get() {
+        if (frame == null || (System.currentTimeMillis() - frameTime) > maxAgeMillis) {
+            refresh();
+        } else {
+            hits++;
+        }
+        handedOut = true;
+        return frame;
+    }
+
+    /* Always captures a new frame, used by the retry loops after a failed match */
+    synchronized ScreenImage refresh() {
+        misses++;
+        long t0 = System.nanoTime();
+        Rectangle bounds = source.getBounds();
+        BufferedImage reuse = spare;
+        spare = null;
+        frame = new ScreenImage(bounds, source.capture(reuse));
+        PerformanceStats.shared().add(PerformanceStats.Phase.CAPTURE, t0);
+        frameTime = System.currentTimeMillis();
+        handedOut = false;
+        return frame;
+    }
+
+    /* Called when the latest refresh captured the same pixels as the earlier frame. The earlier */
+    /* frame becomes the cached one again and is returned, and the pixels of the latest frame    */
+    /* are reused by the next capture. If the latest frame has already been handed out by get(), */
+    /* or shares its pixels with the earlier one, it stays cached and is returned instead.       */
+    synchronized ScreenImage unchanged(ScreenImage earlier, ScreenImage latest) {
+        if (frame != latest || handedOut || earlier == null || earlier.getImage() == latest.getImage()
+            || !earlier.getROI().equals(latest.getROI())) {
+            return latest;
+        }
+        frame = earlier;
+        spare = latest.getImage();
+        recycled++;
+        return earlier;
+    }
+
+    synchronized void invalidate() {
+        frame = null;
+    }
+
+    synchronized void setMaxAge(long millis) {
+        this.maxAgeMillis = millis;
+        if (millis <= 0) {
+            frame = null;
+        }
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getRecycled() {
+        return recycled;
+    }
+
+    synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        recycled = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        double rate = (total == 0) ? 0.0D : (100.0D * hits) / total;
+        return "Frame cache (" + source + "): max age " + maxAgeMillis + " ms, hits " + hits + ", misses " + misses
+               + String.format(", hit rate %.1f %%", rate) + ", recycled unchanged frames " + recycled;
+    }
+}
@@ -0,0 +1,137 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/* RGB to gray scale conversion into a reused buffer. The luma is computed   */
+/* straight from the packed pixels of the frame with the integer weights of  */
+/* the Java 2D gray conversion, (77 R + 150 G + 29 B + 128) / 256, so the    */
+/* result equals drawing the image into a TYPE_BYTE_GRAY image. Large images */
+/* are split into bands of rows converted in parallel. The returned image    */
+/* shares the buffer and is valid only until the next conversion.            */
+class Grayscale {
+
+    /* Below this many pixels the conversion is not worth splitting */
+    static final int PARALLEL_PIXELS = 1 << 18;
+
+    private final ExecutorService pool;
+    private final int bands;
+    private byte[] buffer = new byte[0];
+    private BufferedImage image;
+    private long conversions;
+    private long allocations;
+
+    Grayscale(int threads) {
+        bands = Math.max(1, threads);
+        pool = (bands == 1) ? null : Executors.newFixedThreadPool(bands - 1, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SikuliGray-" + (++count));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /* The gray scale version of the image in the reused buffer */
+    synchronized BufferedImage convert(BufferedImage rgb) {
+        int w = rgb.getWidth();
+        int h = rgb.getHeight();
+        conversions++;
+        if (buffer.length < w * h) {
+            buffer = new byte[w * h];
+            image = null;
+            allocations++;
+        }
+        if (image == null || image.getWidth() != w || image.getHeight() != h) {
+            WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(buffer, w * h), w, h, w, 1,
+                                                                   new int[] {0}, null);
+            BufferedImage template = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+            image = new BufferedImage(template.getColorModel(), raster, false, null);
+        }
+        if (!isPacked(rgb)) {
+            // e.g. the 3-byte images of the recorded frames, Java 2D does the same conversion
+            Graphics g = image.getGraphics();
+            try {
+                g.drawImage(rgb, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            return image;
+        }
+        DataBufferInt data = (DataBufferInt) rgb.getRaster().getDataBuffer();
+        int scan = ((SinglePixelPackedSampleModel) rgb.getSampleModel()).getScanlineStride();
+        int offset = data.getOffset() - rgb.getRaster().getSampleModelTranslateY() * scan
+                     - rgb.getRaster().getSampleModelTranslateX();
+        convert(data.getData(), offset, scan, w, h, buffer);
+        return image;
+    }
+
+    private void convert(final int[] rgb, final int offset, final int scan, final int w, int h, final byte[] gray) {
+        int n = (pool == null || (long) w * h < PARALLEL_PIXELS) ? 1 : bands;
+        int rows = (h + n - 1) / n;
+        List<Future<?>> pending = new ArrayList<Future<?>>(n - 1);
+        for (int y0 = rows; y0 < h; y0 += rows) {
+            final int from = y0;
+            final int to = Math.min(h, y0 + rows);
+            pending.add(pool.submit(new Runnable() {
+                public void run() {
+                    luma(rgb, offset, scan, w, from, to, gray);
+                }
+            }));
+        }
+        luma(rgb, offset, scan, w, 0, Math.min(h, rows), gray);
+        for (Future<?> f : pending) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Gray scale conversion interrupted");
+            }
+        }
+    }
+
+    /* Rows from y0 to y1 of the packed RGB pixels into the gray rows of width w */
+    static void luma(int[] rgb, int offset, int scan, int w, int y0, int y1, byte[] gray) {
+        for (int y = y0; y < y1; y++) {
+            int p = offset + y * scan;
+            int g = y * w;
+            for (int end = g + w; g < end; g++, p++) {
+                int c = rgb[p];
+                gray[g] = (byte)((77 * ((c >> 16) & 0xff) + 150 * ((c >> 8) & 0xff) + 29 * (c & 0xff) + 128) >> 8);
+            }
+        }
+    }
+
+    private static boolean isPacked(BufferedImage img) {
+        return img.getType() == BufferedImage.TYPE_INT_RGB
+               && img.getRaster().getDataBuffer() instanceof DataBufferInt
+               && img.getSampleModel() instanceof SinglePixelPackedSampleModel;
+    }
+
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Gray scale conversion: " + conversions + " conversions in " + bands + " bands, buffer "
+               + (buffer.length / 1024) + " kB, reallocated " + allocations + " times";
+    }
+}
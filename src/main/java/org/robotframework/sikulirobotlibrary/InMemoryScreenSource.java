@@ -0,0 +1,79 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/* Frames injected by the caller, e.g. generated screens in tests and        */
+/* benchmarks. Every capture returns the latest frame set with setFrame.     */
+class InMemoryScreenSource implements ScreenSource {
+
+    private BufferedImage frame;
+    private Rectangle bounds;
+    private long captures;
+
+    InMemoryScreenSource(BufferedImage frame) {
+        setFrame(frame, 0, 0);
+    }
+
+    /* x and y are the screen coordinates of the top-left corner of the frame */
+    synchronized void setFrame(BufferedImage frame, int x, int y) {
+        this.frame = frame;
+        this.bounds = new Rectangle(x, y, frame.getWidth(), frame.getHeight());
+    }
+
+    synchronized void setFrame(BufferedImage frame) {
+        setFrame(frame, bounds.x, bounds.y);
+    }
+
+    public synchronized Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    public synchronized BufferedImage capture() {
+        captures++;
+        return frame;
+    }
+
+    public BufferedImage capture(BufferedImage reuse) {
+        return capture();
+    }
+
+    /* The frame set now, the captures of the observer are not counted */
+    public ScreenSource observer() {
+        return new ScreenSource() {
+            public Rectangle getBounds() {
+                return InMemoryScreenSource.this.getBounds();
+            }
+
+            public BufferedImage capture() {
+                return current();
+            }
+
+            public BufferedImage capture(BufferedImage reuse) {
+                return current();
+            }
+
+            public ScreenSource observer() {
+                return this;
+            }
+
+            @Override
+            public String toString() {
+                return "observer of " + InMemoryScreenSource.this;
+            }
+        };
+    }
+
+    synchronized BufferedImage current() {
+        return frame;
+    }
+
+    synchronized long getCaptures() {
+        return captures;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "in-memory frame " + bounds.width + "x" + bounds.height + ", captures " + captures;
+    }
+}
@@ -0,0 +1,91 @@
+package org.robotframework.sikulirobotlibrary;
+
+/* Log-linear latency histogram in the spirit of HdrHistogram.              */
+/* Values below 32 have exact buckets, above that every power of two is     */
+/* split into 16 linear sub-buckets, which keeps the relative error of the  */
+/* reported percentiles under 6.25 % from microseconds to days. Recording   */
+/* is a bucket index computation and an array increment, no allocation.     */
+class LatencyHistogram {
+
+    private static final int LINEAR = 32;
+    private static final int SUB_BITS = 4;
+    private static final int SUBS = 1 << SUB_BITS;
+    private static final int MAX_SHIFT = 40;
+
+    private final long[] counts = new long[LINEAR + MAX_SHIFT * SUBS];
+    private long count;
+    private long sum;
+    private long max;
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        if (shift > MAX_SHIFT) {
+            return LINEAR + MAX_SHIFT * SUBS - 1;
+        }
+        return LINEAR + (shift - 1) * SUBS + (int) ((value >>> shift) - SUBS);
+    }
+
+    /* The largest value that falls into the bucket */
+    static long highestValue(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / SUBS + 1;
+        long sub = (index - LINEAR) % SUBS + SUBS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /* The value below which the given share (0.0 - 1.0) of the recorded values fall */
+    long percentile(double share) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(share * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getSum() {
+        return sum;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return (count == 0) ? 0.0D : (double) sum / count;
+    }
+
+    void reset() {
+        java.util.Arrays.fill(counts, 0L);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
@@ -0,0 +1,51 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.script.Screen;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/* Frames captured from one screen, 0 is the primary screen. The Sikuli    */
+/* screen is created on the first capture, so the library can be loaded   */
+/* without a display.                                                      */
+class LiveScreenSource implements ScreenSource {
+
+    private final int screenIndex;
+    private Screen scr;
+
+    LiveScreenSource(int screenIndex) {
+        this.screenIndex = screenIndex;
+    }
+
+    private synchronized Screen screen() {
+        if (scr == null) {
+            Startup.shared().ensure(Startup.Subsystem.SCREEN);
+            scr = new Screen(screenIndex);
+        }
+        return scr;
+    }
+
+    public Rectangle getBounds() {
+        return screen().getBounds();
+    }
+
+    public BufferedImage capture() {
+        Screen s = screen();
+        return s.capture(s.getBounds()).getImage();
+    }
+
+    /* A screen of its own, the AWT robot is not shared between the threads */
+    public ScreenSource observer() {
+        return new LiveScreenSource(screenIndex);
+    }
+
+    /* The AWT robot allocates a new image for every capture */
+    public BufferedImage capture(BufferedImage reuse) {
+        return capture();
+    }
+
+    @Override
+    public String toString() {
+        return "live screen " + screenIndex;
+    }
+}
@@ -0,0 +1,130 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/* Remembers the latest screen rectangles where each object was found, so   */
+/* that the next search can first look around those places before scanning */
+/* the whole screen. The memory can be stored into a properties file, one  */
+/* line per object: object = x,y,w,h;x,y,w,h;...  (most recent first).      */
+class LocationMemory {
+
+    private final int depth;
+    private final Map<String, LinkedList<Rectangle>> seen = new HashMap<String, LinkedList<Rectangle>>();
+    private long hits;
+    private long misses;
+
+    LocationMemory(int depth) {
+        this.depth = Math.max(1, depth);
+    }
+
+    /* The remembered rectangles of the object, most recent first */
+    synchronized List<Rectangle> recall(String object) {
+        LinkedList<Rectangle> rects = seen.get(object);
+        return (rects == null) ? new ArrayList<Rectangle>() : new ArrayList<Rectangle>(rects);
+    }
+
+    synchronized void remember(String object, Rectangle r) {
+        LinkedList<Rectangle> rects = seen.get(object);
+        if (rects == null) {
+            rects = new LinkedList<Rectangle>();
+            seen.put(object, rects);
+        }
+        rects.remove(r);
+        rects.addFirst(new Rectangle(r));
+        while (rects.size() > depth) {
+            rects.removeLast();
+        }
+    }
+
+    synchronized void hit() {
+        hits++;
+    }
+
+    synchronized void miss() {
+        misses++;
+    }
+
+    synchronized void clear() {
+        seen.clear();
+    }
+
+    /* The search area around a remembered rectangle, grown by half of its size plus a fixed margin */
+    static Rectangle around(Rectangle r) {
+        int dx = r.width / 2 + 16;
+        int dy = r.height / 2 + 16;
+        return new Rectangle(r.x - dx, r.y - dy, r.width + 2 * dx, r.height + 2 * dy);
+    }
+
+    synchronized void load(File file) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        for (String object : props.stringPropertyNames()) {
+            LinkedList<Rectangle> rects = new LinkedList<Rectangle>();
+            for (String item : props.getProperty(object).split(";")) {
+                String[] v = item.trim().split(",");
+                if (v.length == 4 && rects.size() < depth) {
+                    rects.add(new Rectangle(Integer.parseInt(v[0].trim()), Integer.parseInt(v[1].trim()),
+                                            Integer.parseInt(v[2].trim()), Integer.parseInt(v[3].trim())));
+                }
+            }
+            if (!rects.isEmpty()) {
+                seen.put(object, rects);
+            }
+        }
+    }
+
+    synchronized void save(File file) throws IOException {
+        Properties props = new Properties();
+        for (Map.Entry<String, LinkedList<Rectangle>> e : seen.entrySet()) {
+            StringBuilder sb = new StringBuilder();
+            for (Rectangle r : e.getValue()) {
+                if (sb.length() > 0) sb.append(';');
+                sb.append(r.x).append(',').append(r.y).append(',').append(r.width).append(',').append(r.height);
+            }
+            props.setProperty(e.getKey(), sb.toString());
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "SikuliRobotLibrary location memory");
+        } finally {
+            out.close();
+        }
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        double rate = (total == 0) ? 0.0D : (100.0D * hits) / total;
+        return "Location memory: " + seen.size() + " objects, fast path hits " + hits + ", misses " + misses
+               + String.format(" (hit rate %.1f %%)", rate);
+    }
+}
@@ -0,0 +1,168 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* A keyword argument compiled into the searched object and its search      */
+/* options: an image file or a text, an optional index notation (see        */
+/* MatchIndex) and any of @sim=0.9, @region=x,y,width,height, @offset=dx,dy  */
+/* and @timeout=seconds after it, e.g. ok.png[2]@sim=0.9@region=0,0,800,600. */
+/* The options are read from the end of the argument, and only the known    */
+/* ones, so texts with an @ in them are searched as before. Locators are    */
+/* immutable and kept by the argument string, so a repeated keyword does no */
+/* parsing at all.                                                          */
+final class Locator {
+
+    static final int MAX_CACHED = 1024;
+
+    private static final Map<String, Locator> CACHE = new LinkedHashMap<String, Locator>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Locator> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    final String argument;
+    /* The image file or the text without the index and the options */
+    final String object;
+    /* Null if there is no index notation */
+    final MatchIndex.Selector selector;
+    /* Negative if not given */
+    final double similarity;
+    /* Null means the whole screen */
+    final Rectangle region;
+    final int dx;
+    final int dy;
+    /* Seconds, negative if not given */
+    final double timeout;
+    /* The object with the options changing what is found, the key of the match index */
+    final String searchKey;
+
+    private Locator(String argument, String object, MatchIndex.Selector selector, double similarity,
+                    Rectangle region, int dx, int dy, double timeout) {
+        this.argument = argument;
+        this.object = object;
+        this.selector = selector;
+        this.similarity = similarity;
+        this.region = region;
+        this.dx = dx;
+        this.dy = dy;
+        this.timeout = timeout;
+        this.searchKey = object + ((similarity >= 0) ? "@sim=" + similarity : "")
+            + ((region != null) ? "@region=" + region.x + "," + region.y + "," + region.width + "," + region.height : "");
+    }
+
+    /* The compiled locator of the argument, parsed on the first use only */
+    static Locator of(String argument) {
+        synchronized (CACHE) {
+            Locator locator = CACHE.get(argument);
+            if (locator != null) {
+                return locator;
+            }
+        }
+        Locator locator = parse(argument);
+        synchronized (CACHE) {
+            CACHE.put(argument, locator);
+        }
+        return locator;
+    }
+
+    static int cached() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    static Locator parse(String argument) {
+        String rest = argument;
+        double similarity = -1.0D;
+        Rectangle region = null;
+        int[] offset = null;
+        double timeout = -1.0D;
+        for (int at = rest.lastIndexOf('@'); at > 0; at = rest.lastIndexOf('@')) {
+            String option = rest.substring(at + 1);
+            int eq = option.indexOf('=');
+            if (eq < 0) {
+                break;
+            }
+            String key = option.substring(0, eq).trim().toLowerCase();
+            String value = option.substring(eq + 1).trim();
+            try {
+                if (key.equals("sim") || key.equals("similarity")) {
+                    checkOnce(similarity >= 0, key, argument);
+                    similarity = Double.parseDouble(value);
+                    if (similarity < 0 || similarity > 1) {
+                        throw new IllegalArgumentException("The similarity of " + argument + " must be between 0 and 1");
+                    }
+                } else if (key.equals("region")) {
+                    checkOnce(region != null, key, argument);
+                    int[] r = numbers(value, 4);
+                    if (r[2] <= 0 || r[3] <= 0) {
+                        throw new IllegalArgumentException("The region of " + argument + " must have a width and a height");
+                    }
+                    region = new Rectangle(r[0], r[1], r[2], r[3]);
+                } else if (key.equals("offset")) {
+                    checkOnce(offset != null, key, argument);
+                    offset = numbers(value, 2);
+                } else if (key.equals("timeout")) {
+                    checkOnce(timeout >= 0, key, argument);
+                    timeout = Double.parseDouble(value);
+                    if (timeout < 0) {
+                        throw new IllegalArgumentException("The timeout of " + argument + " must not be negative");
+                    }
+                } else {
+                    // not an option, the @ is a part of the object
+                    break;
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + key + " option in " + argument + ": " + value);
+            }
+            rest = rest.substring(0, at);
+        }
+        MatchIndex.Selector selector = MatchIndex.Selector.parse(rest);
+        String object = (selector != null) ? selector.object : rest;
+        return new Locator(argument, object, selector, similarity, region,
+                           (offset != null) ? offset[0] : 0, (offset != null) ? offset[1] : 0, timeout);
+    }
+
+    private static void checkOnce(boolean given, String key, String argument) {
+        if (given) {
+            throw new IllegalArgumentException("The " + key + " option is given twice in " + argument);
+        }
+    }
+
+    private static int[] numbers(String value, int count) {
+        String[] parts = value.split(",");
+        if (parts.length != count) {
+            throw new NumberFormatException(value);
+        }
+        int[] numbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = Integer.parseInt(parts[i].trim());
+        }
+        return numbers;
+    }
+
+    /* True for a plain image file or text without the index or any option */
+    boolean isPlain() {
+        return selector == null && similarity < 0 && region == null && dx == 0 && dy == 0 && timeout < 0;
+    }
+
+    boolean hasOffset() {
+        return dx != 0 || dy != 0;
+    }
+
+    /* The timeout given to the keyword wins over the one of the locator, which wins over the default */
+    double timeout(double keywordTimeout, double defaultTimeout) {
+        if (keywordTimeout >= 0) {
+            return keywordTimeout;
+        }
+        return (timeout >= 0) ? timeout : defaultTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return argument;
+    }
+}
@@ -0,0 +1,213 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* Reading order index of the matches found from one frame.                   */
+/* Matches whose target y coordinates are within the row tolerance of the     */
+/* first match of a row belong to the same row; rows are ordered top to       */
+/* bottom and the matches within a row left to right. Each match is packed   */
+/* into one primitive key (row, x, position), and the i:th match is selected  */
+/* with a partial selection. When the same index is queried again, the keys  */
+/* are sorted once, after which every lookup is a direct array access.       */
+class MatchIndex<T> {
+
+    /* object[i], object[last], object[-i] and object[row,col] */
+    private static final Pattern NOTATION =
+        Pattern.compile("(.*)\\[\\s*(last|-?\\d+|\\d+\\s*,\\s*\\d+)\\s*\\]", Pattern.DOTALL);
+
+    private static final int X_BIAS = 1 << 20;
+    private static final long POS_MASK = (1L << 20) - 1;
+
+    /* The selector part of an indexed argument */
+    static final class Selector {
+        final String object;
+        final int index;    // 1-based from the start, negative from the end, 0 for row and column
+        final int row;      // 1-based, used when index is 0
+        final int col;
+
+        private Selector(String object, int index, int row, int col) {
+            this.object = object;
+            this.index = index;
+            this.row = row;
+            this.col = col;
+        }
+
+        /* Returns null if the argument does not end with an index notation */
+        static Selector parse(String argument) {
+            Matcher m = NOTATION.matcher(argument);
+            if (!m.matches()) {
+                return null;
+            }
+            String object = m.group(1);
+            String spec = m.group(2);
+            if (spec.equals("last")) {
+                return new Selector(object, -1, 0, 0);
+            }
+            int comma = spec.indexOf(',');
+            if (comma >= 0) {
+                int row = Integer.parseInt(spec.substring(0, comma).trim());
+                int col = Integer.parseInt(spec.substring(comma + 1).trim());
+                return new Selector(object, 0, row, col);
+            }
+            return new Selector(object, Integer.parseInt(spec), 0, 0);
+        }
+
+        @Override
+        public String toString() {
+            return (index != 0) ? "[" + index + "]" : "[" + row + "," + col + "]";
+        }
+    }
+
+    static boolean isIndexed(String argument) {
+        return NOTATION.matcher(argument).matches();
+    }
+
+    private final String object;
+    private final Object frame;
+    private final List<T> items;
+    private final long[] keys;
+    private final int[] rowStarts;   // first target y of each row
+    private boolean sorted;
+    private int lookups;
+
+    /* xs and ys are the target coordinates of the items, tolerance is the allowed y difference within a row */
+    MatchIndex(String object, Object frame, List<T> items, int[] xs, int[] ys, int tolerance) {
+        this.object = object;
+        this.frame = frame;
+        this.items = items;
+        int n = items.size();
+        int[] sortedY = Arrays.copyOf(ys, n);
+        Arrays.sort(sortedY);
+        int[] starts = new int[n];
+        int rows = 0;
+        for (int i = 0; i < n; i++) {
+            if (rows == 0 || sortedY[i] - starts[rows - 1] > tolerance) {
+                starts[rows++] = sortedY[i];
+            }
+        }
+        rowStarts = Arrays.copyOf(starts, rows);
+        keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) rowOf(ys[i]) << 41) | ((long) (xs[i] + X_BIAS) << 20) | i;
+        }
+    }
+
+    /* True when this index was built from the given frame for the given object */
+    boolean isFor(String object, Object frame) {
+        return this.frame == frame && this.object.equals(object);
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    int rows() {
+        return rowStarts.length;
+    }
+
+    /* Returns the selected item, or null if the selector is out of range */
+    T select(Selector s) {
+        if (++lookups > 1 && !sorted) {
+            Arrays.sort(keys);
+            sorted = true;
+        }
+        int n = keys.length;
+        if (s.index != 0) {
+            int k = (s.index > 0) ? s.index - 1 : n + s.index;
+            if (k < 0 || k >= n) {
+                return null;
+            }
+            long key = sorted ? keys[k] : select(keys, 0, n - 1, k);
+            return items.get((int) (key & POS_MASK));
+        }
+        if (s.row < 1 || s.row > rowStarts.length || s.col < 1) {
+            return null;
+        }
+        long row = s.row - 1;
+        if (sorted) {
+            int first = lowerBound(row << 41);
+            int k = first + s.col - 1;
+            if (k >= n || (keys[k] >>> 41) != row) {
+                return null;
+            }
+            return items.get((int) (keys[k] & POS_MASK));
+        }
+        long[] inRow = new long[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if ((keys[i] >>> 41) == row) {
+                inRow[count++] = keys[i];
+            }
+        }
+        if (s.col > count) {
+            return null;
+        }
+        return items.get((int) (select(inRow, 0, count - 1, s.col - 1) & POS_MASK));
+    }
+
+    private int rowOf(int y) {
+        int lo = 0;
+        int hi = rowStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (rowStarts[mid] <= y) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /* Quickselect: returns the k:th smallest key of a[lo..hi], partially reordering the array */
+    static long select(long[] a, int lo, int hi, int k) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            // median of three as the pivot
+            if (a[mid] < a[lo]) swap(a, mid, lo);
+            if (a[hi] < a[lo]) swap(a, hi, lo);
+            if (a[hi] < a[mid]) swap(a, hi, mid);
+            long pivot = a[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return a[k];
+            }
+        }
+        return a[k];
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
@@ -0,0 +1,79 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* LRU cache of the OCR results, keyed by a hash of the recognized pixels.    */
+/* A text search on a region whose pixels are identical to an earlier search */
+/* reuses the recognized word boxes instead of running the OCR again.         */
+class OcrCache {
+
+    private final String name;
+    private int maxEntries;
+    private final LinkedHashMap<Long, List<OcrWord>> entries = new LinkedHashMap<Long, List<OcrWord>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, List<OcrWord>> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private long hits;
+    private long misses;
+
+    OcrCache(String name, int maxEntries) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+    }
+
+    synchronized List<OcrWord> get(long key) {
+        List<OcrWord> words = entries.get(key);
+        if (words != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return words;
+    }
+
+    synchronized void put(long key, List<OcrWord> words) {
+        entries.put(key, words);
+    }
+
+    synchronized void invalidate() {
+        entries.clear();
+    }
+
+    synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        while (entries.size() > this.maxEntries) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    /* Hash of all the pixels of the image, combined with its position on screen */
+    static long key(BufferedImage img, Rectangle roi) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ (((long) roi.x << 32) | (roi.y & 0xffffffffL))) * 0x100000001b3L;
+        hash = (hash ^ (((long) w << 32) | h)) * 0x100000001b3L;
+        int[] line = new int[w];
+        for (int y = 0; y < h; y++) {
+            img.getRGB(0, y, w, 1, line, 0, w);
+            for (int x = 0; x < w; x++) {
+                hash = (hash ^ line[x]) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        double rate = (total == 0) ? 0.0D : (100.0D * hits) / total;
+        return "OCR cache (" + name + "): " + entries.size() + " of " + maxEntries + " entries, hits " + hits
+               + ", misses " + misses + String.format(" (hit rate %.1f %%)", rate);
+    }
+}
@@ -0,0 +1,14 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/* One text recognition engine of the OcrPool. An engine is used by one      */
+/* thread at a time, but different engines of a pool run at the same time.   */
+interface OcrEngine {
+
+    /* The words of the image, which covers the given screen area; the word */
+    /* boxes are in screen coordinates                                      */
+    List<OcrWord> recognize(BufferedImage image, Rectangle area) throws Exception;
+}
@@ -0,0 +1,188 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/* A bounded pool of OCR engines. A large area is split into horizontal     */
+/* bands, one per engine, which are recognized concurrently. The bands       */
+/* overlap by more than a line of text, so every word lies whole inside at   */
+/* least one band; a word is kept only from the band whose own part (the     */
+/* band without the overlap) holds the center of the word, which drops the   */
+/* duplicates and the words cut by a band edge. Concurrent callers share the */
+/* engines, each engine runs one recognition at a time. The busy time of     */
+/* every engine is measured for the utilization statistics.                  */
+class OcrPool {
+
+    /* The bands are at least this high, smaller areas are not split */
+    static final int MIN_BAND = 160;
+    /* The overlap of the bands, above the height of a line of text */
+    static final int OVERLAP = 48;
+
+    private static final class Slot {
+        final int number;
+        final OcrEngine engine;
+        long calls;
+        long failures;
+        long pixels;
+        long busyNanos;
+
+        Slot(int number, OcrEngine engine) {
+            this.number = number;
+            this.engine = engine;
+        }
+    }
+
+    private final Slot[] slots;
+    private final BlockingQueue<Slot> idle;
+    private final ExecutorService workers;
+    private long since = System.nanoTime();
+    private long recognitions;
+    private long bands;
+
+    OcrPool(List<OcrEngine> engines) {
+        slots = new Slot[engines.size()];
+        idle = new ArrayBlockingQueue<Slot>(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i + 1, engines.get(i));
+            idle.add(slots[i]);
+        }
+        workers = (slots.length == 1) ? null : Executors.newFixedThreadPool(slots.length, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SikuliOcr-" + (++count));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    int size() {
+        return slots.length;
+    }
+
+    /* The words of the image covering the given screen area, in screen coordinates */
+    List<OcrWord> recognize(final BufferedImage image, final Rectangle area) throws Exception {
+        List<int[]> split = bands(area.height, slots.length);
+        synchronized (this) {
+            recognitions++;
+            bands += split.size();
+        }
+        if (split.size() == 1) {
+            return run(image, area);
+        }
+        List<Future<List<OcrWord>>> futures = new ArrayList<Future<List<OcrWord>>>(split.size());
+        for (final int[] band : split) {
+            futures.add(workers.submit(new Callable<List<OcrWord>>() {
+                public List<OcrWord> call() throws Exception {
+                    int y0 = band[2];
+                    int y1 = band[3];
+                    Rectangle r = new Rectangle(area.x, area.y + y0, area.width, y1 - y0);
+                    List<OcrWord> words = run(image.getSubimage(0, y0, area.width, y1 - y0), r);
+                    List<OcrWord> kept = new ArrayList<OcrWord>(words.size());
+                    for (OcrWord w : words) {
+                        int center = w.box.y + w.box.height / 2 - area.y;
+                        if (center >= band[0] && center < band[1]) {
+                            kept.add(w);
+                        }
+                    }
+                    return kept;
+                }
+            }));
+        }
+        List<OcrWord> merged = new ArrayList<OcrWord>();
+        try {
+            for (Future<List<OcrWord>> f : futures) {
+                try {
+                    merged.addAll(f.get());
+                } catch (ExecutionException e) {
+                    throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            for (Future<List<OcrWord>> f : futures) {
+                f.cancel(true);
+            }
+        }
+        return merged;
+    }
+
+    /* The bands of an area of the given height as {core start, core end, start, end} rows */
+    static List<int[]> bands(int height, int engines) {
+        int n = Math.max(1, Math.min(engines, height / MIN_BAND));
+        List<int[]> list = new ArrayList<int[]>(n);
+        if (n == 1) {
+            list.add(new int[] {0, height, 0, height});
+            return list;
+        }
+        int core = (height + n - 1) / n;
+        for (int y = 0; y < height; y += core) {
+            int end = Math.min(height, y + core);
+            list.add(new int[] {y, end, Math.max(0, y - OVERLAP), Math.min(height, end + OVERLAP)});
+        }
+        return list;
+    }
+
+    /* One recognition on the first free engine */
+    private List<OcrWord> run(BufferedImage image, Rectangle area) throws Exception {
+        Slot slot = idle.take();
+        long t0 = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<OcrWord> words = slot.engine.recognize(image, area);
+            ok = true;
+            return words;
+        } finally {
+            synchronized (this) {
+                slot.calls++;
+                slot.busyNanos += System.nanoTime() - t0;
+                slot.pixels += (long) area.width * area.height;
+                if (!ok) {
+                    slot.failures++;
+                }
+            }
+            // never blocks, the queue has room for every slot
+            idle.offer(slot);
+        }
+    }
+
+    synchronized void resetStats() {
+        since = System.nanoTime();
+        recognitions = 0;
+        bands = 0;
+        for (Slot s : slots) {
+            s.calls = 0;
+            s.failures = 0;
+            s.pixels = 0;
+            s.busyNanos = 0;
+        }
+    }
+
+    void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        double elapsed = Math.max(1L, System.nanoTime() - since);
+        StringBuilder sb = new StringBuilder("OCR engines: " + slots.length + " x " + slots[0].engine
+                                             + ", recognitions " + recognitions + " in " + bands + " bands");
+        for (Slot s : slots) {
+            sb.append(String.format("%n  engine %d: %d calls, %d failed, %.1f Mpixels, busy %d ms, utilization %.1f %%",
+                                    s.number, s.calls, s.failures, s.pixels / 1e6D, s.busyNanos / 1000000L,
+                                    100.0D * s.busyNanos / elapsed));
+        }
+        return sb.toString();
+    }
+}
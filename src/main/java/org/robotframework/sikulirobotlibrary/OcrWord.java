@@ -0,0 +1,28 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+
+/* One word recognized by the OCR, with its bounding box in screen coordinates */
+final class OcrWord {
+
+    final String text;
+    final Rectangle box;
+    final double score;
+
+    OcrWord(String text, Rectangle box, double score) {
+        this.text = text;
+        this.box = box;
+        this.score = score;
+    }
+
+    /* Two boxes are on the same line if their vertical extents overlap by half of the lower one */
+    static boolean sameLine(Rectangle a, Rectangle b) {
+        int overlap = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+        return overlap * 2 >= Math.min(a.height, b.height);
+    }
+
+    @Override
+    public String toString() {
+        return text + "@" + box.x + "," + box.y + "," + box.width + "," + box.height;
+    }
+}
@@ -0,0 +1,163 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/* Runs the searches of several candidate objects concurrently on a pool   */
+/* sized to the number of cores, and picks the winner deterministically:   */
+/* ORDER prefers the earliest candidate in the argument list, SCORE the    */
+/* best similarity score with the argument order breaking the ties.        */
+/* With ORDER the remaining searches are cancelled as soon as the winner   */
+/* is known, i.e. once every candidate before a found one has failed.      */
+/* The searches return their match, whose score is read by the Scorer.     */
+class ParallelSearch<T> {
+
+    enum Priority { ORDER, SCORE }
+
+    /* The similarity score of a found match */
+    interface Scorer<T> {
+        double score(T match);
+    }
+
+    /* The winning candidate and its match */
+    static class Hit<T> {
+        final int index;
+        final T match;
+
+        Hit(int index, T match) {
+            this.index = index;
+            this.match = match;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final Scorer<T> scorer;
+    private volatile Priority priority = Priority.ORDER;
+
+    ParallelSearch(Scorer<T> scorer) {
+        this(Runtime.getRuntime().availableProcessors(), scorer);
+    }
+
+    ParallelSearch(int threads, Scorer<T> scorer) {
+        this.scorer = scorer;
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SikuliSearch-" + (++count));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    Priority getPriority() {
+        return priority;
+    }
+
+    /* Returns the winning candidate, or null if none of the searches found anything */
+    Hit<T> first(List<Callable<T>> searches) throws InterruptedException {
+        int n = searches.size();
+        CompletionService<T> completion = new ExecutorCompletionService<T>(pool);
+        List<Future<T>> futures = new ArrayList<Future<T>>(n);
+        for (Callable<T> search : searches) {
+            futures.add(completion.submit(search));
+        }
+        List<T> results = new ArrayList<T>(Collections.<T>nCopies(n, null));
+        boolean[] done = new boolean[n];
+        Hit<T> winner = null;
+        try {
+            for (int completed = 0; completed < n && winner == null; completed++) {
+                Future<T> f = completion.take();
+                int i = futures.indexOf(f);
+                done[i] = true;
+                results.set(i, result(f));
+                if (priority == Priority.ORDER) {
+                    winner = decided(results, done);
+                }
+            }
+            if (priority == Priority.SCORE) {
+                winner = best(results);
+            }
+        } finally {
+            for (Future<T> f : futures) {
+                f.cancel(true);
+            }
+        }
+        return winner;
+    }
+
+    /* Runs all the searches to the end, the results are in the order of the searches */
+    /* and a failed search gives null                                                 */
+    List<T> all(List<Callable<T>> searches) throws InterruptedException {
+        List<Future<T>> futures = new ArrayList<Future<T>>(searches.size());
+        for (Callable<T> search : searches) {
+            futures.add(pool.submit(search));
+        }
+        List<T> results = new ArrayList<T>(futures.size());
+        try {
+            for (Future<T> f : futures) {
+                results.add(result(f));
+            }
+        } finally {
+            for (Future<T> f : futures) {
+                f.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /* The earliest found candidate, once all the candidates before it are known to have failed */
+    private Hit<T> decided(List<T> results, boolean[] done) {
+        for (int i = 0; i < results.size(); i++) {
+            if (!done[i]) {
+                return null;
+            }
+            if (results.get(i) != null) {
+                return new Hit<T>(i, results.get(i));
+            }
+        }
+        return null;
+    }
+
+    private Hit<T> best(List<T> results) {
+        Hit<T> best = null;
+        double bestScore = 0.0D;
+        for (int i = 0; i < results.size(); i++) {
+            T m = results.get(i);
+            if (m != null) {
+                double score = scorer.score(m);
+                if (best == null || score > bestScore) {
+                    best = new Hit<T>(i, m);
+                    bestScore = score;
+                }
+            }
+        }
+        return best;
+    }
+
+    /* A failed search counts as not found */
+    private T result(Future<T> f) throws InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.FileOutputStream;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* Latency histograms of the keywords and of the phases inside them.        */
+/* The library dispatcher brackets every keyword call with keywordStarted   */
+/* and keywordFinished; in between, the search and input code adds the time */
+/* spent in each phase and counts the retries. At the end of the call the   */
+/* totals are recorded into the histograms of the keyword. Each thread has  */
+/* its own call in progress, so parallel callers do not mix their phases.   */
+/* Recording does not allocate once a keyword has been seen. All times in   */
+/* microseconds.                                                            */
+public final class PerformanceStats {
+
+    /* The phases of a keyword call */
+    enum Phase {
+        SLEEP("sleep"),             // waitAfterAction
+        CAPTURE("capture"),
+        GRAY("grayscale"),
+        MATCH("match"),             // template matching
+        OCR("ocr"),
+        INPUT("input"),             // mouse and keyboard dispatch
+        POLL("retry_wait");         // waiting between the polls of the find retries
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final PerformanceStats SHARED = new PerformanceStats();
+
+    private static final class KeywordStats {
+        final LatencyHistogram total = new LatencyHistogram();
+        final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+        final LatencyHistogram retries = new LatencyHistogram();
+
+        KeywordStats() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    /* The phase totals of one keyword call, kept by the thread running it */
+    static final class Call {
+        private final long[] phases = new long[PHASES.length];
+        private long startNanos;
+        private long lastMark;
+        private long retries;
+    }
+
+    private final Map<String, KeywordStats> keywords = new TreeMap<String, KeywordStats>();
+    private final ThreadLocal<Call> calls = new ThreadLocal<Call>() {
+        @Override
+        protected Call initialValue() {
+            return new Call();
+        }
+    };
+
+    /* The statistics shared by the dispatcher and the keywords */
+    public static PerformanceStats shared() {
+        return SHARED;
+    }
+
+    public void keywordStarted() {
+        Call c = calls.get();
+        synchronized (c) {
+            java.util.Arrays.fill(c.phases, 0L);
+            c.retries = 0;
+            c.startNanos = System.nanoTime();
+            c.lastMark = c.startNanos;
+        }
+    }
+
+    public void keywordFinished(String keyword) {
+        long end = System.nanoTime();
+        Call c = calls.get();
+        synchronized (this) {
+            KeywordStats stats = keywords.get(keyword);
+            if (stats == null) {
+                stats = new KeywordStats();
+                keywords.put(keyword, stats);
+            }
+            synchronized (c) {
+                stats.total.record((end - c.startNanos) / 1000L);
+                for (int i = 0; i < c.phases.length; i++) {
+                    stats.phases[i].record(c.phases[i] / 1000L);
+                }
+                stats.retries.record(c.retries);
+            }
+        }
+    }
+
+    /* The keyword call of the calling thread, for handing over to the worker threads of a search */
+    Call currentCall() {
+        return calls.get();
+    }
+
+    /* Adds the phases of the worker thread to the given call, null detaches the thread again */
+    void attach(Call c) {
+        if (c == null) {
+            calls.remove();
+        } else {
+            calls.set(c);
+        }
+    }
+
+    /* Adds the time of a phase that started at the given System.nanoTime() */
+    void add(Phase phase, long startedNanos) {
+        long now = System.nanoTime();
+        Call c = calls.get();
+        synchronized (c) {
+            c.phases[phase.ordinal()] += now - startedNanos;
+            c.lastMark = now;
+        }
+    }
+
+    /* The input dispatch is the time since the end of the previous phase */
+    void inputSent() {
+        long now = System.nanoTime();
+        Call c = calls.get();
+        synchronized (c) {
+            c.phases[Phase.INPUT.ordinal()] += now - c.lastMark;
+            c.lastMark = now;
+        }
+    }
+
+    void retry() {
+        Call c = calls.get();
+        synchronized (c) {
+            c.retries++;
+        }
+    }
+
+    synchronized void reset() {
+        keywords.clear();
+    }
+
+    /* Human readable table: count, mean, percentiles and max per keyword and phase, in milliseconds */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-28s %8s %9s %9s %9s %9s %9s%n",
+                                "keyword / phase", "calls", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, KeywordStats> e : keywords.entrySet()) {
+            KeywordStats stats = e.getValue();
+            row(sb, e.getKey(), stats.total);
+            for (int i = 0; i < PHASES.length; i++) {
+                if (stats.phases[i].getMax() > 0) {
+                    row(sb, "  " + PHASES[i].label, stats.phases[i]);
+                }
+            }
+            if (stats.retries.getMax() > 0) {
+                sb.append(String.format(Locale.ROOT, "  %-26s %8s %9.1f %9d %9d %9d %9d%n", "retries", "",
+                                        stats.retries.getMean(), stats.retries.percentile(0.5D),
+                                        stats.retries.percentile(0.9D), stats.retries.percentile(0.99D),
+                                        stats.retries.getMax()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, String name, LatencyHistogram h) {
+        sb.append(String.format(Locale.ROOT, "%-28s %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, h.getCount(),
+                                h.getMean() / 1000.0D, h.percentile(0.5D) / 1000.0D, h.percentile(0.9D) / 1000.0D,
+                                h.percentile(0.99D) / 1000.0D, h.getMax() / 1000.0D));
+    }
+
+    /* Prometheus text exposition format, the latencies as summaries in seconds */
+    synchronized String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP sikuli_keyword_seconds Latency of the library keywords.\n");
+        sb.append("# TYPE sikuli_keyword_seconds summary\n");
+        for (Map.Entry<String, KeywordStats> e : keywords.entrySet()) {
+            summary(sb, "sikuli_keyword_seconds", "keyword=\"" + e.getKey() + "\"", e.getValue().total);
+        }
+        sb.append("# HELP sikuli_keyword_phase_seconds Time spent in each phase of the library keywords.\n");
+        sb.append("# TYPE sikuli_keyword_phase_seconds summary\n");
+        for (Map.Entry<String, KeywordStats> e : keywords.entrySet()) {
+            for (int i = 0; i < PHASES.length; i++) {
+                summary(sb, "sikuli_keyword_phase_seconds",
+                        "keyword=\"" + e.getKey() + "\",phase=\"" + PHASES[i].label + "\"", e.getValue().phases[i]);
+            }
+        }
+        sb.append("# HELP sikuli_keyword_retries_total Find retries of the library keywords.\n");
+        sb.append("# TYPE sikuli_keyword_retries_total counter\n");
+        for (Map.Entry<String, KeywordStats> e : keywords.entrySet()) {
+            sb.append("sikuli_keyword_retries_total{keyword=\"").append(e.getKey()).append("\"} ")
+              .append(e.getValue().retries.getSum()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void summary(StringBuilder sb, String metric, String labels, LatencyHistogram h) {
+        double[] quantiles = {0.5D, 0.9D, 0.99D};
+        for (double q : quantiles) {
+            sb.append(metric).append('{').append(labels).append(",quantile=\"").append(q).append("\"} ")
+              .append(seconds(h.percentile(q))).append('\n');
+        }
+        sb.append(metric).append("_sum{").append(labels).append("} ").append(seconds(h.getSum())).append('\n');
+        sb.append(metric).append("_count{").append(labels).append("} ").append(h.getCount()).append('\n');
+    }
+
+    /* JSON with the same content, the latencies in milliseconds */
+    synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"keywords\": {");
+        String sep = "\n";
+        for (Map.Entry<String, KeywordStats> e : keywords.entrySet()) {
+            KeywordStats stats = e.getValue();
+            sb.append(sep).append("    \"").append(e.getKey()).append("\": {\n");
+            sb.append("      \"total\": ").append(json(stats.total)).append(",\n");
+            sb.append("      \"phases\": {");
+            for (int i = 0; i < PHASES.length; i++) {
+                sb.append(i == 0 ? "\n" : ",\n");
+                sb.append("        \"").append(PHASES[i].label).append("\": ").append(json(stats.phases[i]));
+            }
+            sb.append("\n      },\n");
+            sb.append("      \"retries\": ").append(stats.retries.getSum()).append("\n    }");
+            sep = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    private static String json(LatencyHistogram h) {
+        return String.format(Locale.ROOT, "{\"count\": %d, \"mean_ms\": %.3f, \"p50_ms\": %.3f, \"p90_ms\": %.3f, "
+                             + "\"p99_ms\": %.3f, \"max_ms\": %.3f}", h.getCount(), h.getMean() / 1000.0D,
+                             h.percentile(0.5D) / 1000.0D, h.percentile(0.9D) / 1000.0D,
+                             h.percentile(0.99D) / 1000.0D, h.getMax() / 1000.0D);
+    }
+
+    private static String seconds(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1000000.0D);
+    }
+
+    /* JSON for files ending with .json, the Prometheus text format otherwise */
+    void write(File file) throws IOException {
+        String content = file.getName().toLowerCase().endsWith(".json") ? toJson() : toPrometheus();
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.script.Finder;
+import org.sikuli.script.Match;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/* Coarse level of the coarse-to-fine template matching.                    */
+/* The frame and the template are downsampled by an integer factor with a    */
+/* box filter, the template is searched from the small frame with a relaxed  */
+/* similarity, and the candidate peaks are returned as small full resolution */
+/* windows, where the caller refines them with the exact search.             */
+class PyramidMatcher {
+
+    /* The coarse search accepts candidates this much below the final similarity */
+    static final double CANDIDATE_SLACK = 0.15D;
+    /* Templates smaller than this after downsampling are searched exactly */
+    static final int MIN_COARSE_SIZE = 12;
+
+    private ScreenImage coarseSource;
+    private BufferedImage coarseFrame;
+    private int coarseFactor;
+    private final Map<BufferedImage, BufferedImage> coarseTemplates = new WeakHashMap<BufferedImage, BufferedImage>();
+
+    /* Downsampling factor for the frame and the template, 1 means that the pyramid is not worth it */
+    static int factorFor(Rectangle screen, BufferedImage template) {
+        int factor = (screen.width >= 2560) ? 4 : 2;
+        while (factor > 1 && Math.min(template.getWidth(), template.getHeight()) / factor < MIN_COARSE_SIZE) {
+            factor /= 2;
+        }
+        return factor;
+    }
+
+    /* Full resolution windows around the best coarse candidates, best candidate first,      */
+    /* or null when the template is too small for the coarse search. area may be null.       */
+    synchronized List<Rectangle> candidates(ScreenImage frame, Rectangle area, BufferedImage template,
+                                            double minSimilarity, int max) {
+        Rectangle roi = frame.getROI();
+        int f = factorFor(roi, template);
+        if (f < 2) {
+            return null;
+        }
+        BufferedImage small = coarseFrame(frame, f);
+        BufferedImage smallTemplate = coarseTemplate(template, f);
+        Rectangle search = (area == null) ? roi : area.intersection(roi);
+        int cx = Math.max(0, (search.x - roi.x) / f);
+        int cy = Math.max(0, (search.y - roi.y) / f);
+        int cw = Math.min(small.getWidth() - cx, (search.width + f - 1) / f + 1);
+        int ch = Math.min(small.getHeight() - cy, (search.height + f - 1) / f + 1);
+        List<Rectangle> windows = new ArrayList<Rectangle>();
+        if (cw < smallTemplate.getWidth() || ch < smallTemplate.getHeight()) {
+            return windows;
+        }
+        List<Match> found = new ArrayList<Match>();
+        Finder finder = new Finder(new ScreenImage(new Rectangle(cx, cy, cw, ch), small.getSubimage(cx, cy, cw, ch)));
+        try {
+            finder.findAll(new Pattern(smallTemplate).similar((float) Math.max(0.3D, minSimilarity - CANDIDATE_SLACK)));
+            while (finder.hasNext()) {
+                found.add(finder.next());
+            }
+        } finally {
+            finder.destroy();
+        }
+        Collections.sort(found, new Comparator<Match>() {
+            public int compare(Match a, Match b) {
+                return Double.compare(b.getScore(), a.getScore());
+            }
+        });
+        int pad = 2 * f;
+        for (Match m : found) {
+            if (windows.size() >= max) break;
+            Rectangle w = new Rectangle(roi.x + (cx + m.x) * f - pad, roi.y + (cy + m.y) * f - pad,
+                                        template.getWidth() + 2 * pad, template.getHeight() + 2 * pad);
+            windows.add(w.intersection(search));
+        }
+        return windows;
+    }
+
+    /* The downsampled frame is shared by all the searches on the same frame */
+    private BufferedImage coarseFrame(ScreenImage frame, int f) {
+        if (coarseSource != frame || coarseFactor != f) {
+            coarseFrame = downsample(frame.getImage(), f);
+            coarseSource = frame;
+            coarseFactor = f;
+        }
+        return coarseFrame;
+    }
+
+    private BufferedImage coarseTemplate(BufferedImage template, int f) {
+        BufferedImage small = coarseTemplates.get(template);
+        if (small == null || small.getWidth() != template.getWidth() / f) {
+            small = downsample(template, f);
+            coarseTemplates.put(template, small);
+        }
+        return small;
+    }
+
+    /* Box filter: each output pixel is the average of a factor x factor block */
+    static BufferedImage downsample(BufferedImage src, int factor) {
+        int sw = src.getWidth();
+        int w = sw / factor;
+        int h = src.getHeight() / factor;
+        BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int[] block = new int[sw * factor];
+        int[] out = new int[w];
+        int n = factor * factor;
+        for (int y = 0; y < h; y++) {
+            src.getRGB(0, y * factor, sw, factor, block, 0, sw);
+            for (int x = 0; x < w; x++) {
+                int r = 0, g = 0, b = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    int row = dy * sw + x * factor;
+                    for (int dx = 0; dx < factor; dx++) {
+                        int p = block[row + dx];
+                        r += (p >> 16) & 0xff;
+                        g += (p >> 8) & 0xff;
+                        b += p & 0xff;
+                    }
+                }
+                out[x] = ((r / n) << 16) | ((g / n) << 8) | (b / n);
+            }
+            dst.setRGB(0, y, w, 1, out, 0, w);
+        }
+        return dst;
+    }
+}
@@ -0,0 +1,122 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/* Replays recorded frames from a directory of image files, in the order of  */
+/* the file names. Each capture advances to the next frame, and the last      */
+/* frame is repeated once the recording has been played through. Only the    */
+/* current frame is kept decoded, so long recordings do not fill the memory. */
+class RecordedScreenSource implements ScreenSource {
+
+    private final File[] files;
+    private final Rectangle bounds;
+    private int next;
+    private int decoded;
+    private BufferedImage current;
+
+    RecordedScreenSource(File directory) throws IOException {
+        File[] found = directory.listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                String name = f.getName().toLowerCase();
+                return f.isFile() && (name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".bmp"));
+            }
+        });
+        if (found == null || found.length == 0) {
+            throw new IOException("No recorded frames in " + directory);
+        }
+        Arrays.sort(found);
+        files = found;
+        current = decode(files[0]);
+        bounds = new Rectangle(0, 0, current.getWidth(), current.getHeight());
+    }
+
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    public synchronized BufferedImage capture() {
+        if (next < files.length) {
+            if (decoded != next) {
+                try {
+                    current = decode(files[next]);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not decode the recorded frame " + files[next], e);
+                }
+                decoded = next;
+            }
+            next++;
+        }
+        return current;
+    }
+
+    /* The decoded frames are returned as such, nothing is allocated for a repeated frame */
+    public BufferedImage capture(BufferedImage reuse) {
+        return capture();
+    }
+
+    /* The frame the replay is at, the captures of the observer do not move the replay */
+    public ScreenSource observer() {
+        return new ScreenSource() {
+            public Rectangle getBounds() {
+                return RecordedScreenSource.this.getBounds();
+            }
+
+            public BufferedImage capture() {
+                return current();
+            }
+
+            public BufferedImage capture(BufferedImage reuse) {
+                return current();
+            }
+
+            public ScreenSource observer() {
+                return this;
+            }
+
+            @Override
+            public String toString() {
+                return "observer of " + RecordedScreenSource.this;
+            }
+        };
+    }
+
+    synchronized BufferedImage current() {
+        return current;
+    }
+
+    /* Starts the replay again from the first frame */
+    synchronized void rewind() {
+        next = 0;
+    }
+
+    synchronized int getPosition() {
+        return next;
+    }
+
+    int size() {
+        return files.length;
+    }
+
+    private BufferedImage decode(File file) throws IOException {
+        BufferedImage img = ImageIO.read(file);
+        if (img == null) {
+            throw new IOException("Could not decode image file " + file);
+        }
+        if (bounds != null && (img.getWidth() != bounds.width || img.getHeight() != bounds.height)) {
+            throw new IOException("Recorded frame " + file + " is not " + bounds.width + "x" + bounds.height);
+        }
+        return img;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "recorded frames " + next + "/" + files.length + " from " + files[0].getParentFile();
+    }
+}
@@ -0,0 +1,327 @@
+package org.robotframework.sikulirobotlibrary;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.robotframework.javalib.library.KeywordDocumentationRepository;
+import org.robotframework.javalib.library.RobotJavaLibrary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/* Robot Framework remote library server over XML-RPC.                       */
+/* The library stays loaded in one long-lived JVM, so the test runs do not  */
+/* pay for the JVM startup, the native libraries and the OCR initialization */
+/* again, and the template, OCR and location caches stay warm between the   */
+/* suites. Each listening port serves one screen: the calls to a port run   */
+/* one at a time on a thread of its own, which is bound to the session of   */
+/* that screen (see UseScreen), so parallel workers given separate ports do */
+/* not share any keyword state. Only the loopback interface is listened.    */
+public final class RemoteServer {
+
+    static final String STOP = "stop_remote_server";
+
+    private static OutputRouter router;
+
+    private final RobotJavaLibrary library;
+    private final KeywordDocumentationRepository docs;
+    private final List<HttpServer> servers = new ArrayList<HttpServer>();
+    private final List<ExecutorService> workers = new ArrayList<ExecutorService>();
+    private Map<String, String> names;
+
+    public RemoteServer(RobotJavaLibrary library, KeywordDocumentationRepository docs) {
+        this.library = library;
+        this.docs = docs;
+        installOutputRouter();
+    }
+
+    /* Starts serving the given screen on a loopback port, 0 picks a free port. Returns the port. */
+    public int serve(int port, final int screen) throws Exception {
+        ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SikuliRemote-screen" + screen);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (screen != 0) {
+            // the worker thread keeps the binding for all the calls of this port
+            Map<String, Object> bound = worker.submit(new Callable<Map<String, Object>>() {
+                public Map<String, Object> call() {
+                    return runKeyword("useScreen", Arrays.<Object>asList(String.valueOf(screen)));
+                }
+            }).get();
+            if (!"PASS".equals(bound.get("status"))) {
+                worker.shutdown();
+                throw new IllegalStateException("Cannot use screen " + screen + ": " + bound.get("error"));
+            }
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 16);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        server.setExecutor(worker);
+        server.start();
+        synchronized (servers) {
+            servers.add(server);
+            workers.add(worker);
+        }
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        synchronized (servers) {
+            for (HttpServer server : servers) {
+                server.stop(0);
+            }
+            for (ExecutorService worker : workers) {
+                worker.shutdown();
+            }
+            servers.clear();
+            workers.clear();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String body;
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            body = XmlRpc.fault(1, "XML-RPC calls are POSTed");
+        } else {
+            try {
+                XmlRpc.Call call = XmlRpc.parseCall(exchange.getRequestBody());
+                body = XmlRpc.response(dispatch(call.method, call.params));
+            } catch (Exception e) {
+                body = XmlRpc.fault(1, message(e));
+            }
+        }
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /* The methods of the remote library interface */
+    Object dispatch(String method, List<Object> params) {
+        if (method.equals("get_keyword_names")) {
+            List<String> list = new ArrayList<String>(keywordNames().values());
+            list.add(STOP);
+            return list;
+        } else if (method.equals("run_keyword")) {
+            List<Object> args = new ArrayList<Object>();
+            if (params.size() > 1 && params.get(1) instanceof List) {
+                args.addAll((List<?>) params.get(1));
+            }
+            if (params.size() > 2 && params.get(2) instanceof Map) {
+                // the library has no named arguments, they are passed on in the name=value form
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) params.get(2)).entrySet()) {
+                    args.add(e.getKey() + "=" + e.getValue());
+                }
+            }
+            return runKeyword(String.valueOf(params.get(0)), args);
+        } else if (method.equals("get_keyword_arguments")) {
+            String name = String.valueOf(params.get(0));
+            if (name.equals(STOP) || name.startsWith("__")) {
+                return new String[0];
+            }
+            return docs.getKeywordArguments(keywordName(name));
+        } else if (method.equals("get_keyword_documentation")) {
+            String name = String.valueOf(params.get(0));
+            if (name.equals(STOP)) {
+                return "Stops the remote server of the library.";
+            } else if (name.equals("__intro__")) {
+                return "SikuliX library served by SikuliRobotLibrary remote server.";
+            } else if (name.startsWith("__")) {
+                return "";
+            }
+            return docs.getKeywordDocumentation(keywordName(name));
+        } else if (method.equals("get_keyword_tags") || method.equals("get_keyword_types")) {
+            return new String[0];
+        } else if (method.equals(STOP)) {
+            stopLater();
+            return Boolean.TRUE;
+        }
+        throw new IllegalArgumentException("Unknown method: " + method);
+    }
+
+    /* Runs a keyword, the result struct carries its printed output and its return value or failure */
+    Map<String, Object> runKeyword(String name, List<Object> args) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        if (name.equals(STOP)) {
+            stopLater();
+            result.put("status", "PASS");
+            result.put("output", "");
+            result.put("return", "");
+            return result;
+        }
+        Object[] values = new Object[args.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = argument(args.get(i));
+        }
+        ByteArrayOutputStream output = router.begin();
+        try {
+            Object value = library.runKeyword(keywordName(name), values);
+            result.put("status", "PASS");
+            result.put("return", (value == null) ? "" : value);
+        } catch (Throwable t) {
+            Throwable cause = rootCause(t);
+            StringWriter trace = new StringWriter();
+            cause.printStackTrace(new PrintWriter(trace));
+            result.put("status", "FAIL");
+            result.put("error", message(cause));
+            result.put("traceback", trace.toString());
+        } finally {
+            router.end();
+        }
+        String out;
+        try {
+            out = output.toString("UTF-8");
+        } catch (IOException e) {
+            out = output.toString();
+        }
+        result.put("output", out);
+        return result;
+    }
+
+    /* The keywords take strings, the lists of the varargs keywords are passed as string arrays */
+    private static Object argument(Object arg) {
+        if (arg instanceof List) {
+            List<?> list = (List<?>) arg;
+            String[] strings = new String[list.size()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = String.valueOf(list.get(i));
+            }
+            return strings;
+        } else if (arg == null || arg instanceof String || arg instanceof byte[] || arg instanceof Map) {
+            return arg;
+        }
+        return String.valueOf(arg);
+    }
+
+    /* The keyword names are matched like in Robot: case, spaces and underscores do not matter */
+    private synchronized Map<String, String> keywordNames() {
+        if (names == null) {
+            names = new LinkedHashMap<String, String>();
+            for (String name : library.getKeywordNames()) {
+                names.put(normalize(name), name);
+            }
+        }
+        return names;
+    }
+
+    private String keywordName(String name) {
+        String known = keywordNames().get(normalize(name));
+        return (known != null) ? known : name;
+    }
+
+    static String normalize(String name) {
+        return name.replace(" ", "").replace("_", "").toLowerCase();
+    }
+
+    /* The reply is sent before the servers are stopped */
+    private void stopLater() {
+        Thread t = new Thread("SikuliRemote-stop") {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {}
+                RemoteServer.this.stop();
+            }
+        };
+        t.start();
+    }
+
+    private static Throwable rootCause(Throwable t) {
+        while (t.getCause() != null && t.getCause() != t
+               && (t instanceof InvocationTargetException || t.getClass() == RuntimeException.class)) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static String message(Throwable t) {
+        String msg = t.getMessage();
+        return (msg == null || msg.length() == 0) ? t.getClass().getSimpleName() : msg;
+    }
+
+    private static synchronized void installOutputRouter() {
+        if (router == null) {
+            router = new OutputRouter(System.out);
+            try {
+                System.setOut(new PrintStream(router, true, "UTF-8"));
+            } catch (IOException e) {
+                System.setOut(new PrintStream(router, true));
+            }
+        }
+    }
+
+    /* Collects what the keywords print on the thread running them into the output of the */
+    /* call, everything printed by the other threads goes to the console as before         */
+    private static final class OutputRouter extends OutputStream {
+
+        private final PrintStream console;
+        private final ThreadLocal<ByteArrayOutputStream> capture = new ThreadLocal<ByteArrayOutputStream>();
+
+        OutputRouter(PrintStream console) {
+            this.console = console;
+        }
+
+        ByteArrayOutputStream begin() {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+            capture.set(buffer);
+            return buffer;
+        }
+
+        void end() {
+            System.out.flush();
+            capture.remove();
+        }
+
+        @Override
+        public void write(int b) {
+            ByteArrayOutputStream buffer = capture.get();
+            if (buffer != null) {
+                buffer.write(b);
+            } else {
+                console.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ByteArrayOutputStream buffer = capture.get();
+            if (buffer != null) {
+                buffer.write(b, off, len);
+            } else {
+                console.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() {
+            console.flush();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/* Keeps the last seconds of the screen for the failure reports.            */
+/* A daemon thread captures the screen source at a fixed rate, so the       */
+/* keywords do not wait for it. The frames are stored in a fixed-size ring  */
+/* buffer outside the Java heap as deltas: a record holds only the 32x32    */
+/* tiles that changed since the previous frame. The oldest record is folded */
+/* into a base frame when it falls out of the time window or the buffer is  */
+/* full, so every frame in the window can be rebuilt from the base frame    */
+/* and the records after it. Nothing is allocated per captured frame when   */
+/* the source reuses its image. The recorder reads an observer of the      */
+/* screen source of the keywords (see ScreenSource), so a replay is not     */
+/* moved on by the recorder.                                                */
+class ScreenRecorder {
+
+    static final int TILE = 32;
+    /* record header: length, time high, time low, tile count */
+    private static final int HEADER = 4;
+
+    private volatile ScreenSource source;
+    private final long periodMillis;
+    private final long windowMillis;
+    private final IntBuffer ring;
+    private final int capacity;
+    private int head;
+    private int tail;
+    private int used;
+    private int records;
+
+    private Rectangle bounds;
+    private int width;
+    private int height;
+    private int tilesX;
+    private int tilesY;
+    private IntBuffer base;
+    private long baseTime;
+    private int[] previous;
+    private int[] pixels;
+    private boolean[] changed;
+    private final int[] row = new int[TILE];
+
+    private volatile boolean running;
+    private Thread thread;
+    private long captured;
+    private long captureNanos;
+
+    ScreenRecorder(ScreenSource source, double fps, double seconds, long maxBytes) {
+        this.source = source;
+        this.periodMillis = Math.max(1L, (long)(1000.0D / fps));
+        this.windowMillis = (long)(seconds * 1000.0D);
+        this.capacity = (int) Math.min(Integer.MAX_VALUE / 4, maxBytes / 4);
+        this.ring = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /* The next captures come from the given source, e.g. after UseScreenSource */
+    void setSource(ScreenSource source) {
+        this.source = source;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(new Runnable() {
+            public void run() {
+                loop();
+            }
+        }, "SikuliScreenRecorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            t.interrupt();
+            t.join();
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        BufferedImage img = null;
+        while (running) {
+            long start = System.currentTimeMillis();
+            try {
+                long t0 = System.nanoTime();
+                // the pixels are copied into the ring, so the same image can take the next capture
+                ScreenSource from = source;
+                img = from.capture(img);
+                Rectangle r = from.getBounds();
+                synchronized (this) {
+                    add(img, r, start);
+                    captured++;
+                    captureNanos += System.nanoTime() - t0;
+                }
+            } catch (RuntimeException e) {
+                // a failed capture is skipped, the next one may succeed
+            }
+            long sleep = periodMillis - (System.currentTimeMillis() - start);
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /* Appends a frame captured at the given time */
+    synchronized void add(BufferedImage img, Rectangle r, long time) {
+        int[] frame = pixelsOf(img);
+        if (base == null || img.getWidth() != width || img.getHeight() != height) {
+            reset(img.getWidth(), img.getHeight());
+            bounds = new Rectangle(r);
+            rebase(frame, time);
+            return;
+        }
+        bounds = new Rectangle(r);
+        int size = HEADER;
+        int count = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                int t = ty * tilesX + tx;
+                changed[t] = tileChanged(frame, tx, ty);
+                if (changed[t]) {
+                    size += 1 + tileWidth(tx) * tileHeight(ty);
+                    count++;
+                }
+            }
+        }
+        if (size > capacity) {
+            rebase(frame, time);
+            return;
+        }
+        while (records > 0 && (capacity - used < size || time - recordTime(head) >= windowMillis)) {
+            fold();
+        }
+        put(size);
+        put((int)(time >>> 32));
+        put((int) time);
+        put(count);
+        for (int t = 0; t < changed.length; t++) {
+            if (!changed[t]) continue;
+            int tx = t % tilesX;
+            int ty = t / tilesX;
+            int x0 = tx * TILE;
+            int w = tileWidth(tx);
+            put(t);
+            for (int y = ty * TILE, y1 = y + tileHeight(ty); y < y1; y++) {
+                put(frame, y * width + x0, w);
+                System.arraycopy(frame, y * width + x0, previous, y * width + x0, w);
+            }
+        }
+        used += size;
+        records++;
+    }
+
+    /* Number of frames that can be rebuilt: the base frame and one per record */
+    synchronized int frames() {
+        return (base == null) ? 0 : records + 1;
+    }
+
+    /* Rebuilds the frames of the window and writes them as PNG files into the directory, */
+    /* followed by recording.txt with the given report lines and the frame times.         */
+    /* Frames identical to the previous one are listed but not written again.             */
+    synchronized int dump(File dir, List<String> report) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create the recording directory " + dir);
+        }
+        StringBuilder index = new StringBuilder();
+        for (String line : report) {
+            index.append(line).append('\n');
+        }
+        if (base == null) {
+            index.append("No frames recorded\n");
+            write(new File(dir, "recording.txt"), index.toString());
+            return 0;
+        }
+        long end = (records > 0) ? recordTime(lastRecord()) : baseTime;
+        index.append("Screen ").append(bounds.x).append(',').append(bounds.y).append(' ')
+             .append(width).append('x').append(height).append(", ").append(records + 1).append(" frames\n");
+        int[] state = new int[width * height];
+        base.position(0);
+        base.get(state);
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int written = 0;
+        String file = String.format("frame-%03d.png", 0);
+        writeFrame(img, state, new File(dir, file));
+        written++;
+        index.append(String.format("%s %+d ms%n", file, baseTime - end));
+        int p = head;
+        for (int i = 0; i < records; i++) {
+            int n = get(p + 3);
+            if (n > 0) {
+                apply(p, state);
+                file = String.format("frame-%03d.png", i + 1);
+                writeFrame(img, state, new File(dir, file));
+                written++;
+            }
+            index.append(String.format("%s %+d ms%s%n", file, recordTime(p) - end, (n > 0) ? "" : " (unchanged)"));
+            p = (p + get(p)) % capacity;
+        }
+        write(new File(dir, "recording.txt"), index.toString());
+        return written;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long kb = ((base == null) ? 0L : 4L * width * height + 4L * used) / 1024;
+        return "Screen recorder: " + (running ? "running" : "stopped") + ", " + frames() + " frames in "
+               + kb + " kB (ring " + (4L * capacity / 1024) + " kB), captured " + captured
+               + String.format(" (mean capture %.1f ms)", (captured == 0) ? 0.0D : captureNanos / 1e6D / captured);
+    }
+
+    private void reset(int w, int h) {
+        width = w;
+        height = h;
+        tilesX = (w + TILE - 1) / TILE;
+        tilesY = (h + TILE - 1) / TILE;
+        changed = new boolean[tilesX * tilesY];
+        previous = new int[w * h];
+        base = ByteBuffer.allocateDirect(4 * w * h).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /* The frame becomes the base frame and the ring is emptied */
+    private void rebase(int[] frame, long time) {
+        base.position(0);
+        base.put(frame, 0, width * height);
+        System.arraycopy(frame, 0, previous, 0, width * height);
+        baseTime = time;
+        head = 0;
+        tail = 0;
+        used = 0;
+        records = 0;
+    }
+
+    /* The oldest record is applied to the base frame and dropped */
+    private void fold() {
+        int n = get(head + 3);
+        int p = head + HEADER;
+        for (int i = 0; i < n; i++) {
+            int t = get(p++);
+            int tx = t % tilesX;
+            int ty = t / tilesX;
+            int w = tileWidth(tx);
+            for (int y = ty * TILE, y1 = y + tileHeight(ty); y < y1; y++) {
+                get(p, row, w);
+                base.position(y * width + tx * TILE);
+                base.put(row, 0, w);
+                p += w;
+            }
+        }
+        baseTime = recordTime(head);
+        int length = get(head);
+        head = (head + length) % capacity;
+        used -= length;
+        records--;
+    }
+
+    private void apply(int record, int[] state) {
+        int n = get(record + 3);
+        int p = record + HEADER;
+        for (int i = 0; i < n; i++) {
+            int t = get(p++);
+            int tx = t % tilesX;
+            int ty = t / tilesX;
+            int w = tileWidth(tx);
+            for (int y = ty * TILE, y1 = y + tileHeight(ty); y < y1; y++) {
+                get(p, state, y * width + tx * TILE, w);
+                p += w;
+            }
+        }
+    }
+
+    private int lastRecord() {
+        int p = head;
+        for (int i = 1; i < records; i++) {
+            p = (p + get(p)) % capacity;
+        }
+        return p;
+    }
+
+    private boolean tileChanged(int[] frame, int tx, int ty) {
+        int x0 = tx * TILE;
+        int x1 = x0 + tileWidth(tx);
+        for (int y = ty * TILE, y1 = y + tileHeight(ty); y < y1; y++) {
+            int off = y * width;
+            for (int x = x0; x < x1; x++) {
+                if (frame[off + x] != previous[off + x]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int tileWidth(int tx) {
+        return Math.min(TILE, width - tx * TILE);
+    }
+
+    private int tileHeight(int ty) {
+        return Math.min(TILE, height - ty * TILE);
+    }
+
+    private long recordTime(int record) {
+        return ((long) get(record + 1) << 32) | (get(record + 2) & 0xffffffffL);
+    }
+
+    /* The pixels of the image as packed RGB, without a copy for the integer RGB images */
+    private int[] pixelsOf(BufferedImage img) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        if ((img.getType() == BufferedImage.TYPE_INT_RGB || img.getType() == BufferedImage.TYPE_INT_ARGB)
+            && img.getRaster().getDataBuffer() instanceof DataBufferInt) {
+            int[] data = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+            if (data.length == w * h && img.getRaster().getSampleModelTranslateX() == 0
+                && img.getRaster().getSampleModelTranslateY() == 0) {
+                return data;
+            }
+        }
+        if (pixels == null || pixels.length != w * h) {
+            pixels = new int[w * h];
+        }
+        img.getRGB(0, 0, w, h, pixels, 0, w);
+        return pixels;
+    }
+
+    private void put(int v) {
+        ring.put(tail, v);
+        tail = (tail + 1) % capacity;
+    }
+
+    private void put(int[] src, int off, int len) {
+        int first = Math.min(len, capacity - tail);
+        ring.position(tail);
+        ring.put(src, off, first);
+        if (first < len) {
+            ring.position(0);
+            ring.put(src, off + first, len - first);
+        }
+        tail = (tail + len) % capacity;
+    }
+
+    private int get(int index) {
+        return ring.get(index % capacity);
+    }
+
+    private void get(int index, int[] dst, int len) {
+        get(index, dst, 0, len);
+    }
+
+    private void get(int index, int[] dst, int off, int len) {
+        int p = index % capacity;
+        int first = Math.min(len, capacity - p);
+        ring.position(p);
+        ring.get(dst, off, first);
+        if (first < len) {
+            ring.position(0);
+            ring.get(dst, off + first, len - first);
+        }
+    }
+
+    private void writeFrame(BufferedImage img, int[] state, File file) throws IOException {
+        img.setRGB(0, 0, width, height, state, 0, width);
+        ImageIO.write(img, "png", file);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write(text);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/* Where the captured frames come from. Every find operation of the library  */
+/* searches frames captured through the FrameCache from the current source:  */
+/* the live screen, a directory of recorded frames, or an in-memory frame.   */
+/* Mouse and keyboard input always goes to the live screen.                  */
+interface ScreenSource {
+
+    /* The screen area covered by the frames, in screen coordinates */
+    Rectangle getBounds();
+
+    /* Captures a new frame of the whole area, the size matches getBounds() */
+    BufferedImage capture();
+
+    /* Like capture(), but the pixels are written into the given image when the source can, */
+    /* so no new frame is allocated. The image must not be used anywhere else. Returns the  */
+    /* frame, which is another image when the given one does not fit or is null.           */
+    BufferedImage capture(BufferedImage reuse);
+
+    /* A source for another reader of the same screen, like the screen recorder, so that its */
+    /* captures do not disturb the captures of this source. The replayed and injected frames */
+    /* are given as they are now, without moving to the next one.                            */
+    ScreenSource observer() throws IOException;
+}
@@ -0,0 +1,212 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Index of all the words recognized from one frame.                          */
+/* A single OCR pass builds the index, after which the text lookups are       */
+/* answered from it: exact, case-insensitive or fuzzy phrases, in reading     */
+/* order. The words are sorted into rows, and each word is reachable through  */
+/* its case-folded text. When a later frame differs only in places, the words */
+/* there are replaced with the recognition of the changed areas.             */
+class ScreenTextIndex {
+
+    private final Object frame;
+    private final boolean gray;
+    private final OcrWord[] words;
+    private final int[] rowOf;
+    private final Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+
+    ScreenTextIndex(Object frame, boolean gray, List<OcrWord> recognized) {
+        this.frame = frame;
+        this.gray = gray;
+        this.words = recognized.toArray(new OcrWord[recognized.size()]);
+        this.rowOf = new int[words.length];
+        readingOrder();
+        for (int i = 0; i < words.length; i++) {
+            String key = words[i].text.toLowerCase();
+            List<Integer> list = positions.get(key);
+            if (list == null) {
+                list = new ArrayList<Integer>(1);
+                positions.put(key, list);
+            }
+            list.add(i);
+        }
+    }
+
+    /* True when this index is up to date with the given frame */
+    boolean isFor(Object frame, boolean gray) {
+        return this.frame == frame && this.gray == gray;
+    }
+
+    boolean isGray() {
+        return gray;
+    }
+
+    int size() {
+        return words.length;
+    }
+
+    /* Grows the area to cover every indexed word it touches, so that recognizing the */
+    /* area again does not cut any of the words that are going to be replaced         */
+    Rectangle cover(Rectangle area) {
+        Rectangle covered = new Rectangle(area);
+        for (OcrWord w : words) {
+            if (w.box.intersects(area)) {
+                covered = covered.union(w.box);
+            }
+        }
+        return covered;
+    }
+
+    /* A new index for the given frame: the words in the areas are replaced with the fresh ones */
+    ScreenTextIndex update(Object frame, List<Rectangle> areas, List<OcrWord> fresh) {
+        List<OcrWord> kept = new ArrayList<OcrWord>(words.length + fresh.size());
+        for (OcrWord w : words) {
+            boolean replaced = false;
+            for (Rectangle area : areas) {
+                if (w.box.intersects(area)) {
+                    replaced = true;
+                    break;
+                }
+            }
+            if (!replaced) {
+                kept.add(w);
+            }
+        }
+        kept.addAll(fresh);
+        return new ScreenTextIndex(frame, gray, kept);
+    }
+
+    /* Finds the occurrences of a phrase as consecutive words on the same row, in reading  */
+    /* order. Each occurrence is returned as one word covering the whole phrase, scored by */
+    /* its least confident word. maxDistance is the number of character edits allowed in   */
+    /* the whole phrase.                                                                   */
+    List<OcrWord> lookup(String phrase, boolean ignoreCase, int maxDistance) {
+        String[] tokens = phrase.trim().split("\\s+");
+        List<OcrWord> found = new ArrayList<OcrWord>();
+        if (maxDistance <= 0) {
+            List<Integer> starts = positions.get(tokens[0].toLowerCase());
+            if (starts == null) {
+                return found;
+            }
+            for (int start : starts) {
+                OcrWord m = matchAt(start, tokens, ignoreCase, 0);
+                if (m != null) found.add(m);
+            }
+        } else {
+            for (int start = 0; start < words.length; start++) {
+                OcrWord m = matchAt(start, tokens, ignoreCase, maxDistance);
+                if (m != null) found.add(m);
+            }
+        }
+        return found;
+    }
+
+    private OcrWord matchAt(int start, String[] tokens, boolean ignoreCase, int maxDistance) {
+        if (start + tokens.length > words.length) {
+            return null;
+        }
+        Rectangle box = null;
+        double score = 1.0D;
+        int budget = maxDistance;
+        for (int k = 0; k < tokens.length; k++) {
+            OcrWord w = words[start + k];
+            if (rowOf[start + k] != rowOf[start]) {
+                return null;
+            }
+            String a = ignoreCase ? w.text.toLowerCase() : w.text;
+            String b = ignoreCase ? tokens[k].toLowerCase() : tokens[k];
+            if (!a.equals(b)) {
+                int d = (budget > 0) ? distance(a, b, budget) : 1;
+                if (d > budget) {
+                    return null;
+                }
+                budget -= d;
+            }
+            box = (box == null) ? new Rectangle(w.box) : box.union(w.box);
+            score = Math.min(score, w.score);
+        }
+        StringBuilder text = new StringBuilder(words[start].text);
+        for (int k = 1; k < tokens.length; k++) {
+            text.append(' ').append(words[start + k].text);
+        }
+        return new OcrWord(text.toString(), box, score);
+    }
+
+    /* Levenshtein distance, or max + 1 as soon as the distance is known to exceed max */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = (c == b.charAt(j - 1)) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+
+    /* Rows are formed top to bottom from words on the same line, words within a row left to right */
+    private void readingOrder() {
+        Integer[] order = new Integer[words.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return words[a].box.y - words[b].box.y;
+            }
+        });
+        final int[] row = new int[words.length];
+        int rows = -1;
+        Rectangle first = null;
+        for (Integer i : order) {
+            if (first == null || !OcrWord.sameLine(first, words[i].box)) {
+                first = words[i].box;
+                rows++;
+            }
+            row[i] = rows;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                if (row[a] != row[b]) return row[a] - row[b];
+                return words[a].box.x - words[b].box.x;
+            }
+        });
+        OcrWord[] sorted = new OcrWord[words.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = words[order[i]];
+            rowOf[i] = row[order[i]];
+        }
+        System.arraycopy(sorted, 0, words, 0, sorted.length);
+    }
+
+    List<OcrWord> words() {
+        return Collections.unmodifiableList(Arrays.asList(words));
+    }
+}
@@ -0,0 +1,272 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/* Writes the screenshots on a background thread, so that the keyword only  */
+/* reserves the file name and queues the frame. The queue is bounded by the */
+/* pixel memory of the pending frames: when it is full, the caller waits    */
+/* for the writer. Every file name is reserved with createNewFile, so two   */
+/* screenshots taken in the same second, even by different processes,      */
+/* never overwrite each other. After each write, the oldest screenshots of  */
+/* the directory are deleted if the optional file count or size cap is     */
+/* exceeded. The queued frames are not modified after the capture. A file   */
+/* that could not be encoded is deleted and the failure is logged.          */
+class ScreenshotWriter {
+
+    private static final class Job {
+        final BufferedImage image;
+        final File file;
+        final String format;
+        final float quality;
+        final long bytes;
+
+        Job(BufferedImage image, File file, String format, float quality) {
+            this.image = image;
+            this.file = file;
+            this.format = format;
+            this.quality = quality;
+            this.bytes = 4L * image.getWidth() * image.getHeight();
+        }
+    }
+
+    private final ArrayDeque<Job> queue = new ArrayDeque<Job>();
+    private final ArrayDeque<File> written = new ArrayDeque<File>();
+    private final long maxPendingBytes;
+    private long pendingBytes;
+    private boolean busy;
+    private Thread thread;
+
+    private String format = "png";
+    private float quality = -1.0F;
+    private int maxFiles = 0;
+    private long maxBytes = 0L;
+    private long writtenBytes;
+    private File retentionDir;
+
+    private long count;
+    private long failures;
+    private long waitedMillis;
+    private long encodeMillis;
+    private String lastError;
+
+    ScreenshotWriter(long maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /* format is an ImageIO format name, e.g. png or jpg, quality 0..1 or negative for the writer default */
+    synchronized void setFormat(String format, float quality) throws IOException {
+        String name = format.toLowerCase();
+        if (!ImageIO.getImageWritersByFormatName(name).hasNext()) {
+            throw new IOException("No image writer for the format " + format);
+        }
+        this.format = name;
+        this.quality = quality;
+    }
+
+    synchronized String getFormat() {
+        return format;
+    }
+
+    /* Zero disables the cap */
+    synchronized void setRetention(int maxFiles, long maxBytes) {
+        this.maxFiles = maxFiles;
+        this.maxBytes = maxBytes;
+    }
+
+    /* Reserves a new file in the directory and queues the image to be written into it */
+    File write(BufferedImage image, File dir) throws IOException, InterruptedException {
+        // the name and the data must have the same format, also with a concurrent setFormat
+        String format;
+        float quality;
+        synchronized (this) {
+            if (!dir.equals(retentionDir)) {
+                seed(dir);
+            }
+            format = this.format;
+            quality = this.quality;
+        }
+        File file = reserve(dir, format);
+        Job job;
+        synchronized (this) {
+            job = new Job(image, file, format, quality);
+            long start = System.currentTimeMillis();
+            while (pendingBytes > 0 && pendingBytes + job.bytes > maxPendingBytes) {
+                wait();
+            }
+            waitedMillis += System.currentTimeMillis() - start;
+            queue.addLast(job);
+            pendingBytes += job.bytes;
+            if (thread == null) {
+                thread = new Thread(new Runnable() {
+                    public void run() {
+                        drain();
+                    }
+                }, "SikuliScreenshotWriter");
+                thread.setDaemon(true);
+                thread.start();
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    public void run() {
+                        try {
+                            flush();
+                        } catch (InterruptedException e) {}
+                    }
+                });
+            }
+            notifyAll();
+        }
+        return file;
+    }
+
+    /* Waits until all the queued screenshots are on disk */
+    synchronized void flush() throws InterruptedException {
+        while (!queue.isEmpty() || busy) {
+            wait();
+        }
+    }
+
+    private static File reserve(File dir, String format) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Cannot create the screenshot directory " + dir);
+        }
+        String extension = format.equals("jpeg") ? "jpg" : format;
+        String stamp = new SimpleDateFormat("MMddHHmmss").format(new Date());
+        File file = new File(dir, stamp + "." + extension);
+        for (int n = 1; !file.createNewFile(); n++) {
+            file = new File(dir, stamp + "-" + n + "." + extension);
+        }
+        return file;
+    }
+
+    private void drain() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                while (queue.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                job = queue.removeFirst();
+                busy = true;
+            }
+            long t0 = System.currentTimeMillis();
+            String error = null;
+            try {
+                encode(job);
+            } catch (Exception e) {
+                error = job.file + ": " + e;
+                // no empty or partial file is left behind the link in the log
+                job.file.delete();
+                System.out.println("*WARN* Could not write the screenshot " + error);
+            }
+            synchronized (this) {
+                encodeMillis += System.currentTimeMillis() - t0;
+                pendingBytes -= job.bytes;
+                busy = false;
+                if (error == null) {
+                    count++;
+                    retain(job.file);
+                } else {
+                    failures++;
+                    lastError = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private static void encode(Job job) throws IOException {
+        BufferedImage image = job.image;
+        if (!job.format.equals("png") && image.getColorModel().hasAlpha()) {
+            // the JPEG writer does not take an alpha channel
+            BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            rgb.getGraphics().drawImage(image, 0, 0, null);
+            image = rgb;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(job.format).next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (job.quality >= 0.0F && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (param.getCompressionType() == null) {
+                param.setCompressionType(param.getCompressionTypes()[0]);
+            }
+            param.setCompressionQuality(job.quality);
+        }
+        ImageOutputStream out = ImageIO.createImageOutputStream(job.file);
+        try {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            out.close();
+        }
+    }
+
+    /* The screenshots already in a new directory count towards the caps, oldest first */
+    private void seed(File dir) {
+        retentionDir = dir;
+        written.clear();
+        writtenBytes = 0L;
+        File[] existing = dir.listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                return f.isFile() && f.getName().matches("\\d{10}(-\\d+)?\\.\\w+");
+            }
+        });
+        if (existing == null) {
+            return;
+        }
+        Arrays.sort(existing, new Comparator<File>() {
+            public int compare(File a, File b) {
+                return Long.valueOf(a.lastModified()).compareTo(b.lastModified());
+            }
+        });
+        for (File f : existing) {
+            written.addLast(f);
+            writtenBytes += f.length();
+        }
+    }
+
+    /* Deletes the oldest screenshots of the directory while a cap is exceeded */
+    private void retain(File file) {
+        if (!file.getParentFile().equals(retentionDir)) {
+            return;
+        }
+        written.addLast(file);
+        writtenBytes += file.length();
+        Iterator<File> oldest = written.iterator();
+        while (oldest.hasNext() && written.size() > 1
+               && ((maxFiles > 0 && written.size() > maxFiles) || (maxBytes > 0 && writtenBytes > maxBytes))) {
+            File f = oldest.next();
+            writtenBytes -= f.length();
+            f.delete();
+            oldest.remove();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        String s = "Screenshots (" + format + "): written " + count + ", failed " + failures + ", queued " + queue.size()
+                   + ", encoding " + encodeMillis + " ms, waited for the queue " + waitedMillis + " ms";
+        if (maxFiles > 0 || maxBytes > 0) {
+            s += ", kept " + written.size() + " files, " + (writtenBytes / 1024) + " kB";
+        }
+        return (lastError != null) ? s + ", last error " + lastError : s;
+    }
+}
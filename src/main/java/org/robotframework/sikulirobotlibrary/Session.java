@@ -0,0 +1,61 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Match;
+import org.sikuli.script.Screen;
+
+/* The state of the keywords for one screen: the settings changed by the    */
+/* Set* keywords, the captured frames and everything derived from them, and */
+/* the latest results. Each thread calling the keywords is bound to one     */
+/* session (see UseScreen), so parallel test runs on different screens or   */
+/* displays do not share any mutable state besides the synchronized caches. */
+/* Nothing here is written to the global Sikuli Settings.                    */
+class Session {
+
+    final int screenIndex;
+
+    // settings
+    boolean useGrayForOCR = false;
+    double waitTimeout = 15.0D;
+    double waitAfterAction = 0.0D;
+    double minSimilarity = Settings.MinSimilarity;
+    SikuliKeywords.MatchStrategy matchStrategy = SikuliKeywords.MatchStrategy.EXACT;
+    boolean textIgnoreCase = false;
+    int textMaxDistance = 0;
+    SikuliKeywords.SettleMode settleMode = SikuliKeywords.SettleMode.FIXED;
+    long settleStableMillis = 250L;
+
+    // frames and derived state
+    final FrameCache frameCache;
+    final WaitEngine waitEngine;
+    final SettleDetector settleDetector;
+    final PyramidMatcher pyramid = new PyramidMatcher();
+    final TileDiffer textDiffer = new TileDiffer();
+    ScreenTextIndex textIndex;
+    MatchIndex<Match> matchIndex;
+    Match latestMatch;
+    ScreenRecorder recorder;
+
+    private Screen scr;
+
+    Session(int screenIndex, ScreenSource source) {
+        this.screenIndex = screenIndex;
+        this.frameCache = new FrameCache(source);
+        this.waitEngine = new WaitEngine(frameCache);
+        this.settleDetector = new SettleDetector(frameCache);
+    }
+
+    /* The live screen receiving the mouse and keyboard input, created on first use */
+    synchronized Screen screen() {
+        if (scr == null) {
+            Startup.shared().ensure(Startup.Subsystem.SCREEN);
+            scr = new Screen(screenIndex);
+        }
+        return scr;
+    }
+
+    @Override
+    public String toString() {
+        return "screen " + screenIndex + " (" + frameCache.getSource() + ")";
+    }
+}
@@ -0,0 +1,85 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+/* Waits until the screen has settled before the next action: the frames   */
+/* are captured repeatedly, and the wait ends as soon as the watched area   */
+/* has not changed for the required stable time, or at the latest when the */
+/* upper bound expires. The time saved against the full upper bound is      */
+/* accumulated for the statistics.                                         */
+class SettleDetector {
+
+    private static final long POLL_MILLIS = 40L;
+
+    private final FrameCache frames;
+    private final TileDiffer differ = new TileDiffer();
+    private final PerformanceStats perf = PerformanceStats.shared();
+    private long settles;
+    private long timeouts;
+    private long waitedMillis;
+    private long savedMillis;
+
+    SettleDetector(FrameCache frames) {
+        this.frames = frames;
+    }
+
+    /* Returns the waited time in milliseconds. area null watches the whole screen. */
+    synchronized long settle(Rectangle area, long stableMillis, long maxMillis) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        long deadline = start + maxMillis;
+        ScreenImage frame = frames.refresh();
+        differ.reset();
+        differ.update(frame.getImage(), frame.getROI());
+        long lastChange = start;
+        boolean stable = false;
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (now - lastChange >= stableMillis) {
+                stable = true;
+                break;
+            }
+            long left = deadline - now;
+            if (left <= 0) {
+                break;
+            }
+            long t0 = System.nanoTime();
+            Thread.sleep(Math.min(POLL_MILLIS, left));
+            perf.add(PerformanceStats.Phase.SLEEP, t0);
+            ScreenImage latest = frames.refresh();
+            List<Rectangle> dirty = differ.update(latest.getImage(), latest.getROI());
+            frame = dirty.isEmpty() ? frames.unchanged(frame, latest) : latest;
+            if (changed(dirty, area)) {
+                lastChange = System.currentTimeMillis();
+            }
+        }
+        long waited = System.currentTimeMillis() - start;
+        settles++;
+        if (!stable) {
+            timeouts++;
+        }
+        waitedMillis += waited;
+        savedMillis += Math.max(0L, maxMillis - waited);
+        return waited;
+    }
+
+    private static boolean changed(List<Rectangle> dirty, Rectangle area) {
+        if (area == null) {
+            return !dirty.isEmpty();
+        }
+        for (Rectangle r : dirty) {
+            if (r.intersects(area)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Settle detection: " + settles + " waits, " + timeouts + " reached the upper bound, waited "
+               + waitedMillis + " ms, saved " + savedMillis + " ms compared to the fixed wait";
+    }
+}
@@ -8,43 +8,74 @@ import org.robotframework.javalib.annotation.RobotKeywordOverload;
 import org.sikuli.basics.Settings;
 import org.sikuli.script.Image;
 import org.sikuli.script.ScreenImage;
-import org.sikuli.script.TextRecognizer;
 import org.sikuli.script.Region;
 import org.sikuli.script.Screen;
 import org.sikuli.script.Location;
 import org.sikuli.script.FindFailed;
 import org.sikuli.script.Finder;
 import org.sikuli.script.Match;
+import org.sikuli.script.Pattern;
 import org.sikuli.script.Key;
 import org.sikuli.script.KeyModifier;
 import org.sikuli.script.Button;
 
-import java.text.SimpleDateFormat;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.Date;
-import java.util.Iterator;
+import java.io.FileNotFoundException;
+import java.text.SimpleDateFormat;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 @RobotKeywords
 public class SikuliKeywords {
 
-    private boolean useGrayForOCR = false;
-    private double waitTimeout = 15.0D;
-    private double waitAfterAction = 0.0D;
-    private double minSimlr = Settings.MinSimilarity;
-    private Screen scr;
-    private Match latestMatch;
+    private final Map<Integer, Session> sessions = new HashMap<Integer, Session>();
+    private final ThreadLocal<Session> boundSession = new ThreadLocal<Session>();
+    private final Session defaultSession;
+    private TemplateCache templateCache = new TemplateCache(256L * 1024 * 1024);
+    private ParallelSearch<Match> parallelSearch = new ParallelSearch<Match>(new ParallelSearch.Scorer<Match>() {
+        public double score(Match m) {
+            return m.getScore();
+        }
+    });
+    private LocationMemory locationMemory = new LocationMemory(3);
+    private File locationMemoryFile;
+    private OcrCache colorOcrCache = new OcrCache("color", 64);
+    private OcrCache grayOcrCache = new OcrCache("gray", 64);
+    private Grayscale grayscale = new Grayscale(Runtime.getRuntime().availableProcessors());
+    private OcrPool ocrPool = new OcrPool(Collections.<OcrEngine>singletonList(new SikuliOcrEngine()));
+    private PerformanceStats perf = PerformanceStats.shared();
+    private File perfStatsFile;
+    private ScreenshotWriter screenshots = new ScreenshotWriter(256L * 1024 * 1024);
+    private static final int SETTLE_MARGIN = 200;
+    private static final int MAX_PYRAMID_CANDIDATES = 1000;
+    /* The similarity limit of the searches while recording, the best candidate is wanted for the failure report */
+    private static final float TRACE_SIMILARITY = 0.1f;
 
     /* Constructor with initializers */
     public SikuliKeywords() {
-        scr = new Screen();
-        // forcing the OCR text recognition on
-        Settings.OcrTextSearch=true;
-        Settings.OcrTextRead=true;
+        this(new LiveScreenSource(0));
+    }
+
+    /* The frames are captured from the given source, e.g. generated frames in tests and benchmarks */
+    SikuliKeywords(ScreenSource source) {
+        defaultSession = new Session(0, source);
+        sessions.put(0, defaultSession);
+        // the screen, OpenCV and the OCR are loaded on first use or by WarmUp, see Startup
         Settings.AutoWaitTimeout=5f;
     }
     
@@ -73,6 +104,19 @@ public class SikuliKeywords {
         F1, F2, F3, F4, F5, F6, F7, F8, F9, F10, F11, F12;
     }
    
+    /* Template matching strategies, see SetMatchStrategy */
+    enum MatchStrategy {
+        EXACT,
+        PYRAMID;
+    }
+
+    /* How the wait of SetWaitAfterAction is spent, see SetSettleMode */
+    enum SettleMode {
+        FIXED,
+        STABLE_FRAME,
+        STABLE_REGION;
+    }
+
     /* Definitions for some selected special key combinations */
     private enum KeyPressCombinationCodes {
         CTRL_C, CTRL_V, CTRL_A, CTRL_X,
@@ -89,16 +133,50 @@ public class SikuliKeywords {
                    + "| SetFindObjectTimeout | 30.0 |\n")
     @ArgumentNames({"timeout"})
     public void setFindObjectTimeout(final String timeout) {
-        this.waitTimeout = Double.parseDouble(timeout);
+        session().waitTimeout = Double.parseDouble(timeout);
     }
 
     @RobotKeyword("Sets a waiting time, which is used to slow down the keyword execution. "
-                   + "When given a value 3.0 as argument, each keyword is executed in three second intervals.\n\n"
+                   + "When given a value 3.0 as argument, each keyword is executed in three second intervals. "
+                   + "With 'SetSettleMode' the keywords continue as soon as the screen is idle, using this value as the upper bound.\n\n"
                    + "Example:\n"
                    + "| SetWaitAfterAction | 5.0 |\n")
     @ArgumentNames({"wait"})
     public void setWaitAfterAction(final String wait) {
-        this.waitAfterAction = Double.parseDouble(wait);
+        session().waitAfterAction = Double.parseDouble(wait);
+    }
+
+    @RobotKeyword("Selects how the waiting time of 'SetWaitAfterAction' is spent before each keyword. "
+                   + "FIXED sleeps the whole time, which is the default. "
+                   + "STABLE_FRAME captures the screen repeatedly and continues as soon as the screen has stayed unchanged "
+                   + "for the stable time, given in seconds (default 0.25). "
+                   + "STABLE_REGION does the same, but watches only the area around the latest found object, "
+                   + "so that e.g. a blinking clock elsewhere on the screen does not keep the keyword waiting. "
+                   + "In both stable modes the 'SetWaitAfterAction' value is the upper bound of the wait. "
+                   + "See 'GetSettleStats' for the time saved.\n\n"
+                   + "Examples:\n"
+                   + "| SetSettleMode | STABLE_FRAME |\n"
+                   + "| SetSettleMode | STABLE_REGION | 0.5 |\n"
+                   + "| SetSettleMode | FIXED |\n")
+    @ArgumentNames({"mode","stableTime="})
+    public void setSettleMode(final String mode, final String stableTime) {
+        session().settleMode = SettleMode.valueOf(mode);
+        session().settleStableMillis = (long)(Double.parseDouble(stableTime) * 1000);
+    }
+
+    @RobotKeywordOverload
+    public void setSettleMode(final String mode) {
+        this.setSettleMode(mode, "0.25");
+    }
+
+    @RobotKeyword("Prints and returns how long the keywords have waited for the screen to settle, "
+                   + "and how much time was saved compared to the fixed wait of 'SetWaitAfterAction' (see SetSettleMode).\n\n"
+                   + "Example:\n"
+                   + "| ${stats}= | GetSettleStats |\n")
+    public String getSettleStats() {
+        String stats = session().settleDetector.toString();
+        System.out.println(stats);
+        return stats;
     }
 
     @RobotKeyword("Sets a new value for the Sikuli internal minimum similarity setting. "
@@ -107,9 +185,7 @@ public class SikuliKeywords {
                    + "| SetMinSimilarity | 0.55 |\n")
     @ArgumentNames({"minSim"})
     public void setMinSimilarity(final String minSim) {
-        Settings.MinSimilarity = Double.parseDouble(minSim);
-        // updating the local copy as well
-        this.minSimlr = Settings.MinSimilarity;
+        session().minSimilarity = Double.parseDouble(minSim);
     }
 
     /* In some cases the text recognition can be enhanced by gray scale conversion */
@@ -122,38 +198,631 @@ public class SikuliKeywords {
     @ArgumentNames({"boolValue"})
     public void useGrayScaleForOCR(final String boolValue) {
         if (boolValue.equals("TRUE")) {
-            this.useGrayForOCR = true;
+            session().useGrayForOCR = true;
         } else {
-            this.useGrayForOCR = false;
+            session().useGrayForOCR = false;
+        }
+    }
+
+    @RobotKeyword("Sets the maximum age of the shared screen capture, which is reused by consecutive find operations. "
+                   + "Keywords locating objects share one captured frame as long as it is younger than the given age "
+                   + "and no mouse or keyboard input has been sent in between. "
+                   + "The argument is given in seconds, default value is 0.05 seconds. Value 0 disables the frame sharing.\n\n"
+                   + "Example:\n"
+                   + "| SetFrameCacheMaxAge | 0.1 |\n")
+    @ArgumentNames({"maxAge"})
+    public void setFrameCacheMaxAge(final String maxAge) {
+        session().frameCache.setMaxAge( (long)(Double.parseDouble(maxAge) * 1000) );
+    }
+
+    @RobotKeyword("Prints and returns the hit and miss counters of the shared screen capture. "
+                   + "A hit means that a find operation could reuse an earlier frame instead of capturing the screen again. "
+                   + "The recycled frames are the captures of the wait loops found identical to the previous frame, "
+                   + "their pixel buffers are reused by the next capture when the screen source allows it "
+                   + "(the Xvfb screen file, see UseScreenSource).\n\n"
+                   + "Example:\n"
+                   + "| ${stats}= | GetFrameCacheStats |\n")
+    public String getFrameCacheStats() {
+        String stats = session().frameCache.toString();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Sets the maximum memory used for keeping decoded template images in memory. "
+                   + "Template images are read from disk only once and re-read only when the image file is modified. "
+                   + "The least recently used images are dropped when the limit is exceeded. "
+                   + "The argument is given in megabytes, default value is 256.\n\n"
+                   + "Example:\n"
+                   + "| SetTemplateCacheSize | 512 |\n")
+    @ArgumentNames({"megabytes"})
+    public void setTemplateCacheSize(final String megabytes) {
+        templateCache.setMaxBytes( (long)(Double.parseDouble(megabytes) * 1024 * 1024) );
+    }
+
+    @RobotKeyword("Prints and returns the hit rate and the memory usage of the template image cache.\n\n"
+                   + "Example:\n"
+                   + "| ${stats}= | GetTemplateCacheStats |\n")
+    public String getTemplateCacheStats() {
+        String stats = templateCache.toString();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Reads the given template images into the template image cache, so that the first find of each "
+                   + "image does not wait for the file to be decoded. The arguments are image files or directories, "
+                   + "of which all the .png, .jpg and .gif files are read. The paths are given as the finds use them, "
+                   + "relative paths being relative to the working directory. Returns the number of images read.\n\n"
+                   + "Example:\n"
+                   + "| PreloadTemplates | images | common/ok.png |\n")
+    @ArgumentNames({"*templates"})
+    public int preloadTemplates(final String[] templates) throws Exception {
+        List<File> images = templateFiles(Arrays.asList(templates));
+        for (File image : images) {
+            preloadTemplate(image);
+        }
+        System.out.println("*DEBUG* " + templateCache);
+        return images.size();
+    }
+
+    @RobotKeyword("Loads the given subsystems and template images in parallel, typically in the suite setup, "
+                   + "so that the first keywords using them do not wait for the loading. "
+                   + "The subsystems are SCREEN (the Sikuli screen and the robot), MATCHER (the OpenCV image matching) "
+                   + "and OCR (the Tesseract text recognition). Without the warm-up each subsystem is loaded "
+                   + "on its first use, so a suite clicking only coordinates never loads OpenCV, and one finding only "
+                   + "images never loads Tesseract. The other arguments are template image files or directories, "
+                   + "as with PreloadTemplates. Without arguments all the subsystems are loaded. "
+                   + "Prints and returns the loading times of the subsystems and the templates, see also GetStartupTimes.\n\n"
+                   + "Examples:\n"
+                   + "| WarmUp |\n"
+                   + "| WarmUp | MATCHER | images |\n")
+    @ArgumentNames({"*items"})
+    public String warmUp(final String[] items) throws Exception {
+        long start = System.currentTimeMillis();
+        final Startup startup = Startup.shared();
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        List<String> paths = new ArrayList<String>();
+        for (String item : (items.length == 0) ? new String[] {"SCREEN", "MATCHER", "OCR"} : items) {
+            Startup.Subsystem subsystem = subsystem(item);
+            if (subsystem == null) {
+                paths.add(item);
+                continue;
+            }
+            final Startup.Subsystem s = subsystem;
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    startup.ensure(s, "WarmUp");
+                    return null;
+                }
+            });
+        }
+        final List<File> images = templateFiles(paths);
+        final long[] templateNanos = new long[1];
+        for (final File image : images) {
+            tasks.add(new Callable<Object>() {
+                public Object call() throws Exception {
+                    long t0 = System.nanoTime();
+                    preloadTemplate(image);
+                    synchronized (templateNanos) {
+                        templateNanos[0] += System.nanoTime() - t0;
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            for (Future<Object> f : pool.invokeAll(tasks)) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        String report = startup + "\n  templates: " + images.size() + " images, "
+                        + (templateNanos[0] / 1000000L) + " ms of decoding\n  WarmUp took "
+                        + (System.currentTimeMillis() - start) + " ms";
+        System.out.println(report);
+        return report;
+    }
+
+    @RobotKeyword("Prints and returns how long the loading of each subsystem took and whether it was loaded "
+                   + "on the first use by a keyword or by WarmUp.\n\n"
+                   + "Example:\n"
+                   + "| ${times}= | GetStartupTimes |\n")
+    public String getStartupTimes() {
+        String times = Startup.shared().toString();
+        System.out.println(times);
+        return times;
+    }
+
+    /* The subsystem named by a WarmUp argument, null for the template paths */
+    private static Startup.Subsystem subsystem(String item) {
+        String name = item.trim().toUpperCase();
+        if (name.equals("OPENCV")) {
+            return Startup.Subsystem.MATCHER;
+        }
+        for (Startup.Subsystem s : Startup.Subsystem.values()) {
+            if (s.name().equals(name)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /* The image files of the given files and directories, the .png, .jpg and .gif files of a directory */
+    private static List<File> templateFiles(List<String> templates) {
+        List<File> files = new ArrayList<File>();
+        for (String template : templates) {
+            File file = new File(template);
+            if (!file.isDirectory()) {
+                files.add(file);
+                continue;
+            }
+            for (File image : file.listFiles()) {
+                String name = image.getName().toLowerCase();
+                if (name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".gif")) {
+                    files.add(image);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void preloadTemplate(File image) throws Exception {
+        if (templateCache.get(image.getPath()) == null) {
+            throw new FileNotFoundException("Template image not found: " + image);
         }
     }
 
-    @RobotKeyword("Saves a screenshot of the current screen. "
-                   + "The screenshot files are saved in a folder './scrshots' in a date-format MMddHHmmss.png.\n\n"
+    @RobotKeyword("Sets the polling interval used while waiting objects to appear. "
+                   + "The first retry is done after the initial interval, and the interval is doubled after each retry "
+                   + "until the maximum interval is reached. A retry runs the image or text matching only if the screen "
+                   + "content has changed since the previous attempt. "
+                   + "The arguments are given in seconds, default values are 0.05 and 1.0 seconds.\n\n"
+                   + "Example:\n"
+                   + "| SetWaitPolling | 0.1 | 2.0 |\n")
+    @ArgumentNames({"initial","maximum"})
+    public void setWaitPolling(final String initial, final String maximum) {
+        session().waitEngine.setDelays( (long)(Double.parseDouble(initial) * 1000), (long)(Double.parseDouble(maximum) * 1000) );
+    }
+
+    @RobotKeyword("Prints and returns the statistics of the latest wait for an object: the elapsed time, "
+                   + "the number of polls, the number of polls skipped because the screen did not change, "
+                   + "and the time spent in image or text matching.\n\n"
+                   + "Example:\n"
+                   + "| ${stats}= | GetWaitStats |\n")
+    public String getWaitStats() {
+        String stats = session().waitEngine.toString();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Selects how the winner is chosen by 'FindFirstOf' and 'WaitForAnyObject' when several of the objects are visible. "
+                   + "ORDER prefers the earliest object in the argument list, SCORE prefers the best similarity score "
+                   + "and uses the argument order for equal scores. The default value is ORDER.\n\n"
+                   + "Examples:\n"
+                   + "| SetFindFirstOfPriority | ORDER |\n"
+                   + "| SetFindFirstOfPriority | SCORE |\n")
+    @ArgumentNames({"priority"})
+    public void setFindFirstOfPriority(final String priority) {
+        parallelSearch.setPriority( ParallelSearch.Priority.valueOf(priority) );
+    }
+
+    @RobotKeyword("Loads the remembered object locations from the given file, and stores them back into it "
+                   + "when the library is shut down or the 'SaveLocationMemory' keyword is called. "
+                   + "The library remembers the latest places where each object was found, and searches those places first "
+                   + "before scanning the whole screen. The file is created if it does not exist.\n\n"
+                   + "Example:\n"
+                   + "| UseLocationMemoryFile | ./locations.properties |\n")
+    @ArgumentNames({"path"})
+    public void useLocationMemoryFile(final String path) throws Exception {
+        File file = new File(path);
+        if (file.isFile()) {
+            locationMemory.load(file);
+        }
+        if (this.locationMemoryFile == null) {
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    try {
+                        locationMemory.save(locationMemoryFile);
+                    } catch(Exception e) {}
+                }
+            });
+        }
+        this.locationMemoryFile = file;
+    }
+
+    @RobotKeyword("Stores the remembered object locations into the file given with 'UseLocationMemoryFile'.\n\n"
+                   + "Example:\n"
+                   + "| SaveLocationMemory |\n")
+    public void saveLocationMemory() throws Exception {
+        if (this.locationMemoryFile != null) {
+            locationMemory.save(this.locationMemoryFile);
+        }
+    }
+
+    @RobotKeyword("Prints and returns how often an object was found from its remembered location "
+                   + "without scanning the whole screen.\n\n"
+                   + "Example:\n"
+                   + "| ${stats}= | GetLocationMemoryStats |\n")
+    public String getLocationMemoryStats() {
+        String stats = locationMemory.toString();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Selects how template images are matched. EXACT compares the template with the screen at full resolution. "
+                   + "PYRAMID first searches a downsampled copy of the screen with a downsampled template, "
+                   + "and then verifies the best candidates at full resolution, which is considerably faster on large screens. "
+                   + "Small templates and text are always searched at full resolution. The default value is EXACT.\n\n"
+                   + "Examples:\n"
+                   + "| SetMatchStrategy | PYRAMID |\n"
+                   + "| SetMatchStrategy | EXACT   |\n")
+    @ArgumentNames({"strategy"})
+    public void setMatchStrategy(final String strategy) {
+        session().matchStrategy = MatchStrategy.valueOf(strategy);
+    }
+
+    @RobotKeyword("Sets how the texts searched by the keywords are compared with the text recognized from the screen. "
+                   + "With ignoreCase TRUE the letter case does not matter. maxDistance is the number of single character "
+                   + "insertions, deletions or substitutions allowed in the whole searched text, which tolerates small OCR errors. "
+                   + "The defaults are FALSE and 0, i.e. exact comparison. "
+                   + "The whole screen is recognized once and further text searches are answered from the recognized words "
+                   + "until the screen changes, after which only the changed areas are recognized again.\n\n"
+                   + "Examples:\n"
+                   + "| SetTextMatching | TRUE  |\n"
+                   + "| SetTextMatching | FALSE | 1 |\n")
+    @ArgumentNames({"ignoreCase","maxDistance="})
+    public void setTextMatching(final String ignoreCase, final String maxDistance) {
+        session().textIgnoreCase = ignoreCase.equals("TRUE");
+        session().textMaxDistance = Integer.parseInt(maxDistance);
+    }
+
+    @RobotKeywordOverload
+    public void setTextMatching(final String ignoreCase) {
+        this.setTextMatching(ignoreCase, "0");
+    }
+
+    @RobotKeyword("Sets how many OCR results are kept in memory. Text searches on screen areas whose pixels are identical "
+                   + "to an earlier search reuse the recognized words instead of running the text recognition again. "
+                   + "The results are kept separately for the gray scale and the color recognition (see UseGrayScaleForOCR), "
+                   + "and they are dropped after every mouse or keyboard action. The default value is 64 entries.\n\n"
+                   + "Example:\n"
+                   + "| SetOcrCacheSize | 16 |\n")
+    @ArgumentNames({"entries"})
+    public void setOcrCacheSize(final String entries) {
+        colorOcrCache.setMaxEntries(Integer.parseInt(entries));
+        grayOcrCache.setMaxEntries(Integer.parseInt(entries));
+    }
+
+    @RobotKeyword("Sets the number of OCR engines recognizing text in parallel. SIKULI, the default, is the text "
+                   + "recognizer bundled with Sikuli, of which there is only one in the process. TESSERACT runs the "
+                   + "tesseract command (which must be on the PATH, version 3.05 or later) with the given language, "
+                   + "default eng, in a process of its own per recognition, so any number of engines can run at the same "
+                   + "time. With more than one engine, a large screen area is split into overlapping horizontal bands, "
+                   + "one per engine, which are recognized in parallel and merged; the words recognized twice where the "
+                   + "bands overlap are kept only once. The cached OCR results are dropped. See GetOcrCacheStats for "
+                   + "the utilization of each engine.\n\n"
+                   + "Examples:\n"
+                   + "| SetOcrEngines | 16 | TESSERACT |\n"
+                   + "| SetOcrEngines | 8 | TESSERACT | eng+fin |\n"
+                   + "| SetOcrEngines | 1 | SIKULI |\n")
+    @ArgumentNames({"count", "engine=SIKULI", "language=eng"})
+    public void setOcrEngines(final String count, final String engine, final String language) {
+        int n = Integer.parseInt(count);
+        if (n < 1) {
+            throw new IllegalArgumentException("At least one OCR engine is needed");
+        }
+        List<OcrEngine> engines = new ArrayList<OcrEngine>();
+        for (int i = 0; i < n; i++) {
+            if (engine.equalsIgnoreCase("SIKULI")) {
+                if (n > 1) {
+                    throw new IllegalArgumentException("There is only one Sikuli text recognizer, use TESSERACT for more engines");
+                }
+                engines.add(new SikuliOcrEngine());
+            } else if (engine.equalsIgnoreCase("TESSERACT")) {
+                engines.add(new TesseractOcrEngine("tesseract", language));
+            } else {
+                throw new IllegalArgumentException("Unknown OCR engine " + engine + ", expected SIKULI or TESSERACT");
+            }
+        }
+        OcrPool old;
+        synchronized (this) {
+            old = ocrPool;
+            ocrPool = new OcrPool(engines);
+        }
+        old.shutdown();
+        colorOcrCache.invalidate();
+        grayOcrCache.invalidate();
+        synchronized (session().textDiffer) {
+            session().textIndex = null;
+            session().textDiffer.reset();
+        }
+        System.out.println("*DEBUG* " + ocrEngines());
+    }
+
+    @RobotKeywordOverload
+    public void setOcrEngines(final String count, final String engine) {
+        this.setOcrEngines(count, engine, "eng");
+    }
+
+    @RobotKeywordOverload
+    public void setOcrEngines(final String count) {
+        this.setOcrEngines(count, "SIKULI", "eng");
+    }
+
+    @RobotKeyword("Prints and returns the hit rates of the OCR result caches, the statistics of the gray scale conversion "
+                   + "and the calls, busy time and utilization of each OCR engine (see SetOcrEngines).\n\n"
                    + "Example:\n"
-                   + "| GetScreenshot |\n")
-    public void getScreenshot() throws Exception {
+                   + "| ${stats}= | GetOcrCacheStats |\n")
+    public String getOcrCacheStats() {
+        String stats = colorOcrCache + "\n" + grayOcrCache + "\n" + grayscale + "\n" + ocrEngines();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Binds the calling thread to the given screen, 0 being the primary screen. "
+                   + "Each screen has its own session: the settings of the Set* keywords, the screen captures, "
+                   + "the latest matches and the mouse and keyboard input, so that parallel test runs served "
+                   + "by one library instance (e.g. through a remote library server) can drive different screens at the same time. "
+                   + "The caches of the templates and the OCR results are shared. "
+                   + "Threads that have not called this keyword use the primary screen.\n\n"
+                   + "Example:\n"
+                   + "| UseScreen | 1 |\n")
+    @ArgumentNames({"index"})
+    public void useScreen(final String index) {
+        boundSession.set(this.sessionFor(Integer.parseInt(index)));
+        System.out.println("*DEBUG* Using " + session());
+    }
+
+    @RobotKeyword("Selects where the screen captures searched by the keywords come from. "
+                   + "LIVE captures the screen through the AWT robot, which is the default. "
+                   + "A file is taken as the screen file of Xvfb started with -fbdir, e.g. /tmp/Xvfb_screen0 "
+                   + "of Xvfb :1 -screen 0 1920x1080x24 -fbdir /tmp, which is memory-mapped and copied directly "
+                   + "instead of going through the robot and the X server. "
+                   + "Any other argument is a directory of recorded frames (png, jpg or bmp files), "
+                   + "which are replayed in the order of the file names, one frame per capture, "
+                   + "the last frame repeating at the end. The recorded frames make it possible to reproduce "
+                   + "and measure the find operations of a recorded run without the application. "
+                   + "Mouse and keyboard input always goes to the live screen.\n\n"
+                   + "Examples:\n"
+                   + "| UseScreenSource | C:\\recorded_frames |\n"
+                   + "| UseScreenSource | /tmp/Xvfb_screen0 |\n"
+                   + "| UseScreenSource | LIVE |\n")
+    @ArgumentNames({"source"})
+    public void useScreenSource(final String source) throws Exception {
+        Session s = session();
+        ScreenSource frames;
+        if (source.equals("LIVE")) {
+            frames = new LiveScreenSource(s.screenIndex);
+        } else if (new File(source).isFile()) {
+            frames = new XvfbScreenSource(new File(source));
+        } else {
+            frames = new RecordedScreenSource(new File(source));
+        }
+        s.frameCache.setSource(frames);
+        if (s.recorder != null) {
+            // the recorder follows the keywords to the new source
+            s.recorder.setSource(frames.observer());
+        }
+        System.out.println("*DEBUG* Screen source: " + s.frameCache.getSource());
+    }
+
+    @RobotKeyword("Prints and returns the latency statistics of the keywords called so far: the number of calls, "
+                   + "the mean, the 50th, 90th and 99th percentiles and the maximum, in milliseconds. "
+                   + "Under each keyword the time is broken down into the phases of the calls: the sleep of "
+                   + "SetWaitAfterAction, screen capture, gray scale conversion, template matching, OCR, mouse and keyboard "
+                   + "input, waiting between the find retries, and the number of retries per call.\n\n"
+                   + "Example:\n"
+                   + "| ${stats}= | GetPerformanceStats |\n")
+    public String getPerformanceStats() {
+        String stats = perf.toString();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Writes the keyword latency statistics (see GetPerformanceStats) into the given file when the test run ends. "
+                   + "A file name ending with .json gives JSON, any other name the Prometheus text format, "
+                   + "which can be collected e.g. with the textfile collector of the node exporter.\n\n"
+                   + "Examples:\n"
+                   + "| UsePerformanceStatsFile | C:\\results\\sikuli_stats.json |\n"
+                   + "| UsePerformanceStatsFile | /var/lib/node_exporter/sikuli.prom |\n")
+    @ArgumentNames({"path"})
+    public void usePerformanceStatsFile(final String path) {
+        if (this.perfStatsFile == null) {
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    try {
+                        perf.write(perfStatsFile);
+                    } catch(Exception e) {}
+                }
+            });
+        }
+        this.perfStatsFile = new File(path);
+    }
+
+    @RobotKeyword("Saves a screenshot of the current screen, or of the given region of it, and returns the file path. "
+                   + "The screenshot files are saved in a folder './scrshots' in a date-format MMddHHmmss.png, "
+                   + "with a running number added to the name when several screenshots are taken within the same second. "
+                   + "The image is written on a background thread, so the keyword returns right after the capture; "
+                   + "see SetScreenshotFormat, SetScreenshotRetention and FlushScreenshots. "
+                   + "The region is given as x,y,width,height.\n\n"
+                   + "Examples:\n"
+                   + "| GetScreenshot |\n"
+                   + "| GetScreenshot | 0,0,800,600 |\n")
+    @ArgumentNames({"region="})
+    public String getScreenshot(final String region) throws Exception {
         String path = "./scrshots/";
-        String fileName =  new SimpleDateFormat("MMddHHmmss'.png'").format(new Date());
-        new File(path + fileName).mkdirs();
-        scr.capture(scr.getBounds()).getFile(path, fileName);
-        System.out.println("*HTML* <img src='" + path + fileName + "'></img>");
+        ScreenImage frame = session().frameCache.refresh();
+        BufferedImage image = frame.getImage();
+        if (region.length() > 0) {
+            Rectangle roi = frame.getROI();
+            String[] r = region.split(",");
+            Rectangle crop = new Rectangle(Integer.parseInt(r[0].trim()), Integer.parseInt(r[1].trim()),
+                                           Integer.parseInt(r[2].trim()), Integer.parseInt(r[3].trim())).intersection(roi);
+            if (crop.isEmpty()) {
+                throw new IllegalArgumentException("Region " + region + " is outside the screen " + roi);
+            }
+            image = image.getSubimage(crop.x - roi.x, crop.y - roi.y, crop.width, crop.height);
+        }
+        File file = screenshots.write(image, new File(path));
+        System.out.println("*HTML* <img src='" + path + file.getName() + "'></img>");
+        return path + file.getName();
     }
-        
+
+    @RobotKeywordOverload
+    public String getScreenshot() throws Exception {
+        return getScreenshot("");
+    }
+
+    @RobotKeyword("Sets the image format of the screenshots: PNG, JPG, or any other format with an ImageIO writer "
+                   + "on the class path, e.g. WEBP with a WebP plugin. The optional quality is the compression level "
+                   + "0-9 for PNG (used where the PNG writer of the JVM supports it) and the quality 0-100 for the "
+                   + "lossy formats. Default is PNG with the default compression.\n\n"
+                   + "Examples:\n"
+                   + "| SetScreenshotFormat | JPG | 80 |\n"
+                   + "| SetScreenshotFormat | PNG | 1 |\n")
+    @ArgumentNames({"format","quality="})
+    public void setScreenshotFormat(final String format, final String quality) throws Exception {
+        float q = -1.0F;
+        if (quality.length() > 0) {
+            q = format.equalsIgnoreCase("PNG") ? 1.0F - Float.parseFloat(quality) / 9.0F
+                                               : Float.parseFloat(quality) / 100.0F;
+            q = Math.max(0.0F, Math.min(1.0F, q));
+        }
+        screenshots.setFormat(format, q);
+    }
+
+    @RobotKeywordOverload
+    public void setScreenshotFormat(final String format) throws Exception {
+        setScreenshotFormat(format, "");
+    }
+
+    @RobotKeyword("Limits the screenshots kept in the screenshot folder: after each screenshot, the oldest ones are deleted "
+                   + "while there are more than maxFiles files or more than maxMegabytes megabytes of them. "
+                   + "Zero disables a limit, by default the screenshots are never deleted.\n\n"
+                   + "Example:\n"
+                   + "| SetScreenshotRetention | 200 | 500 |\n")
+    @ArgumentNames({"maxFiles","maxMegabytes="})
+    public void setScreenshotRetention(final String maxFiles, final String maxMegabytes) {
+        screenshots.setRetention(Integer.parseInt(maxFiles), (long)(Double.parseDouble(maxMegabytes) * 1024 * 1024));
+    }
+
+    @RobotKeywordOverload
+    public void setScreenshotRetention(final String maxFiles) {
+        setScreenshotRetention(maxFiles, "0");
+    }
+
+    @RobotKeyword("Waits until all the screenshots taken so far are written, and prints and returns the statistics of "
+                   + "the screenshot writer. To be used e.g. in the suite teardown; the pending screenshots are also "
+                   + "written when the test run ends.\n\n"
+                   + "Example:\n"
+                   + "| FlushScreenshots |\n")
+    public String flushScreenshots() throws Exception {
+        screenshots.flush();
+        String stats = screenshots.toString();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Starts recording the screen in the background for the failure reports. The recorder keeps "
+                   + "the frames of the last seconds, captured fps times per second, in a memory buffer of the given size "
+                   + "outside the Java heap; only the changed parts of each frame are stored. When a find fails, the "
+                   + "recorded frames are saved as PNG files into './scrshots/recording-MMddHHmmss', together with "
+                   + "recording.txt telling the searched object, the minimum similarity, the best match score "
+                   + "of each poll of the failed wait with the time of its frame, and the time of each recorded frame before the failure. "
+                   + "The defaults are 10 seconds, 5 fps and 64 megabytes, and all of them must be positive.\n\n"
+                   + "Example:\n"
+                   + "| StartScreenRecorder | 15 | 4 | 128 |\n")
+    @ArgumentNames({"seconds=","fps=","megabytes="})
+    public void startScreenRecorder(final String seconds, final String fps, final String megabytes) throws Exception {
+        double window = positive("seconds", seconds);
+        double rate = positive("fps", fps);
+        double size = positive("megabytes", megabytes);
+        Session s = session();
+        if (s.recorder != null) {
+            s.recorder.stop();
+        }
+        s.recorder = new ScreenRecorder(s.frameCache.getSource().observer(), rate, window, (long)(size * 1024 * 1024));
+        s.recorder.start();
+    }
+
+    private static double positive(String name, String value) {
+        double d = Double.parseDouble(value);
+        if (!(d > 0)) {
+            throw new IllegalArgumentException("The " + name + " of the screen recorder must be positive: " + value);
+        }
+        return d;
+    }
+
+    @RobotKeywordOverload
+    public void startScreenRecorder(final String seconds, final String fps) throws Exception {
+        startScreenRecorder(seconds, fps, "64");
+    }
+
+    @RobotKeywordOverload
+    public void startScreenRecorder(final String seconds) throws Exception {
+        startScreenRecorder(seconds, "5", "64");
+    }
+
+    @RobotKeywordOverload
+    public void startScreenRecorder() throws Exception {
+        startScreenRecorder("10", "5", "64");
+    }
+
+    @RobotKeyword("Stops the screen recorder started with StartScreenRecorder, and prints and returns its statistics.\n\n"
+                   + "Example:\n"
+                   + "| StopScreenRecorder |\n")
+    public String stopScreenRecorder() throws Exception {
+        ScreenRecorder recorder = session().recorder;
+        if (recorder == null) {
+            return "";
+        }
+        recorder.stop();
+        String stats = recorder.toString();
+        System.out.println(stats);
+        return stats;
+    }
+
+    @RobotKeyword("Saves the frames recorded so far by the screen recorder (see StartScreenRecorder), "
+                   + "and returns the directory they were saved into.\n\n"
+                   + "Example:\n"
+                   + "| ${dir}= | SaveScreenRecording |\n")
+    public String saveScreenRecording() throws Exception {
+        ScreenRecorder recorder = session().recorder;
+        if (recorder == null) {
+            throw new IllegalStateException("The screen recorder is not started");
+        }
+        File dir = recordingDir();
+        int frames = recorder.dump(dir, Arrays.asList("Saved with SaveScreenRecording"));
+        System.out.println("*INFO* Screen recording: " + frames + " frames in " + dir.getPath());
+        return dir.getPath();
+    }
+
     @RobotKeyword("Executes a left mouse button click on the indicated object given as argument. "
                    + "If the argument is a path to a image file, bitmap comparison is used, "
                    + "otherwise the argument is taken as text and OCR is used for identification. "
                    + "Objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"
                    + "Examples:\n"
                    + "| Click | C:\\path_to_imagefile\\template.png     |\n"
                    + "| Click | C:\\path_to_imagefile\\template.png[3] |\n"
+                   + "| Click | C:\\path_to_imagefile\\template.png[3]@sim=0.9@region=0,0,800,600 |\n"
                    + "| Click | Some text |\n")
     @ArgumentNames({"object"})
     public void click(final String object) throws NotFoundError {
         try {
-	    scr.click( getScreenLocation(object).getTarget() );
+	    session().screen().click( getScreenLocation(object).getTarget() );
+	    this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen.");
         }
@@ -164,6 +833,10 @@ public class SikuliKeywords {
                    + "otherwise the argument is taken as text and OCR is used for identification. "
                    + "Objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"
                    + "Examples:\n"
                    + "| DoubleClick | C:\\path_to_imagefile\\template.png    |\n"
@@ -172,7 +845,8 @@ public class SikuliKeywords {
     @ArgumentNames({"object"})
     public void doubleClick(final String object) throws NotFoundError {
         try {
-            scr.doubleClick( getScreenLocation(object).getTarget() );
+            session().screen().doubleClick( getScreenLocation(object).getTarget() );
+            this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen.");
         }
@@ -183,6 +857,10 @@ public class SikuliKeywords {
                    + "otherwise the argument is taken as text and OCR is used for identification. "
                    + "Objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"
                    + "Examples:\n"
                    + "| RightClick | C:\\path_to_imagefile\\template.png    |\n"
@@ -191,7 +869,8 @@ public class SikuliKeywords {
     @ArgumentNames({"object"})
     public void rightClick(final String object) throws NotFoundError {
         try {
-            scr.rightClick( getScreenLocation(object).getTarget() );
+            session().screen().rightClick( getScreenLocation(object).getTarget() );
+            this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen.");
         }
@@ -203,6 +882,10 @@ public class SikuliKeywords {
                    + "otherwise the argument is taken as text and OCR is used for identification. "
                    + "Objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"                   
                    + "Examples:\n"
                    + "| ClickWithOffset | C:\\path_to_imagefile\\template.png    | 100 | -60 |\n"
@@ -213,7 +896,8 @@ public class SikuliKeywords {
         try {
             Location obj = getScreenLocation(object).getTarget();
             Location offset = new Location( obj.getX() + Integer.parseInt(x), obj.getY() + Integer.parseInt(y) );
-	    scr.click(offset);
+	    session().screen().click(offset);
+	    this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen.");
         }
@@ -225,6 +909,10 @@ public class SikuliKeywords {
                    + "otherwise the argument is taken as text and OCR is used for identification. "
                    + "Objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"
                    + "Examples:\n"
                    + "| DoubleClickWithOffset | C:\\path_to_imagefile\\template.png    | 100 | -60 |\n"
@@ -235,7 +923,8 @@ public class SikuliKeywords {
         try {
             Location obj = getScreenLocation(object).getTarget();
             Location offset = new Location( obj.getX() + Integer.parseInt(x), obj.getY() + Integer.parseInt(y) );
-            scr.doubleClick(offset);
+            session().screen().doubleClick(offset);
+            this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen.");
         }
@@ -247,6 +936,10 @@ public class SikuliKeywords {
                    + "otherwise the argument is taken as text and OCR is used for identification. "
                    + "Objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"
                    + "Examples:\n"
                    + "| RightClickWithOffset | C:\\path_to_imagefile\\template.png    | 100 | -60 |\n"
@@ -257,7 +950,8 @@ public class SikuliKeywords {
         try {
             Location obj = getScreenLocation(object).getTarget();
             Location offset = new Location( obj.getX() + Integer.parseInt(x), obj.getY() + Integer.parseInt(y) );
-            scr.rightClick(offset);
+            session().screen().rightClick(offset);
+            this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen.");
         }
@@ -268,13 +962,18 @@ public class SikuliKeywords {
                    + "otherwise the argument is taken as text and OCR is used for identification. "
                    + "Objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"
                    + "Example:\n"
                    + "| DragAndDrop | C:\\path_to_imagefile\\from.png | C:\\path_to_imagefile\\to.png |\n")
     @ArgumentNames({"fromObject","toObject"})
     public void dragAndDrop(final String fromObject, final String toObject) throws NotFoundError {
         try {
-         int result = scr.dragDrop( getScreenLocation(fromObject).getTarget(), getScreenLocation(toObject).getTarget() );
+         int result = session().screen().dragDrop( getScreenLocation(fromObject).getTarget(), getScreenLocation(toObject).getTarget() );
+         this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + fromObject + " - or - " + toObject + " -on screen.");
         }
@@ -283,6 +982,10 @@ public class SikuliKeywords {
    @RobotKeyword("Moves the mouse curson on top the object given as argument, thereby simulating a hover action. "
                    + "Hovered objects are waited to be found until the timeout set by the 'SetFindObjectTimeout' keyword expires. "
                    + "If many similar objects are on screen, an indexing notation [i] can be used to find the correct object. "
+                   + "The notations [last], [-i] counting from the end, and [row,col] are also supported. "
+                   + "Search options can follow the object: @sim=0.9 for the similarity, @region=x,y,width,height "
+                   + "for the searched area, @offset=dx,dy for the point clicked relative to the center and @timeout=seconds, "
+                   + "e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
                    + "The ordering of the found objects for indexing starts from the top left corner and continues left to right, line by line. \n\n"
                    + "Examples:\n"
                    + "| HoverOnObject | C:\\path_to_imagefile\\template.png    |\n"
@@ -291,7 +994,8 @@ public class SikuliKeywords {
     @ArgumentNames({"object"})
     public void hoverOnObject(final String object) throws NotFoundError {
         try {
-            scr.mouseMove( getScreenLocation(object).getTarget() );
+            session().screen().mouseMove( getScreenLocation(object).getTarget() );
+            this.inputSent();
 	} catch(Exception e) {
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen.");
         }
@@ -302,16 +1006,18 @@ public class SikuliKeywords {
                    + "Example:\n"
                    + "| PressLeftMouseButtonDown |\n")
     public void pressLeftMouseButtonDown() throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        scr.mouseDown( Button.LEFT );
+        this.pauseBeforeAction();
+        session().screen().mouseDown( Button.LEFT );
+        this.inputSent();
     }
     
     @RobotKeyword("Releases the mouse button if it is currently being pressed by the 'PressLeftMouseButtonDown' keyword.\n\n"
                    + "Example:\n"
                    + "| ReleaseMouseButtons |\n")
     public void releaseMouseButtons() throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        scr.mouseUp();
+        this.pauseBeforeAction();
+        session().screen().mouseUp();
+        this.inputSent();
     }
 
     /* NOTE! This method is not affected by the grayScaleForOCR switch */
@@ -332,8 +1038,9 @@ public class SikuliKeywords {
             int b = Integer.parseInt(y);
             int c = Integer.parseInt(width);
             int d = Integer.parseInt(height);
-	    Region rg = new Region(a, b, c, d);
-            rg.click( rg.wait(object, waitTimeout) );
+            Rectangle rg = new Rectangle(a, b, c, d);
+            session().screen().click( waitForMatch(object, rg, false, session().minSimilarity, session().waitTimeout).getTarget() );
+            this.inputSent();
         }
         catch(Exception e){
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen");
@@ -358,8 +1065,9 @@ public class SikuliKeywords {
             int b = Integer.parseInt(y);
             int c = Integer.parseInt(width);
             int d = Integer.parseInt(height);
-	    Region rg = new Region(a, b, c, d);
-            rg.doubleClick( rg.wait(object, waitTimeout) );
+            Rectangle rg = new Rectangle(a, b, c, d);
+            session().screen().doubleClick( waitForMatch(object, rg, false, session().minSimilarity, session().waitTimeout).getTarget() );
+            this.inputSent();
         }
         catch(Exception e){
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen");
@@ -384,8 +1092,9 @@ public class SikuliKeywords {
             int b = Integer.parseInt(y);
             int c = Integer.parseInt(width);
             int d = Integer.parseInt(height);
-	    Region rg = new Region(a, b, c, d);
-            rg.rightClick( rg.wait(object, waitTimeout) );
+            Rectangle rg = new Rectangle(a, b, c, d);
+            session().screen().rightClick( waitForMatch(object, rg, false, session().minSimilarity, session().waitTimeout).getTarget() );
+            this.inputSent();
         }
         catch(Exception e){
             throw new NotFoundError("Error: Could not locate object - " + object + " - on screen");
@@ -398,8 +1107,9 @@ public class SikuliKeywords {
                    + "| ClickOnCoordinate | 100 | 100 |\n")
     @ArgumentNames({"x", "y"})
     public void clickOnCoordinate(final String x, final String y) throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        scr.click( new Location(Integer.parseInt(x), Integer.parseInt(y)) );
+        this.pauseBeforeAction();
+        session().screen().click( new Location(Integer.parseInt(x), Integer.parseInt(y)) );
+        this.inputSent();
     }
     
     @RobotKeyword("Executes a left mouse button doubleclick at the pixel-coordinate given as argument. "
@@ -408,8 +1118,9 @@ public class SikuliKeywords {
                    + "| DoubleClickOnCoordinate | 100 | 100 |\n")
     @ArgumentNames({"x", "y"})
     public void doubleClickOnCoordinate(final String x, final String y) throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        scr.doubleClick( new Location(Integer.parseInt(x), Integer.parseInt(y)) );
+        this.pauseBeforeAction();
+        session().screen().doubleClick( new Location(Integer.parseInt(x), Integer.parseInt(y)) );
+        this.inputSent();
     }
     
     @RobotKeyword("Executes a right mouse button click at the pixel-coordinate given as argument. "
@@ -418,8 +1129,9 @@ public class SikuliKeywords {
                    + "| RightClickOnCoordinate | 100 | 100 |\n")
     @ArgumentNames({"x", "y"})
     public void rightClickOnCoordinate(final String x, final String y) throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        scr.rightClick( new Location(Integer.parseInt(x), Integer.parseInt(y)) );
+        this.pauseBeforeAction();
+        session().screen().rightClick( new Location(Integer.parseInt(x), Integer.parseInt(y)) );
+        this.inputSent();
     }
     
     @RobotKeyword("Writes the text given as argument to the current carret position.\n\n"
@@ -427,8 +1139,9 @@ public class SikuliKeywords {
                    + "| TypeText | Some Text |\n")
     @ArgumentNames({"text"})
     public void typeText(final String text) throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        scr.type(text);
+        this.pauseBeforeAction();
+        session().screen().type(text);
+        this.inputSent();
     }
     
     @RobotKeyword("Presses a special key from the keyboard. "
@@ -439,40 +1152,8 @@ public class SikuliKeywords {
                    + "| PressKey | ARROW_UP |\n")
     @ArgumentNames({"keyCode"})
     public void pressKey(final String keyCode) throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        KeyPressCodes cds = KeyPressCodes.valueOf(keyCode);
-        switch( cds ) {
-            case ENTER:       scr.type( Key.ENTER );     break;
-            case BACKSPACE:   scr.type( Key.BACKSPACE ); break;
-            case TAB:         scr.type( Key.TAB );       break;
-            case ESC:         scr.type( Key.ESC );       break;
-            case ARROW_UP:    scr.type( Key.UP );        break;
-            case ARROW_DOWN:  scr.type( Key.DOWN );      break;
-            case ARROW_RIGHT: scr.type( Key.RIGHT );     break;
-            case ARROW_LEFT:  scr.type( Key.LEFT );      break;
-            case PAGE_UP:     scr.type( Key.PAGE_UP );   break;
-            case PAGE_DOWN:   scr.type( Key.PAGE_DOWN ); break;
-            case DELETE:      scr.type( Key.DELETE );    break;
-            case END:         scr.type( Key.END );       break;
-            case HOME:        scr.type( Key.HOME );      break;
-            case INSERT:      scr.type( Key.INSERT );    break;
-            case SHIFT:       scr.type( Key.SHIFT );     break;
-            case CTRL:        scr.type( Key.CTRL );      break;
-            case ALT:         scr.type( Key.ALT );       break;
-            case F1:          scr.type( Key.F1 );        break;
-            case F2:          scr.type( Key.F2 );        break;
-            case F3:          scr.type( Key.F3 );        break;
-            case F4:          scr.type( Key.F4 );        break;
-            case F5:          scr.type( Key.F5 );        break;
-            case F6:          scr.type( Key.F6 );        break;
-            case F7:          scr.type( Key.F7 );        break;
-            case F8:          scr.type( Key.F8 );        break;
-            case F9:          scr.type( Key.F9 );        break;
-            case F10:         scr.type( Key.F10 );       break;
-            case F11:         scr.type( Key.F11 );       break;
-            case F12:         scr.type( Key.F12 );       break;
-            default: break;
-        }
+        this.pauseBeforeAction();
+        this.sendKey(keyCode);
     }
     
     @RobotKeyword("Presses a special key combination from the keyboard.\n\n"
@@ -485,17 +1166,48 @@ public class SikuliKeywords {
                    + "| PressKeyCombination | CTRL+ALT+DELETE |\n")
     @ArgumentNames({"keyCodeCombination"})
     public void pressKeyCombination(final String keyCodeCombination) throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        String modKeyCode = keyCodeCombination.replaceAll("\\+","_");
-        KeyPressCombinationCodes cds = KeyPressCombinationCodes.valueOf(modKeyCode);
-        switch( cds ) {
-            case ALT_TAB:         scr.type( Key.TAB, KeyModifier.ALT );  break;
-	    case CTRL_A:          scr.type( "a", KeyModifier.CTRL );     break;
-            case CTRL_C:          scr.type( "c", KeyModifier.CTRL );     break;
-            case CTRL_V:          scr.type( "v", KeyModifier.CTRL );     break;
-	    case CTRL_X:          scr.type( "x", KeyModifier.CTRL );     break;
-	    case CTRL_ALT_DELETE: scr.type( Key.DELETE, KeyModifier.CTRL + KeyModifier.ALT );     break;
-            default: break;
+        this.pauseBeforeAction();
+        this.sendKeyCombination(keyCodeCombination);
+    }
+
+    @RobotKeyword("Executes a sequence of mouse and keyboard actions back-to-back, e.g. for filling in a form. "
+                   + "Each argument is one step: the action name followed by its argument. The actions are "
+                   + "CLICK, DOUBLE_CLICK, RIGHT_CLICK and HOVER with an object (image or text) as the argument, "
+                   + "TYPE with the text to type, PRESS with a key (see PressKey) and PRESS_COMBINATION with a key combination "
+                   + "(see PressKeyCombination). The wait of 'SetWaitAfterAction' is done once before the sequence. "
+                   + "All the objects are first searched from one screen capture, the images concurrently and the texts "
+                   + "from one text recognition pass. Before each object is used, it is checked to be still in its place; "
+                   + "objects that were not visible at the start, or that have moved, are searched again when their step "
+                   + "is reached, waiting up to the 'findObjectTimeout' (see SetFindObjectTimeout).\n\n"
+                   + "Example:\n"
+                   + "| ExecuteActionSequence | CLICK C:\\path_to_image\\name_field.png | TYPE John Smith | PRESS TAB "
+                   + "| TYPE Some Street 1 | PRESS_COMBINATION CTRL+A | CLICK Save |\n")
+    @ArgumentNames({"*actions"})
+    public void executeActionSequence(final String[] actions) throws Exception {
+        ActionSequence sequence = new ActionSequence(actions);
+        this.pauseBeforeAction();
+        Map<String, Match> resolved = this.resolveAll(sequence.targets());
+        boolean inputSinceResolve = false;
+        for (ActionSequence.Step step : sequence.steps()) {
+            Match m = null;
+            if (step.action.pointer) {
+                m = this.locateForStep(step, resolved.get(step.argument), inputSinceResolve);
+            }
+            switch( step.action ) {
+                case CLICK:             session().screen().click( m.getTarget() );       break;
+                case DOUBLE_CLICK:      session().screen().doubleClick( m.getTarget() ); break;
+                case RIGHT_CLICK:       session().screen().rightClick( m.getTarget() );  break;
+                case HOVER:             session().screen().mouseMove( m.getTarget() );   break;
+                case TYPE:              session().screen().type( step.argument );        break;
+                case PRESS:             this.sendKey( step.argument );         break;
+                case PRESS_COMBINATION: this.sendKeyCombination( step.argument ); break;
+                default: break;
+            }
+            if (step.action.pointer || step.action == ActionSequence.Action.TYPE) {
+                // sendKey and sendKeyCombination have done it for the keys
+                this.inputSent();
+            }
+            inputSinceResolve = true;
         }
     }
     
@@ -519,36 +1231,38 @@ public class SikuliKeywords {
     @RobotKeywordOverload
     public void waitForObjectToAppear(final String object) throws NotFoundError {
         try {
-            this.getScreenLocation(object, this.waitTimeout).getTarget();
+            this.getScreenLocation(object, session().waitTimeout).getTarget();
         } catch(Exception e) {
-            throw new NotFoundError("Error: Object - " + object + " - did not appear within timeout " + this.waitTimeout);
+            throw new NotFoundError("Error: Object - " + object + " - did not appear within timeout " + session().waitTimeout);
         }
     }
     
-    /* NOTE! This method is not affected by the GrayScaleForOCR switch */
-    @RobotKeyword("Waits until the given object (image or text) disappears on screen or the timeout expires. "
+    @RobotKeyword("Waits until the given object (image or text) disappears on screen or the timeout expires, "
+                   + "and returns the time in seconds it took for the object to disappear. "
                    + "The timeout parameter is optional and if not given the internal 'findObjectTimeout' is used (see SetFindObjectTimeout). "
-		   + "When specified, the timeout parameter should be given in seconds, e.g. 10.5  , look for more examples below.\n\n"
+		   + "When specified, the timeout parameter should be given in seconds, e.g. 10.5  , look for more examples below. "
+                   + "The indexing notation [i] of the Click keyword is supported, and texts are recognized in gray scale "
+                   + "when so set with UseGrayScaleForOCR. While the object stays in place, the screen is searched only "
+                   + "where the object was seen, and only when that part of the screen changes.\n\n"
                    + "Examples:\n"
                    + "| WaitForObjectToDisappear | C:\\path_to_image\\template.png | 12.0 |\n"
 		   + "| WaitForObjectToDisappear | C:\\path_to_image\\template.png |\n"
-		   + "| WaitForObjectToDisappear | Some Text | 9.5 |\n"
+		   + "| ${seconds}= | WaitForObjectToDisappear | Some Text | 9.5 |\n"
                    + "| WaitForObjectToDisappear | Some Text |\n")
     @ArgumentNames({"object","timeout="})
-    public void waitForObjectToDisappear(final String object, final String timeout) throws NotFoundError {
-        Boolean result = scr.waitVanish( object, Double.parseDouble(timeout) );
-        if (!result) {
+    public double waitForObjectToDisappear(final String object, final String timeout) throws Exception {
+        // the errors of the search itself are reported as they are, not as a timeout
+        long vanished = this.waitForVanish( object, Double.parseDouble(timeout) );
+        if (vanished < 0) {
              throw new NotFoundError("Error: Object - " + object + " - did not disappear within timeout " + timeout);
         }
+        System.out.println("*DEBUG* " + object + " disappeared after " + vanished + " ms");
+        return vanished / 1000.0D;
     }
     
-    /* NOTE! This method is not affected by the GrayScaleForOCR switch */
     @RobotKeywordOverload
-    public void waitForObjectToDisappear(final String object) throws NotFoundError {
-        Boolean result = scr.waitVanish(object, waitTimeout);
-        if (!result) {
-             throw new NotFoundError("Error: Object - " + object + " - did not disappear within timeout " + waitTimeout);
-        }
+    public double waitForObjectToDisappear(final String object) throws Exception {
+        return this.waitForObjectToDisappear(object, Double.toString(session().waitTimeout));
     }
     
     @RobotKeyword("This keyword can be used for testing that a text or an image object is found on screen. "
@@ -570,6 +1284,33 @@ public class SikuliKeywords {
         }
     }
     
+    @RobotKeyword("Searches several alternative objects (images or texts) at the same time and returns the first one found. "
+                   + "All the objects are searched concurrently from the same screen capture. "
+                   + "The internal 'findObjectTimeout' is used (see SetFindObjectTimeout) to specify the time for waiting any of the objects to appear. "
+                   + "If several objects are visible, the earliest one in the argument list wins, "
+                   + "or the one with the best similarity score (see SetFindFirstOfPriority). "
+                   + "Returns the found object, its index in the argument list starting from 0, and the match. "
+                   + "Every object can have the index notation and the search options, e.g. ok.png[2]@sim=0.9@region=0,0,800,600. "
+                   + "An object with @timeout is searched for its own time only, and the keyword waits for the longest one.\n\n"
+                   + "Examples:\n"
+                   + "| FindFirstOf | C:\\path_to_image\\error.png | C:\\path_to_image\\ok.png | Some Text |\n"
+                   + "| ${object} | ${index} | ${match}= | FindFirstOf | Save | Save As |\n"
+                   + "| ${object} | ${index} | ${match}= | FindFirstOf | error.png@timeout=1 | ok.png@sim=0.95 |\n")
+    @ArgumentNames({"*objects"})
+    public List<Object> findFirstOf(final String[] objects) throws Exception {
+        return this.waitForAny(objects, -1.0D);
+    }
+
+    @RobotKeyword("Waits until any of the given objects (images or texts) appears on screen or the timeout expires. "
+                   + "Works like 'FindFirstOf', but the timeout is given as the first argument in seconds, "
+                   + "and it overrides the @timeout options of the objects.\n\n"
+                   + "Example:\n"
+                   + "| ${object} | ${index} | ${match}= | WaitForAnyObject | 10.0 | C:\\path_to_image\\error.png | Ready |\n")
+    @ArgumentNames({"timeout","*objects"})
+    public List<Object> waitForAnyObject(final String timeout, final String[] objects) throws Exception {
+        return this.waitForAny(objects, Double.parseDouble(timeout));
+    }
+    
     @RobotKeyword("LocateText keyword can be used for verifying that given text exists on the screen. "
                    + "The internal 'findObjectTimeout' is used (see SetFindObjectTimeout) to specify the time for waiting the object to appear.\n\n"
                    + "Example:\n"
@@ -595,18 +1336,14 @@ public class SikuliKeywords {
                    + "| LocateImage | C:\\path_to_image\\template.png | 0.97 |\n")
     @ArgumentNames({"img","similarity="})
     public void locateImage(final String img, final String similarity) throws NotFoundError {
-        // if seeking a matching image below the MinSimilarity value,
-        // the Settings needs to be temporarily updated
-        Settings.MinSimilarity = Double.parseDouble(similarity);
-        Match result = scr.exists(img, waitTimeout);
-        // reverting temporary Settings change from local copy
-        Settings.MinSimilarity = this.minSimlr;
+        // the similarity is given to the search, the session setting stays as it is
+        Match result = this.existsOnScreen(img, Double.parseDouble(similarity));
         if ( result == null || result.getScore() < Float.parseFloat(similarity) ) {
              throw new NotFoundError("Error: Could not locate image - " + img + " - on screen");
         } else {
              System.out.println("Found object at: " + result.getTarget() + " with similarity score: " + result.getScore() );
              try {
-                 result.highlight(Settings.DefaultHighlightTime, null);
+                 new Region(result.getRect()).highlight(Settings.DefaultHighlightTime, null);
              } catch(Exception e) {}
         }
         
@@ -614,13 +1351,14 @@ public class SikuliKeywords {
     
     @RobotKeywordOverload
     public void locateImage(final String img) throws NotFoundError {
-        Match result = scr.exists(img, waitTimeout);
-        if ( result == null || result.getScore() < Settings.MinSimilarity ) {
+        double minSimilarity = session().minSimilarity;
+        Match result = this.existsOnScreen(img, minSimilarity);
+        if ( result == null || result.getScore() < minSimilarity ) {
              throw new NotFoundError("Error: Could not locate image - " + img + " - on screen");
         } else {
              System.out.println("Found object at: " + result.getTarget() + " with similarity score: " + result.getScore() );
              try {
-                 result.highlight(Settings.DefaultHighlightTime, null);
+                 new Region(result.getRect()).highlight(Settings.DefaultHighlightTime, null);
              } catch(Exception e) {}
         }
     }
@@ -634,70 +1372,742 @@ public class SikuliKeywords {
    
     /* Common function to handle the find-operation of given object */
     private Match getScreenLocation(String object, double tout) throws Exception {
-        Thread.sleep( (int)(this.waitAfterAction * 1000) );
-        if ( object.matches(".*\\[\\d{1,}\\]") ) {
-            return this.getScreenLocationByIndex(object, tout);
-        }
-        double timeout = this.waitTimeout;
-        if (tout >= 0) timeout = tout;
-        if (this.useGrayForOCR) {
-            return this.getScreenLocation_gray(object, timeout);
+        this.pauseBeforeAction();
+        return this.locate(object, tout);
+    }
+
+    /* Searches all the objects of an action sequence from one frame. Indexed objects and */
+    /* objects with search options are left out, and the objects not found are searched  */
+    /* again at their steps.                                                              */
+    private Map<String, Match> resolveAll(List<String> targets) throws Exception {
+        final ScreenImage frame = session().frameCache.get();
+        final boolean gray = session().useGrayForOCR;
+        final double similarity = session().minSimilarity;
+        final List<String> objects = new ArrayList<String>();
+        List<Callable<Match>> searches = new ArrayList<Callable<Match>>();
+        for (final String object : targets) {
+            if (!Locator.of(object).isPlain()) {
+                continue;
+            }
+            final Image imiz = template(object);
+            objects.add(object);
+            searches.add(inSession(new Callable<Match>() {
+                public Match call() throws Exception {
+                    return findInFrame(object, imiz, frame, null, gray, similarity);
+                }
+            }));
+        }
+        List<Match> found = parallelSearch.all(searches);
+        Map<String, Match> resolved = new HashMap<String, Match>();
+        for (int i = 0; i < objects.size(); i++) {
+            if (found.get(i) != null) {
+                resolved.put(objects.get(i), found.get(i));
+            }
+        }
+        System.out.println("*DEBUG* Action sequence: found " + resolved.size() + " of " + targets.size()
+                           + " objects from one screen capture");
+        return resolved;
+    }
+
+    /* The object of a step: the resolved match if it is still in place, otherwise a new search */
+    private Match locateForStep(ActionSequence.Step step, Match resolved, boolean inputSent) throws Exception {
+        Match m = resolved;
+        if (m != null && inputSent) {
+            // the earlier steps may have changed the screen, look again at the same place only
+            m = this.findInFrame(step.argument, template(step.argument), session().frameCache.get(),
+                                 LocationMemory.around(resolved.getRect()), session().useGrayForOCR,
+                                 session().minSimilarity);
+        }
+        if (m == null) {
+            try {
+                m = this.locate(step.argument, -1.0D);
+            } catch(Exception e) {
+                throw new NotFoundError("Error: Could not locate object - " + step.argument + " - of " + step);
+            }
+        }
+        session().latestMatch = m;
+        return m;
+    }
+
+    /* The find-operation without the pause before the action */
+    private Match locate(String object, double tout) throws Exception {
+        Locator locator = Locator.of(object);
+        try {
+            return this.locateOnScreen(locator, tout);
+        } catch(Exception e) {
+            this.recordFailure(object, similarity(locator), e);
+            throw e;
+        }
+    }
+
+    /* The object and its search options are compiled once per distinct argument, see Locator */
+    private Match locateOnScreen(Locator locator, double tout) throws Exception {
+        Session s = session();
+        Match m;
+        if (locator.selector != null) {
+            m = this.getScreenLocationByIndex(locator, locator.timeout(tout, Settings.AutoWaitTimeout));
         } else {
-	    this.latestMatch = scr.wait(object, timeout);
-	    return this.latestMatch;
-        }
-    }
-
-    /* A desperate hack to accomplish indexed search of the same target object    */
-    /* findAll() is used for obtaining all matched items, the indexing is done by */
-    /* calculating the horizontal distance from the screen origin to the location of match */
-    private Match getScreenLocationByIndex(String object, double tout) throws Exception {
-        String obj = object.substring(0,object.lastIndexOf('['));
-        int index = Integer.parseInt( object.substring(object.lastIndexOf('[')+1,object.lastIndexOf(']')) );
-        System.out.println("parsed object = " + obj);
-        System.out.println("parsed index = " + index);
-        TreeMap<Integer, Match> treeMapY = new TreeMap<Integer, Match>(
-			new Comparator<Integer>() {
-			@Override
-			public int compare(Integer o1, Integer o2) {
-				return o2.compareTo(o1);
-			}});
-        Match temp;
-        Iterator<Match> m = scr.findAll(obj);
-        while ( m.hasNext() ) {
-            temp = m.next();
-            int xx = temp.getTarget().getX(); int yy = temp.getTarget().getY();
-            int r = (int)(yy*scr.getBounds().getWidth() + xx);
-            treeMapY.put(r, temp);
-        }
-        int i = 0;
-        for (Integer item : treeMapY.descendingKeySet()) {
-            i++;
-            System.out.println("X: " + treeMapY.get(item).getTarget().getX() + " Y: " + treeMapY.get(item).getTarget().getY() );
-            if (index == i) { this.latestMatch = treeMapY.get(item); }
-	}
-        return this.latestMatch;
+            m = this.locatePlain(locator.object, locator.region, similarity(locator), locator.timeout(tout, s.waitTimeout));
+        }
+        if (locator.hasOffset()) {
+            // a copy, the match may be kept in the match index
+            m = new Match(m);
+            m.setTargetOffset(locator.dx, locator.dy);
+            s.latestMatch = m;
+        }
+        return m;
+    }
+
+    private Match locatePlain(String object, Rectangle region, double similarity, double timeout) throws Exception {
+        if (session().useGrayForOCR) {
+            return (region == null) ? this.getScreenLocation_gray(object, similarity, timeout)
+                                    : this.waitForMatch(object, region, true, similarity, timeout);
+        } else {
+            return this.waitForMatch(object, region, false, similarity, timeout);
+        }
+    }
+
+    /* The similarity of the locator, or the one of the session */
+    private double similarity(Locator locator) {
+        return (locator.similarity >= 0) ? locator.similarity : session().minSimilarity;
+    }
+
+    /* Waits for the object to appear in the given screen area, null area means the whole screen */
+    /* The similarity is passed down to the searches, so concurrent searches of the session do not see it */
+    private Match waitForMatch(final String object, final Rectangle area, final boolean gray, final double similarity,
+                               double timeout) throws Exception {
+        final Image imiz = template(object);
+        if (area == null) {
+            Match known = this.findFromMemory(object, imiz, gray, similarity);
+            if (known != null) {
+                session().latestMatch = known;
+                return known;
+            }
+        }
+        session().latestMatch = session().waitEngine.waitFor(new WaitEngine.Matcher<Match>() {
+            public Match match(ScreenImage frame, Rectangle dirty) throws Exception {
+                return findInFrame(object, imiz, frame, intersect(area, dirty), gray, similarity);
+            }
+        }, objectSize(object, imiz), timeout);
+        System.out.println("*DEBUG* " + session().waitEngine);
+        if (session().latestMatch == null) {
+            throw new FindFailed(object + " not found within " + timeout + " seconds");
+        }
+        locationMemory.remember(memoryKey(object), session().latestMatch.getRect());
+        return session().latestMatch;
+    }
+
+    /* The places are remembered per screen, the primary screen keeps the plain object names */
+    private String memoryKey(String object) {
+        int screenIndex = session().screenIndex;
+        return (screenIndex == 0) ? object : screenIndex + ":" + object;
+    }
+
+    /* Fast path: looks for the object only around the places where it was found earlier */
+    private Match findFromMemory(String object, Image imiz, boolean gray, double similarity) {
+        List<Rectangle> known = locationMemory.recall(memoryKey(object));
+        if (known.isEmpty()) {
+            return null;
+        }
+        ScreenImage frame = session().frameCache.get();
+        for (Rectangle r : known) {
+            Match m = findInFrame(object, imiz, frame, LocationMemory.around(r), gray, similarity);
+            if (m != null) {
+                locationMemory.hit();
+                locationMemory.remember(memoryKey(object), m.getRect());
+                return m;
+            }
+        }
+        locationMemory.miss();
+        return null;
+    }
+
+    /* A single find attempt on a captured frame, the object is searched as text if there is no template */
+    private Match findInFrame(String object, Image imiz, ScreenImage frame, Rectangle area, boolean gray, double similarity) {
+        if (imiz != null && session().matchStrategy == MatchStrategy.PYRAMID) {
+            long t0 = System.nanoTime();
+            List<Rectangle> windows = session().pyramid.candidates(frame, area, imiz.get(), similarity, 5);
+            perf.add(PerformanceStats.Phase.MATCH, t0);
+            if (windows != null) {
+                Match best = null;
+                for (Rectangle window : windows) {
+                    Match m = findExactInFrame(object, imiz, frame, window, false, similarity);
+                    if (m != null && (best == null || m.getScore() > best.getScore())) {
+                        best = m;
+                    }
+                }
+                return best;
+            }
+        }
+        return findExactInFrame(object, imiz, frame, area, gray, similarity);
+    }
+
+    /* Full resolution search of the object in the given area of the frame */
+    private Match findExactInFrame(String object, Image imiz, ScreenImage frame, Rectangle area, boolean gray, double similarity) {
+        if (imiz == null) {
+            List<OcrWord> phrases = lookupText(object, frame, area, gray);
+            return phrases.isEmpty() ? null : textMatch(phrases.get(0));
+        }
+        ScreenImage simg = frame;
+        if (area != null) {
+            Rectangle clipped = area.intersection(frame.getROI());
+            if (clipped.isEmpty()) return null;
+            simg = frame.getSub(clipped);
+        }
+        Match found = null;
+        long t0 = System.nanoTime();
+        Finder f = new Finder(simg);
+        try {
+            // for the failure report the best candidate is taken also below the similarity limit
+            f.find(new Pattern(imiz).similar(recording() ? TRACE_SIMILARITY : (float) similarity));
+            if (f.hasNext()) {
+                Match m = f.next();
+                session().waitEngine.score(m.getScore());
+                if (m.getScore() >= similarity) {
+                    found = toScreenCoordinates(m, simg);
+                }
+            }
+        } finally {
+            f.destroy();
+            perf.add(PerformanceStats.Phase.MATCH, t0);
+        }
+        return found;
+    }
+
+    /* Finds all the occurrences of the object on a captured frame */
+    private List<Match> findAllInFrame(String object, Image imiz, ScreenImage frame, double similarity) {
+        List<Match> found = new ArrayList<Match>();
+        if (imiz == null) {
+            for (OcrWord phrase : lookupText(object, frame, null, session().useGrayForOCR)) {
+                found.add(textMatch(phrase));
+            }
+            return found;
+        }
+        if (imiz != null && session().matchStrategy == MatchStrategy.PYRAMID) {
+            long t0 = System.nanoTime();
+            List<Rectangle> windows = session().pyramid.candidates(frame, null, imiz.get(), similarity, MAX_PYRAMID_CANDIDATES);
+            perf.add(PerformanceStats.Phase.MATCH, t0);
+            if (windows != null) {
+                for (Rectangle window : windows) {
+                    Match m = findExactInFrame(object, imiz, frame, window, false, similarity);
+                    if (m != null && !containsSame(found, m)) {
+                        found.add(m);
+                    }
+                }
+                return found;
+            }
+        }
+        long t0 = System.nanoTime();
+        Finder f = new Finder(frame);
+        try {
+            f.findAll(new Pattern(imiz).similar((float) similarity));
+            while ( f.hasNext() ) {
+                Match m = f.next();
+                session().waitEngine.score(m.getScore());
+                found.add( toScreenCoordinates(m, frame) );
+            }
+        } finally {
+            f.destroy();
+            perf.add(PerformanceStats.Phase.MATCH, t0);
+        }
+        return found;
+    }
+
+    /* Indexed search of the same target object, see MatchIndex for the reading order */
+    /* The index built from a frame is kept, so that further indexed finds of the same */
+    /* object on the same frame do not search the screen again                         */
+    /* The index is kept by the search key of the locator, which includes the similarity and the region */
+    private Match getScreenLocationByIndex(final Locator locator, double timeout) throws Exception {
+        final MatchIndex.Selector sel = locator.selector;
+        final String obj = locator.object;
+        final double similarity = similarity(locator);
+        MatchIndex<Match> index = session().matchIndex;
+        if (index == null || !index.isFor(locator.searchKey, session().frameCache.get())) {
+            final Image imiz = template(obj);
+            // the indexing needs all the matches, so every changed frame is searched as a whole
+            index = session().waitEngine.waitFor(new WaitEngine.Matcher<MatchIndex<Match>>() {
+                public MatchIndex<Match> match(ScreenImage frame, Rectangle dirty) throws Exception {
+                    List<Match> found = within(findAllInFrame(obj, imiz, frame, similarity), locator.region);
+                    return found.isEmpty() ? null : buildIndex(locator.searchKey, frame, found);
+                }
+            }, null, timeout);
+            System.out.println("*DEBUG* " + session().waitEngine);
+            if (index == null) {
+                throw new FindFailed(obj + " not found within " + timeout + " seconds");
+            }
+            session().matchIndex = index;
+        }
+        Match m = index.select(sel);
+        if (m == null) {
+            throw new FindFailed(obj + sel + " is out of range, found " + index.size() + " matches in " + index.rows() + " rows");
+        }
+        System.out.println("*DEBUG* " + obj + sel + " of " + index.size() + " matches: " + m.getTarget());
+        session().latestMatch = m;
+        return m;
+    }
+
+    /* Text search in the given area of the frame, null area means the whole frame.    */
+    /* The screen text index answers the search once it exists, only region searches   */
+    /* made before any full screen text search recognize just their own area.          */
+    private List<OcrWord> lookupText(String text, ScreenImage frame, Rectangle area, boolean gray) {
+        ScreenTextIndex index;
+        if (area == null || session().textIndex != null) {
+            index = textIndex(frame, gray);
+        } else {
+            Rectangle clipped = area.intersection(frame.getROI());
+            if (clipped.isEmpty()) return new ArrayList<OcrWord>();
+            index = new ScreenTextIndex(null, gray, recognizeWords(frame.getSub(clipped), gray));
+        }
+        List<OcrWord> found = index.lookup(text, session().textIgnoreCase, session().textMaxDistance);
+        if (area != null) {
+            for (int i = found.size() - 1; i >= 0; i--) {
+                if (!area.contains(found.get(i).box)) found.remove(i);
+            }
+        }
+        return found;
+    }
+
+    /* Brings the screen text index up to date with the frame. When only parts of the  */
+    /* screen have changed since the index was built, only those are recognized again. */
+    private ScreenTextIndex textIndex(ScreenImage frame, boolean gray) {
+        synchronized (session().textDiffer) {
+            ScreenTextIndex index = session().textIndex;
+            if (index != null && index.isFor(frame, gray)) {
+                return index;
+            }
+            if (index != null && index.isGray() != gray) {
+                index = null;
+                session().textDiffer.reset();
+            }
+            Rectangle roi = frame.getROI();
+            List<Rectangle> dirty = session().textDiffer.update(frame.getImage(), roi);
+            if (index == null || TileDiffer.area(dirty) >= 0.5D * roi.width * roi.height) {
+                index = new ScreenTextIndex(frame, gray, recognizeWords(frame, gray));
+            } else {
+                List<Rectangle> areas = new ArrayList<Rectangle>();
+                for (Rectangle r : TileDiffer.expand(dirty, new Dimension(8, 8), roi)) {
+                    areas.add(index.cover(r).intersection(roi));
+                }
+                List<OcrWord> fresh = new ArrayList<OcrWord>();
+                for (Rectangle r : areas) {
+                    fresh.addAll(recognizeWords(frame.getSub(r), gray));
+                }
+                index = index.update(frame, areas, fresh);
+            }
+            System.out.println("*DEBUG* Screen text index: " + index.size() + " words, recognized "
+                               + (dirty.isEmpty() ? "nothing" : TileDiffer.area(dirty) + " changed pixels"));
+            session().textIndex = index;
+            return index;
+        }
+    }
+
+    /* OCR word boxes of the given part of a frame, reused from the cache for identical pixels */
+    private List<OcrWord> recognizeWords(ScreenImage simg, boolean gray) {
+        OcrCache cache = gray ? grayOcrCache : colorOcrCache;
+        long key = OcrCache.key(simg.getImage(), simg.getROI());
+        List<OcrWord> words = cache.get(key);
+        if (words == null) {
+            try {
+                if (gray) {
+                    // the gray scale image is in the reused buffer of the converter until the next conversion
+                    synchronized (grayscale) {
+                        long t0 = System.nanoTime();
+                        BufferedImage input = grayscale.convert(simg.getImage());
+                        perf.add(PerformanceStats.Phase.GRAY, t0);
+                        t0 = System.nanoTime();
+                        words = ocrEngines().recognize(input, simg.getROI());
+                        perf.add(PerformanceStats.Phase.OCR, t0);
+                    }
+                } else {
+                    long t0 = System.nanoTime();
+                    words = ocrEngines().recognize(simg.getImage(), simg.getROI());
+                    perf.add(PerformanceStats.Phase.OCR, t0);
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Text recognition failed: " + e, e);
+            }
+            words = Collections.unmodifiableList(words);
+            cache.put(key, words);
+        }
+        return words;
+    }
+
+    private static Match textMatch(OcrWord phrase) {
+        return new Match(new Region(phrase.box), phrase.score);
+    }
+
+    /* Types one of the KeyPressCodes keys */
+    private void sendKey(String keyCode) {
+        Screen scr = session().screen();
+        KeyPressCodes cds = KeyPressCodes.valueOf(keyCode);
+        switch( cds ) {
+            case ENTER:       scr.type( Key.ENTER );     break;
+            case BACKSPACE:   scr.type( Key.BACKSPACE ); break;
+            case TAB:         scr.type( Key.TAB );       break;
+            case ESC:         scr.type( Key.ESC );       break;
+            case ARROW_UP:    scr.type( Key.UP );        break;
+            case ARROW_DOWN:  scr.type( Key.DOWN );      break;
+            case ARROW_RIGHT: scr.type( Key.RIGHT );     break;
+            case ARROW_LEFT:  scr.type( Key.LEFT );      break;
+            case PAGE_UP:     scr.type( Key.PAGE_UP );   break;
+            case PAGE_DOWN:   scr.type( Key.PAGE_DOWN ); break;
+            case DELETE:      scr.type( Key.DELETE );    break;
+            case END:         scr.type( Key.END );       break;
+            case HOME:        scr.type( Key.HOME );      break;
+            case INSERT:      scr.type( Key.INSERT );    break;
+            case SHIFT:       scr.type( Key.SHIFT );     break;
+            case CTRL:        scr.type( Key.CTRL );      break;
+            case ALT:         scr.type( Key.ALT );       break;
+            case F1:          scr.type( Key.F1 );        break;
+            case F2:          scr.type( Key.F2 );        break;
+            case F3:          scr.type( Key.F3 );        break;
+            case F4:          scr.type( Key.F4 );        break;
+            case F5:          scr.type( Key.F5 );        break;
+            case F6:          scr.type( Key.F6 );        break;
+            case F7:          scr.type( Key.F7 );        break;
+            case F8:          scr.type( Key.F8 );        break;
+            case F9:          scr.type( Key.F9 );        break;
+            case F10:         scr.type( Key.F10 );       break;
+            case F11:         scr.type( Key.F11 );       break;
+            case F12:         scr.type( Key.F12 );       break;
+            default: break;
+        }
+        this.inputSent();
+    }
+
+    /* Types one of the KeyPressCombinationCodes combinations, given as e.g. CTRL+C */
+    private void sendKeyCombination(String keyCodeCombination) {
+        Screen scr = session().screen();
+        String modKeyCode = keyCodeCombination.replaceAll("\\+","_");
+        KeyPressCombinationCodes cds = KeyPressCombinationCodes.valueOf(modKeyCode);
+        switch( cds ) {
+            case ALT_TAB:         scr.type( Key.TAB, KeyModifier.ALT );  break;
+	    case CTRL_A:          scr.type( "a", KeyModifier.CTRL );     break;
+            case CTRL_C:          scr.type( "c", KeyModifier.CTRL );     break;
+            case CTRL_V:          scr.type( "v", KeyModifier.CTRL );     break;
+	    case CTRL_X:          scr.type( "x", KeyModifier.CTRL );     break;
+	    case CTRL_ALT_DELETE: scr.type( Key.DELETE, KeyModifier.CTRL + KeyModifier.ALT );     break;
+            default: break;
+        }
+        this.inputSent();
+    }
+
+    /* The session of the given screen, created on first use */
+    Session sessionFor(int screenIndex) {
+        synchronized (sessions) {
+            Session s = sessions.get(screenIndex);
+            if (s == null) {
+                s = new Session(screenIndex, new LiveScreenSource(screenIndex));
+                sessions.put(screenIndex, s);
+            }
+            return s;
+        }
+    }
+
+    /* The session of the calling thread, see UseScreen */
+    private Session session() {
+        Session s = boundSession.get();
+        return (s != null) ? s : defaultSession;
+    }
+
+    /* Runs a search on a pool thread within the session and the statistics of the calling thread */
+    private Callable<Match> inSession(final Callable<Match> search) {
+        final Session s = session();
+        final PerformanceStats.Call call = perf.currentCall();
+        return new Callable<Match>() {
+            public Match call() throws Exception {
+                boundSession.set(s);
+                perf.attach(call);
+                try {
+                    return search.call();
+                } finally {
+                    perf.attach(null);
+                    boundSession.remove();
+                }
+            }
+        };
+    }
+
+    /* The pause of SetWaitAfterAction before each action, either fixed or until the screen settles */
+    private void pauseBeforeAction() throws InterruptedException {
+        long maxMillis = (long)(session().waitAfterAction * 1000);
+        if (maxMillis <= 0) {
+            return;
+        }
+        if (session().settleMode == SettleMode.FIXED) {
+            long t0 = System.nanoTime();
+            Thread.sleep(maxMillis);
+            perf.add(PerformanceStats.Phase.SLEEP, t0);
+            return;
+        }
+        Rectangle area = null;
+        if (session().settleMode == SettleMode.STABLE_REGION && session().latestMatch != null) {
+            Rectangle r = session().latestMatch.getRect();
+            area = new Rectangle(r.x - SETTLE_MARGIN, r.y - SETTLE_MARGIN, r.width + 2 * SETTLE_MARGIN, r.height + 2 * SETTLE_MARGIN);
+        }
+        long waited = session().settleDetector.settle(area, session().settleStableMillis, maxMillis);
+        System.out.println("*DEBUG* Screen settled in " + waited + " ms of " + maxMillis + " ms");
+    }
+
+    /* Called by every keyword sending mouse or keyboard input, the screen content may change */
+    private void inputSent() {
+        perf.inputSent();
+        session().frameCache.invalidate();
+        colorOcrCache.invalidate();
+        grayOcrCache.invalidate();
+    }
+
+    /* Neighbouring coarse candidates may refine into the same match */
+    private static boolean containsSame(List<Match> found, Match m) {
+        for (Match other : found) {
+            if (other.x == m.x && other.y == m.y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Rows are told apart by half of the match height */
+    private static MatchIndex<Match> buildIndex(String object, ScreenImage frame, List<Match> found) {
+        int n = found.size();
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        int minH = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Match m = found.get(i);
+            Location target = m.getTarget();
+            xs[i] = target.getX();
+            ys[i] = target.getY();
+            minH = Math.min(minH, m.h);
+        }
+        return new MatchIndex<Match>(object, frame, found, xs, ys, Math.max(1, minH / 2));
     }
     
     /* In some cases the text recognition can be enhanced by gray scale conversion   */
     /* However, Sikuli already uses OpenCV gray scale conversion by default with OCR */
-    private Match getScreenLocation_gray(String object, double timeout) throws Exception {
-        Image imiz = Image.create(object);
-        if (imiz.isValid()) {
-            this.latestMatch = scr.wait(object, timeout);
+    private Match getScreenLocation_gray(String object, double similarity, double timeout) throws Exception {
+        return this.waitForMatch(object, null, true, similarity, timeout);
+    }
+
+    /* With the screen recorder running, a failed find saves the recorded frames and the best match */
+    /* score of every poll of the wait, so the scores can be read next to the frames they came from  */
+    private void recordFailure(String object, double similarity, Exception e) {
+        ScreenRecorder recorder = session().recorder;
+        if (recorder == null || !recorder.isRunning()) {
+            return;
+        }
+        List<String> report = new ArrayList<String>();
+        report.add("Object: " + object);
+        if (e != null) {
+            report.add("Error: " + e.getMessage());
+        }
+        report.add("Minimum similarity: " + similarity);
+        report.addAll(session().waitEngine.getTrace());
+        try {
+            File dir = recordingDir();
+            int frames = recorder.dump(dir, report);
+            System.out.println("*INFO* Screen recording of the failed find: " + frames + " frames in " + dir.getPath());
+        } catch(Exception io) {
+            System.out.println("*WARN* Could not save the screen recording: " + io);
+        }
+    }
+
+    private boolean recording() {
+        ScreenRecorder recorder = session().recorder;
+        return recorder != null && recorder.isRunning();
+    }
+
+    private static File recordingDir() {
+        String stamp = new SimpleDateFormat("MMddHHmmss").format(new Date());
+        File dir = new File("./scrshots/recording-" + stamp);
+        for (int n = 1; dir.exists(); n++) {
+            dir = new File("./scrshots/recording-" + stamp + "-" + n);
+        }
+        return dir;
+    }
+
+    /* Common function of the keywords searching several alternative objects, a negative */
+    /* timeout uses the @timeout options of the objects or the findObjectTimeout         */
+    private List<Object> waitForAny(String[] objects, double timeout) throws Exception {
+        Locator[] locators = new Locator[objects.length];
+        double[] timeouts = new double[objects.length];
+        double longest = 0.0D;
+        for (int i = 0; i < objects.length; i++) {
+            locators[i] = Locator.of(objects[i]);
+            timeouts[i] = locators[i].timeout(timeout, session().waitTimeout);
+            longest = Math.max(longest, timeouts[i]);
+        }
+        // the errors of the search itself are reported as they are, not as a timeout
+        ParallelSearch.Hit<Match> hit;
+        try {
+            this.pauseBeforeAction();
+            hit = this.waitForFirstOf(locators, timeouts, longest);
+        } catch(Exception e) {
+            this.recordFailure(Arrays.toString(objects), session().minSimilarity, e);
+            throw e;
+        }
+        if (hit == null) {
+            this.recordFailure(Arrays.toString(objects), session().minSimilarity, null);
+            throw new NotFoundError("Error: None of the objects - " + Arrays.toString(objects) + " - appeared within timeout " + longest);
+        }
+        System.out.println("Found object " + objects[hit.index] + " at: " + hit.match.getTarget() + " with similarity score: " + hit.match.getScore() );
+        List<Object> result = new ArrayList<Object>();
+        result.add(objects[hit.index]);
+        result.add(hit.index);
+        result.add(hit.match);
+        return result;
+    }
+
+    /* Searches all the objects concurrently from each changed frame until one is found. An object */
+    /* is searched until its own timeout, the wait lasts the longest one.                         */
+    private ParallelSearch.Hit<Match> waitForFirstOf(final Locator[] locators, double[] timeouts, double longest)
+            throws Exception {
+        final int n = locators.length;
+        final Image[] images = new Image[n];
+        final double[] similarities = new double[n];
+        final long[] deadlines = new long[n];
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            images[i] = template(locators[i].object);
+            similarities[i] = similarity(locators[i]);
+            deadlines[i] = start + (long)(timeouts[i] * 1000);
+        }
+        final boolean gray = session().useGrayForOCR;
+        // the winner must not depend on which changed area is searched first, so no partial searches
+        ParallelSearch.Hit<Match> hit = session().waitEngine.waitFor(new WaitEngine.Matcher<ParallelSearch.Hit<Match>>() {
+            private boolean first = true;
+
+            public ParallelSearch.Hit<Match> match(final ScreenImage frame, Rectangle area) throws Exception {
+                // like with a single object, the first frame is searched also with a zero timeout
+                final boolean all = first;
+                first = false;
+                List<Callable<Match>> searches = new ArrayList<Callable<Match>>();
+                for (int i = 0; i < n; i++) {
+                    final int k = i;
+                    searches.add(inSession(new Callable<Match>() {
+                        public Match call() throws Exception {
+                            Locator l = locators[k];
+                            if (!all && System.currentTimeMillis() > deadlines[k]) {
+                                // the object is no longer waited for
+                                return null;
+                            }
+                            if (l.selector != null) {
+                                List<Match> found = within(findAllInFrame(l.object, images[k], frame, similarities[k]), l.region);
+                                return found.isEmpty() ? null : buildIndex(l.searchKey, frame, found).select(l.selector);
+                            }
+                            return findInFrame(l.object, images[k], frame, l.region, gray, similarities[k]);
+                        }
+                    }));
+                }
+                return parallelSearch.first(searches);
+            }
+        }, null, longest);
+        System.out.println("*DEBUG* " + session().waitEngine);
+        if (hit != null && locators[hit.index].hasOffset()) {
+            // a copy, the match may be kept in the match index
+            Match m = new Match(hit.match);
+            m.setTargetOffset(locators[hit.index].dx, locators[hit.index].dy);
+            hit = new ParallelSearch.Hit<Match>(hit.index, m);
+        }
+        if (hit != null) {
+            session().latestMatch = hit.match;
+        }
+        return hit;
+    }
+
+    /* Waits until the object is no longer found on screen, returns the milliseconds it took or -1 on timeout */
+    private long waitForVanish(String object, double timeout) throws Exception {
+        final boolean gray = session().useGrayForOCR;
+        final Locator locator = Locator.of(object);
+        final double similarity = similarity(locator);
+        Session s = session();
+        long vanished;
+        if (locator.selector != null) {
+            // the index depends on all the matches, so the whole frame is searched every time
+            final Image imiz = template(locator.object);
+            vanished = s.waitEngine.waitVanish(new WaitEngine.Matcher<Rectangle>() {
+                public Rectangle match(ScreenImage frame, Rectangle area) throws Exception {
+                    List<Match> found = within(findAllInFrame(locator.object, imiz, frame, similarity), locator.region);
+                    return found.isEmpty() ? null : rect(buildIndex(locator.searchKey, frame, found).select(locator.selector));
+                }
+            }, null, false, timeout);
         } else {
-            this.latestMatch = null;
-            long before_find = (new Date()).getTime();
-            do {
-                java.awt.image.BufferedImage img = Image.convertImageToGrayscale(scr.capture(scr.getBounds()).getImage());
-                Finder f = new Finder(new ScreenImage(scr.getBounds(),img));
-                if (TextRecognizer.getInstance() != null) {        
-                    f.findText(object);
-                    this.latestMatch = f.next();
+            final Image imiz = template(locator.object);
+            List<Rectangle> known = locationMemory.recall(memoryKey(locator.object));
+            vanished = s.waitEngine.waitVanish(new WaitEngine.Matcher<Rectangle>() {
+                public Rectangle match(ScreenImage frame, Rectangle area) throws Exception {
+                    return rect(findInFrame(locator.object, imiz, frame, intersect(locator.region, area), gray, similarity));
                 }
-            } while (this.latestMatch == null && (before_find + timeout*1000) > (new Date()).getTime() );
+            }, known.isEmpty() ? locator.region : known.get(0), true, timeout);
+        }
+        System.out.println("*DEBUG* " + s.waitEngine);
+        return vanished;
+    }
+
+    private static Rectangle rect(Match m) {
+        return (m == null) ? null : m.getRect();
+    }
+
+    /* Both areas can be null, meaning the whole screen */
+    private static Rectangle intersect(Rectangle a, Rectangle b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.intersection(b);
+    }
+
+    /* The matches whose target is in the region, a null region keeps them all */
+    private static List<Match> within(List<Match> found, Rectangle region) {
+        if (region == null) {
+            return found;
+        }
+        List<Match> kept = new ArrayList<Match>(found.size());
+        for (Match m : found) {
+            Location target = m.getTarget();
+            if (region.contains(target.getX(), target.getY())) {
+                kept.add(m);
+            }
+        }
+        return kept;
+    }
+
+    /* Size of the searched object, for text a rough estimate of the rendered text */
+    private static Dimension objectSize(String object, Image imiz) {
+        if (imiz != null) {
+            return imiz.getSize();
+        }
+        return new Dimension(Math.max(TileDiffer.TILE, 16 * object.length()), 48);
+    }
+
+    /* Like getScreenLocation, but returns null instead of failing when the object is not found */
+    private Match existsOnScreen(String object, double similarity) {
+        try {
+            return this.waitForMatch(object, null, false, similarity, session().waitTimeout);
+        } catch(Exception e) {
+            return null;
         }
-        return this.latestMatch;
+    }
+
+    private synchronized OcrPool ocrEngines() {
+        return ocrPool;
+    }
+
+    /* Returns the cached template image, or null if the object is to be searched as text */
+    private Image template(String object) throws java.io.IOException {
+        BufferedImage img = templateCache.get(object);
+        if (img == null) {
+            return null;
+        }
+        Startup.shared().ensure(Startup.Subsystem.MATCHER);
+        return new Image(img, object);
+    }
+
+    /* Matches found from a captured frame are relative to the frame origin */
+    private Match toScreenCoordinates(Match m, ScreenImage frame) {
+        m.x += frame.getROI().x;
+        m.y += frame.getROI().y;
+        return m;
     }
     
 } // End Of SikuliKeywords
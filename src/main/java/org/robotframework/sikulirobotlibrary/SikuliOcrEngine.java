@@ -0,0 +1,39 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.script.Match;
+import org.sikuli.script.Region;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.TextRecognizer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/* The Tesseract bundled with Sikuli. There is a single recognizer in the    */
+/* process, which is not safe for concurrent use, so all the instances share */
+/* one lock and a pool of them would not run in parallel.                    */
+class SikuliOcrEngine implements OcrEngine {
+
+    public List<OcrWord> recognize(BufferedImage image, Rectangle area) {
+        List<OcrWord> words = new ArrayList<OcrWord>();
+        Startup.shared().ensure(Startup.Subsystem.OCR);
+        TextRecognizer tr = TextRecognizer.getInstance();
+        if (tr == null) {
+            return words;
+        }
+        List<Match> found;
+        synchronized (TextRecognizer.class) {
+            found = tr.listText(new ScreenImage(area, image), new Region(area));
+        }
+        for (Match m : found) {
+            words.add(new OcrWord(m.getText(), m.getRect(), m.getScore()));
+        }
+        return words;
+    }
+
+    @Override
+    public String toString() {
+        return "Sikuli";
+    }
+}
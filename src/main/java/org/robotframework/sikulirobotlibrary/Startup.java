@@ -0,0 +1,148 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Finder;
+import org.sikuli.script.Image;
+import org.sikuli.script.Screen;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.TextRecognizer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/* The native subsystems are initialized on their first use, not when the    */
+/* library is imported: the Sikuli screen and the AWT robot, the OpenCV      */
+/* matcher and the Tesseract OCR. A suite clicking coordinates never loads   */
+/* OpenCV, and one matching only images never loads Tesseract. The time of   */
+/* each initialization is recorded with what triggered it, the first use by  */
+/* a keyword or WarmUp. Callers arriving during an initialization wait for   */
+/* it; a failed initialization is tried again on the next use.              */
+class Startup {
+
+    enum Subsystem {
+        SCREEN("screen"),
+        MATCHER("OpenCV matcher"),
+        OCR("OCR");
+
+        final String label;
+
+        Subsystem(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class Record {
+        volatile boolean ready;
+        long millis;
+        String trigger;
+        String note;
+        String error;
+    }
+
+    private static final Startup SHARED = new Startup();
+
+    private final Record[] records = new Record[Subsystem.values().length];
+
+    Startup() {
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new Record();
+        }
+    }
+
+    /* The subsystems are process-wide, so are their states */
+    static Startup shared() {
+        return SHARED;
+    }
+
+    void ensure(Subsystem subsystem) {
+        ensure(subsystem, "first use");
+    }
+
+    /* Initializes the subsystem unless done already, the trigger is recorded for the report */
+    void ensure(Subsystem subsystem, String trigger) {
+        Record r = records[subsystem.ordinal()];
+        if (r.ready) {
+            return;
+        }
+        synchronized (r) {
+            if (r.ready) {
+                return;
+            }
+            long t0 = System.nanoTime();
+            try {
+                r.note = initialize(subsystem);
+            } catch (Exception e) {
+                r.error = e.toString();
+                throw new IllegalStateException("Could not initialize the " + subsystem.label + ": " + e, e);
+            } catch (LinkageError e) {
+                // a missing native library
+                r.error = e.toString();
+                throw e;
+            }
+            r.millis = (System.nanoTime() - t0) / 1000000L;
+            r.trigger = trigger;
+            r.error = null;
+            r.ready = true;
+        }
+    }
+
+    boolean isReady(Subsystem subsystem) {
+        return records[subsystem.ordinal()].ready;
+    }
+
+    /* Initialization time in milliseconds, -1 if not initialized */
+    long getMillis(Subsystem subsystem) {
+        Record r = records[subsystem.ordinal()];
+        synchronized (r) {
+            return r.ready ? r.millis : -1L;
+        }
+    }
+
+    /* Loads the subsystem, returns a remark for the report or null */
+    String initialize(Subsystem subsystem) throws Exception {
+        switch (subsystem) {
+            case SCREEN:
+                new Screen();
+                return null;
+            case MATCHER:
+                // a find on a tiny image loads the native library and its code paths
+                BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+                Finder finder = new Finder(new ScreenImage(new Rectangle(0, 0, 16, 16), img));
+                try {
+                    finder.find(new Image(img.getSubimage(4, 4, 8, 8), "warm-up"));
+                } finally {
+                    finder.destroy();
+                }
+                return null;
+            case OCR:
+                // the text recognizer of Sikuli is created only with the OCR settings on
+                Settings.OcrTextSearch = true;
+                Settings.OcrTextRead = true;
+                return (TextRecognizer.getInstance() == null) ? "text recognizer not available" : null;
+            default:
+                throw new IllegalArgumentException(subsystem.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Startup:");
+        for (Subsystem s : Subsystem.values()) {
+            Record r = records[s.ordinal()];
+            synchronized (r) {
+                sb.append("\n  ").append(s.label).append(": ");
+                if (r.ready) {
+                    sb.append(r.millis).append(" ms on ").append(r.trigger);
+                    if (r.note != null) {
+                        sb.append(" (").append(r.note).append(')');
+                    }
+                } else if (r.error != null) {
+                    sb.append("failed, ").append(r.error);
+                } else {
+                    sb.append("not loaded");
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,241 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.script.ImagePath;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/* Size-bounded LRU cache of decoded template images keyed by the file path. */
+/* An entry is reloaded when the modification time of its file changes.    */
+/* The cache also remembers whether a keyword argument was an indexed find, */
+/* an image file or a text, so the regex matching and the file probing are  */
+/* not repeated on every call. A text is probed again after a while, as the */
+/* template may be saved during the run, and an image whose file is gone   */
+/* is probed again at once. The classifications are bounded like the       */
+/* images. The images are decoded outside the lock, so several templates   */
+/* can be read in parallel.                                                 */
+class TemplateCache {
+
+    /* Classification of a keyword argument */
+    enum Kind { IMAGE, TEXT, INDEXED }
+
+    /* The most recently used classifications kept */
+    static final int MAX_CLASSIFIED = 4096;
+    /* How long an argument stays classified as text before the files are probed again */
+    static final long TEXT_RECHECK_MILLIS = 2000L;
+
+    private static final class Classification {
+        final Kind kind;
+        final File file;
+        final long checked;
+
+        Classification(Kind kind, File file, long checked) {
+            this.kind = kind;
+            this.file = file;
+            this.checked = checked;
+        }
+    }
+
+    private static class Entry {
+        final BufferedImage image;
+        final long modified;
+        final long bytes;
+
+        Entry(BufferedImage image, long modified) {
+            this.image = image;
+            this.modified = modified;
+            this.bytes = 4L * image.getWidth() * image.getHeight();
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> images = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private final LinkedHashMap<String, Classification> kinds = new LinkedHashMap<String, Classification>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Classification> eldest) {
+            return size() > MAX_CLASSIFIED;
+        }
+    };
+    private final long textRecheckMillis;
+    private long maxBytes;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long reloads;
+    private long evictions;
+
+    TemplateCache(long maxBytes) {
+        this(maxBytes, TEXT_RECHECK_MILLIS);
+    }
+
+    TemplateCache(long maxBytes, long textRecheckMillis) {
+        this.maxBytes = maxBytes;
+        this.textRecheckMillis = textRecheckMillis;
+    }
+
+    /* Tells whether the argument is an indexed find, an existing image file or a text */
+    synchronized Kind classify(String object) {
+        return classification(object).kind;
+    }
+
+    private Classification classification(String object) {
+        Classification c = kinds.get(object);
+        long now = System.currentTimeMillis();
+        if (c == null || (c.kind == Kind.TEXT && now - c.checked >= textRecheckMillis)
+            || (c.kind == Kind.IMAGE && !c.file.isFile())) {
+            if (MatchIndex.isIndexed(object)) {
+                c = new Classification(Kind.INDEXED, null, now);
+            } else {
+                File file = resolve(object);
+                c = new Classification((file != null) ? Kind.IMAGE : Kind.TEXT, file, now);
+            }
+            kinds.put(object, c);
+        }
+        return c;
+    }
+
+    /* Returns the decoded template for an image argument, or null for other arguments */
+    BufferedImage get(String object) throws IOException {
+        File file;
+        long modified;
+        synchronized (this) {
+            Classification c = classification(object);
+            if (c.kind != Kind.IMAGE) {
+                return null;
+            }
+            file = c.file;
+            modified = file.lastModified();
+            Entry entry = images.get(file.getPath());
+            if (entry != null && entry.modified == modified) {
+                hits++;
+                return entry.image;
+            }
+            misses++;
+        }
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Could not decode image file " + file);
+        }
+        synchronized (this) {
+            String key = file.getPath();
+            Entry entry = images.get(key);
+            if (entry != null && entry.modified == modified) {
+                // decoded meanwhile by another thread
+                return entry.image;
+            }
+            if (entry != null) {
+                reloads++;
+                remove(key);
+            }
+            entry = new Entry(image, modified);
+            images.put(key, entry);
+            usedBytes += entry.bytes;
+            evict();
+            return image;
+        }
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    synchronized void clear() {
+        images.clear();
+        kinds.clear();
+        usedBytes = 0;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    synchronized int size() {
+        return images.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        double rate = (total == 0) ? 0.0D : (100.0D * hits) / total;
+        return "Template cache: " + images.size() + " images, " + (usedBytes / 1024) + " kB of "
+               + (maxBytes / 1024) + " kB, hits " + hits + ", misses " + misses
+               + String.format(" (hit rate %.1f %%)", rate) + ", reloads " + reloads
+               + ", evictions " + evictions + ", classified arguments " + kinds.size();
+    }
+
+    /* Sikuli accepts the image file name with or without the .png extension, */
+    /* and looks the relative names up also in its image path               */
+    private File resolve(String object) {
+        File file = new File(object);
+        if (file.isFile()) {
+            return file;
+        }
+        file = new File(object + ".png");
+        if (file.isFile()) {
+            return file;
+        }
+        if (new File(object).isAbsolute()) {
+            return null;
+        }
+        file = lookup(object);
+        if (file == null && !hasExtension(object)) {
+            file = lookup(object + ".png");
+        }
+        return file;
+    }
+
+    /* Finds the name in the bundle path and the image path folders of Sikuli, like Image.create */
+    /* does. Only the images in the file system can be cached, the others are taken as text.    */
+    File lookup(String name) {
+        URL url = ImagePath.find(name);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+    }
+
+    private void remove(String key) {
+        Entry entry = images.remove(key);
+        if (entry != null) {
+            usedBytes -= entry.bytes;
+        }
+    }
+
+    /* Drops the least recently used images until the size limit is met, the newest one always stays */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = images.entrySet().iterator();
+        while (usedBytes > maxBytes && images.size() > 1 && it.hasNext()) {
+            usedBytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* A Tesseract command line process per recognition, so that the engines of */
+/* a pool are independent of each other and of the recognizer of Sikuli.    */
+/* The image is passed as a PNM file, which needs no compression, and the   */
+/* words are read from the TSV output. Each process is limited to one       */
+/* OpenMP thread, the parallelism comes from the pool.                      */
+class TesseractOcrEngine implements OcrEngine {
+
+    private final String command;
+    private final String language;
+
+    TesseractOcrEngine(String command, String language) {
+        this.command = command;
+        this.language = language;
+    }
+
+    public List<OcrWord> recognize(BufferedImage image, Rectangle area) throws Exception {
+        File input = File.createTempFile("sikuli-ocr", (image.getType() == BufferedImage.TYPE_BYTE_GRAY) ? ".pgm" : ".ppm");
+        try {
+            writePnm(image, input);
+            ProcessBuilder pb = new ProcessBuilder(Arrays.asList(command, input.getPath(), "stdout", "-l", language, "tsv"));
+            pb.environment().put("OMP_THREAD_LIMIT", "1");
+            // the warnings on the error stream are not TSV rows and are skipped by the parser
+            pb.redirectErrorStream(true);
+            Process p = pb.start();
+            String output;
+            try {
+                p.getOutputStream().close();
+                output = read(p.getInputStream());
+            } finally {
+                p.getInputStream().close();
+            }
+            int exit = p.waitFor();
+            if (exit != 0) {
+                throw new IOException(command + " exited with " + exit + ": " + output.trim());
+            }
+            return parseTsv(output, area.x, area.y);
+        } finally {
+            input.delete();
+        }
+    }
+
+    /* The words (level 5 rows) of the Tesseract TSV output, moved by dx, dy */
+    static List<OcrWord> parseTsv(String tsv, int dx, int dy) {
+        List<OcrWord> words = new ArrayList<OcrWord>();
+        for (String line : tsv.split("\r?\n")) {
+            String[] f = line.split("\t", -1);
+            if (f.length < 12 || !f[0].equals("5")) {
+                continue;
+            }
+            String text = f[11].trim();
+            if (text.length() == 0) {
+                continue;
+            }
+            try {
+                Rectangle box = new Rectangle(dx + Integer.parseInt(f[6]), dy + Integer.parseInt(f[7]),
+                                              Integer.parseInt(f[8]), Integer.parseInt(f[9]));
+                double conf = Double.parseDouble(f[10]);
+                words.add(new OcrWord(text, box, Math.max(0.0D, conf) / 100.0D));
+            } catch (NumberFormatException e) {
+                // not a word row
+            }
+        }
+        return words;
+    }
+
+    /* Binary PGM for the gray images, PPM for the others */
+    static void writePnm(BufferedImage image, File file) throws IOException {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean gray = (image.getType() == BufferedImage.TYPE_BYTE_GRAY);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        try {
+            out.write(((gray ? "P5" : "P6") + "\n" + w + " " + h + "\n255\n").getBytes("US-ASCII"));
+            byte[] line = new byte[gray ? w : 3 * w];
+            int[] rgb = gray ? null : new int[w];
+            for (int y = 0; y < h; y++) {
+                if (gray) {
+                    image.getRaster().getDataElements(0, y, w, 1, line);
+                } else {
+                    image.getRGB(0, y, w, 1, rgb, 0, w);
+                    for (int x = 0; x < w; x++) {
+                        line[3 * x] = (byte)(rgb[x] >> 16);
+                        line[3 * x + 1] = (byte)(rgb[x] >> 8);
+                        line[3 * x + 2] = (byte) rgb[x];
+                    }
+                }
+                out.write(line);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        byte[] b = new byte[4096];
+        for (int n; (n = in.read(b)) != -1; ) {
+            buffer.write(b, 0, n);
+        }
+        return buffer.toString("UTF-8");
+    }
+
+    @Override
+    public String toString() {
+        return "Tesseract (" + command + " -l " + language + ")";
+    }
+}
@@ -0,0 +1,163 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* Splits the captured frames into TILE x TILE tiles and compares the tile   */
+/* checksums against the previous frame. The changed tiles are returned as    */
+/* bounding rectangles of the connected groups of dirty tiles, in screen      */
+/* coordinates, so that the re-searches can be limited to those areas.       */
+class TileDiffer {
+
+    static final int TILE = 64;
+
+    private long[] sums;
+    private long[] current;
+    private boolean[] changed;
+    private Rectangle bounds;
+    private int cols;
+    private int rows;
+
+    /* Forgets the previous frame, the next update reports the whole frame as changed */
+    void reset() {
+        sums = null;
+        current = null;
+        changed = null;
+        bounds = null;
+    }
+
+    /* Returns the changed areas compared to the previous frame, an empty list if nothing changed */
+    List<Rectangle> update(BufferedImage img, Rectangle roi) {
+        List<Rectangle> dirty = new ArrayList<Rectangle>();
+        boolean first = (sums == null || !roi.equals(bounds));
+        if (first) {
+            bounds = new Rectangle(roi);
+            cols = (roi.width + TILE - 1) / TILE;
+            rows = (roi.height + TILE - 1) / TILE;
+            sums = new long[cols * rows];
+            current = new long[cols * rows];
+            changed = new boolean[cols * rows];
+            checksums(img, sums);
+            dirty.add(new Rectangle(roi));
+            return dirty;
+        }
+        // the two checksum arrays take turns, the changed flags are all cleared by groups()
+        Arrays.fill(current, 0L);
+        checksums(img, current);
+        boolean any = false;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] != sums[i]) {
+                changed[i] = true;
+                any = true;
+            }
+        }
+        long[] previous = sums;
+        sums = current;
+        current = previous;
+        if (any) {
+            groups(changed, dirty);
+        }
+        return dirty;
+    }
+
+    /* Grows the changed areas by the size of the searched object, merges the overlapping ones */
+    /* and clips them to the frame. A match overlapping any changed tile lies inside them.     */
+    static List<Rectangle> expand(List<Rectangle> dirty, Dimension margin, Rectangle frame) {
+        List<Rectangle> areas = new ArrayList<Rectangle>();
+        for (Rectangle r : dirty) {
+            Rectangle grown = new Rectangle(r.x - margin.width, r.y - margin.height,
+                                            r.width + 2 * margin.width, r.height + 2 * margin.height);
+            areas.add(grown.intersection(frame));
+        }
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < areas.size() && !merged; i++) {
+                for (int j = i + 1; j < areas.size(); j++) {
+                    if (areas.get(i).intersects(areas.get(j))) {
+                        areas.set(i, areas.get(i).union(areas.remove(j)));
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return areas;
+    }
+
+    static long area(List<Rectangle> rects) {
+        long sum = 0;
+        for (Rectangle r : rects) {
+            sum += (long) r.width * r.height;
+        }
+        return sum;
+    }
+
+    private void checksums(BufferedImage img, long[] out) {
+        int w = Math.min(img.getWidth(), bounds.width);
+        int h = Math.min(img.getHeight(), bounds.height);
+        boolean packed = img.getRaster().getDataBuffer() instanceof DataBufferInt
+                && img.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && img.getRaster().getParent() == null;
+        int[] data = packed ? ((DataBufferInt) img.getRaster().getDataBuffer()).getData() : null;
+        int scan = packed ? ((SinglePixelPackedSampleModel) img.getSampleModel()).getScanlineStride() : 0;
+        int[] line = packed ? null : new int[w];
+        for (int y = 0; y < h; y++) {
+            int base = (y / TILE) * cols;
+            int offset = 0;
+            if (packed) {
+                offset = y * scan;
+            } else {
+                img.getRGB(0, y, w, 1, line, 0, w);
+            }
+            for (int tx = 0; tx < cols; tx++) {
+                long hash = out[base + tx];
+                int end = Math.min(w, (tx + 1) * TILE);
+                for (int x = tx * TILE; x < end; x++) {
+                    hash = hash * 31 + (packed ? data[offset + x] : line[x]);
+                }
+                out[base + tx] = hash;
+            }
+        }
+    }
+
+    /* Bounding boxes of the 8-connected groups of changed tiles */
+    private void groups(boolean[] changed, List<Rectangle> out) {
+        int[] stack = new int[changed.length];
+        for (int start = 0; start < changed.length; start++) {
+            if (!changed[start]) continue;
+            int minX = cols, minY = rows, maxX = -1, maxY = -1;
+            int top = 0;
+            stack[top++] = start;
+            changed[start] = false;
+            while (top > 0) {
+                int t = stack[--top];
+                int tx = t % cols;
+                int ty = t / cols;
+                minX = Math.min(minX, tx); maxX = Math.max(maxX, tx);
+                minY = Math.min(minY, ty); maxY = Math.max(maxY, ty);
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = tx + dx;
+                        int ny = ty + dy;
+                        if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                        int n = ny * cols + nx;
+                        if (changed[n]) {
+                            changed[n] = false;
+                            stack[top++] = n;
+                        }
+                    }
+                }
+            }
+            Rectangle r = new Rectangle(bounds.x + minX * TILE, bounds.y + minY * TILE,
+                                        (maxX - minX + 1) * TILE, (maxY - minY + 1) * TILE);
+            out.add(r.intersection(bounds));
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package org.robotframework.sikulirobotlibrary;
+
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/* The common polling loop of all the find keywords.                          */
+/* The pause between the polls grows exponentially up to a cap. Each new      */
+/* capture is compared tile by tile against the previous one: unchanged       */
+/* frames are not matched at all, and changed frames are matched only in the  */
+/* changed areas, grown by the size of the searched object. The tiles that    */
+/* did not change keep the earlier "not found" result. The best match score  */
+/* of each poll, as reported by the matchers, is kept for the failure report. */
+class WaitEngine {
+
+    /* One match attempt against a captured frame, returns null when not found */
+    interface Matcher<T> {
+        /* area limits the search to a part of the frame, null searches the whole frame */
+        T match(ScreenImage frame, Rectangle area) throws Exception;
+    }
+
+    /* Above this share of the screen a single full frame search is cheaper */
+    private static final double FULL_SEARCH_SHARE = 0.5D;
+    /* The latest polls of a wait kept for the failure report */
+    static final int MAX_TRACE = 256;
+
+    /* A poll of the latest wait: the capture time of the searched frame and the best score */
+    private static final class Poll {
+        final long time;
+        final boolean searched;
+        final double score;
+
+        Poll(long time, boolean searched, double score) {
+            this.time = time;
+            this.searched = searched;
+            this.score = score;
+        }
+    }
+
+    private final FrameCache frames;
+    private final TileDiffer differ = new TileDiffer();
+    private final PerformanceStats perf = PerformanceStats.shared();
+    private long initialDelayMillis = 50L;
+    private long maxDelayMillis = 1000L;
+
+    // statistics of the latest wait
+    private int polls;
+    private int skippedPolls;
+    private int partialPolls;
+    private long matchNanos;
+    private long elapsedMillis;
+    private long startMillis;
+    // the matchers may report from the threads of a parallel search, so not under the engine lock
+    private final Object traceLock = new Object();
+    private final LinkedList<Poll> trace = new LinkedList<Poll>();
+    private double pollScore = Double.NaN;
+
+    WaitEngine(FrameCache frames) {
+        this.frames = frames;
+    }
+
+    synchronized void setDelays(long initialMillis, long maxMillis) {
+        this.initialDelayMillis = Math.max(1L, initialMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxMillis);
+    }
+
+    /* Polls until the matcher finds something or the timeout (in seconds) expires.      */
+    /* The margin is the size of the searched object, null disables the partial searches. */
+    /* The first poll always searches the whole frame, also with a zero timeout.          */
+    synchronized <T> T waitFor(Matcher<T> matcher, Dimension margin, double timeout) throws Exception {
+        long start = begin();
+        long deadline = start + (long)(timeout * 1000);
+        ScreenImage frame = frames.get();
+        differ.reset();
+        differ.update(frame.getImage(), frame.getROI());
+        polls++;
+        beginPoll();
+        T result = timedMatch(matcher, frame, null);
+        endPoll(start, true);
+        long delay = initialDelayMillis;
+        while (result == null) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                break;
+            }
+            long t0 = System.nanoTime();
+            Thread.sleep(Math.min(delay, left));
+            perf.add(PerformanceStats.Phase.POLL, t0);
+            perf.retry();
+            delay = Math.min(delay * 2, maxDelayMillis);
+            long captured = System.currentTimeMillis();
+            ScreenImage latest = frames.refresh();
+            List<Rectangle> dirty = differ.update(latest.getImage(), latest.getROI());
+            if (dirty.isEmpty()) {
+                frame = frames.unchanged(frame, latest);
+                polls++;
+                skippedPolls++;
+                endPoll(captured, false);
+                continue;
+            }
+            frame = latest;
+            polls++;
+            beginPoll();
+            for (Rectangle area : searchAreas(dirty, margin, frame.getROI())) {
+                result = timedMatch(matcher, frame, area);
+                if (result != null) {
+                    break;
+                }
+            }
+            endPoll(captured, true);
+        }
+        elapsedMillis = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    /* Polls until the matcher no longer finds the object or the timeout expires. Returns the time */
+    /* in milliseconds from the start to the capture of the first frame without the object, or -1  */
+    /* on timeout. A new frame is searched only when the area where the object was last seen has   */
+    /* changed, and then first around that area: found there, the object is still in place. Only   */
+    /* when it is gone from there is the whole frame searched, in case it just moved. The first    */
+    /* search starts around the hint, if given. local false searches the whole frame on every       */
+    /* change anywhere on the screen, for the matchers that do not use the area and whose result    */
+    /* depends on the other objects too, like an index. The matcher returns the place of the object. */
+    synchronized long waitVanish(Matcher<Rectangle> matcher, Rectangle hint, boolean local, double timeout) throws Exception {
+        long start = begin();
+        long deadline = start + (long)(timeout * 1000);
+        ScreenImage frame = frames.get();
+        differ.reset();
+        differ.update(frame.getImage(), frame.getROI());
+        polls++;
+        Rectangle seen = (local && hint != null) ? near(matcher, frame, hint) : null;
+        if (seen == null) {
+            seen = timedMatch(matcher, frame, null);
+        }
+        long vanished = (seen == null) ? 0L : -1L;
+        long delay = initialDelayMillis;
+        while (seen != null) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                break;
+            }
+            long t0 = System.nanoTime();
+            Thread.sleep(Math.min(delay, left));
+            perf.add(PerformanceStats.Phase.POLL, t0);
+            perf.retry();
+            delay = Math.min(delay * 2, maxDelayMillis);
+            long captured = System.currentTimeMillis();
+            ScreenImage latest = frames.refresh();
+            List<Rectangle> dirty = differ.update(latest.getImage(), latest.getROI());
+            frame = dirty.isEmpty() ? frames.unchanged(frame, latest) : latest;
+            if (dirty.isEmpty() || (local && !intersects(dirty, seen))) {
+                polls++;
+                skippedPolls++;
+                continue;
+            }
+            polls++;
+            Rectangle moved = local ? near(matcher, frame, seen) : null;
+            seen = (moved != null) ? moved : timedMatch(matcher, frame, null);
+            if (seen == null) {
+                vanished = captured - start;
+            }
+        }
+        elapsedMillis = System.currentTimeMillis() - start;
+        return vanished;
+    }
+
+    private Rectangle near(Matcher<Rectangle> matcher, ScreenImage frame, Rectangle r) throws Exception {
+        partialPolls++;
+        return timedMatch(matcher, frame, LocationMemory.around(r).intersection(frame.getROI()));
+    }
+
+    private long begin() {
+        polls = 0;
+        skippedPolls = 0;
+        partialPolls = 0;
+        matchNanos = 0L;
+        synchronized (traceLock) {
+            trace.clear();
+        }
+        startMillis = System.currentTimeMillis();
+        return startMillis;
+    }
+
+    /* Called by the matchers with the best score found in a search, also below the similarity limit */
+    void score(double score) {
+        synchronized (traceLock) {
+            if (Double.isNaN(pollScore) || score > pollScore) {
+                pollScore = score;
+            }
+        }
+    }
+
+    private void beginPoll() {
+        synchronized (traceLock) {
+            pollScore = Double.NaN;
+        }
+    }
+
+    private void endPoll(long captured, boolean searched) {
+        synchronized (traceLock) {
+            trace.add(new Poll(captured, searched, searched ? pollScore : Double.NaN));
+            if (trace.size() > MAX_TRACE) {
+                trace.removeFirst();
+            }
+        }
+    }
+
+    /* The polls of the latest wait with their frame times relative to the end of the wait */
+    synchronized List<String> getTrace() {
+        long end = startMillis + elapsedMillis;
+        List<String> lines = new ArrayList<String>();
+        synchronized (traceLock) {
+            for (Poll p : trace) {
+                String result;
+                if (!p.searched) {
+                    result = "unchanged, not searched";
+                } else if (Double.isNaN(p.score)) {
+                    result = "no score";
+                } else {
+                    result = String.format("best score %.3f", p.score);
+                }
+                lines.add(String.format("Poll frame %+d ms: %s", p.time - end, result));
+            }
+        }
+        return lines;
+    }
+
+    private List<Rectangle> searchAreas(List<Rectangle> dirty, Dimension margin, Rectangle roi) {
+        if (margin != null) {
+            List<Rectangle> areas = TileDiffer.expand(dirty, margin, roi);
+            if (TileDiffer.area(areas) < FULL_SEARCH_SHARE * roi.width * roi.height) {
+                partialPolls++;
+                return areas;
+            }
+        }
+        return Collections.singletonList((Rectangle) null);
+    }
+
+    private static boolean intersects(List<Rectangle> areas, Rectangle r) {
+        for (Rectangle area : areas) {
+            if (area.intersects(r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> T timedMatch(Matcher<T> matcher, ScreenImage frame, Rectangle area) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            return matcher.match(frame, area);
+        } finally {
+            matchNanos += System.nanoTime() - t0;
+        }
+    }
+
+    synchronized int getPolls() {
+        return polls;
+    }
+
+    synchronized int getSkippedPolls() {
+        return skippedPolls;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Latest wait: " + elapsedMillis + " ms, polls " + polls + ", skipped unchanged frames " + skippedPolls
+               + ", partial searches " + partialPolls + ", match time " + (matchNanos / 1000000L) + " ms";
+    }
+}
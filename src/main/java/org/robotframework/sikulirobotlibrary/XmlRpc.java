@@ -0,0 +1,219 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/* The subset of XML-RPC spoken by the Robot Framework remote library       */
+/* interface: method calls with scalar, array and struct parameters, and    */
+/* responses with a single value or a fault. Strings are the default type,  */
+/* base64 is decoded into byte arrays and nil into null.                    */
+final class XmlRpc {
+
+    /* A decoded method call */
+    static final class Call {
+        final String method;
+        final List<Object> params;
+
+        Call(String method, List<Object> params) {
+            this.method = method;
+            this.params = params;
+        }
+    }
+
+    private XmlRpc() {
+    }
+
+    static Call parseCall(InputStream in) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // the calls never need a DTD, and refusing one keeps out the entity expansion attacks
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setExpandEntityReferences(false);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document doc = builder.parse(in);
+        Element root = doc.getDocumentElement();
+        if (!"methodCall".equals(root.getTagName())) {
+            throw new IllegalArgumentException("Not an XML-RPC method call: " + root.getTagName());
+        }
+        String method = text(child(root, "methodName")).trim();
+        List<Object> params = new ArrayList<Object>();
+        Element list = child(root, "params");
+        if (list != null) {
+            for (Element param : children(list, "param")) {
+                params.add(parseValue(child(param, "value")));
+            }
+        }
+        return new Call(method, params);
+    }
+
+    static Object parseValue(Element value) {
+        Element typed = firstChild(value);
+        if (typed == null) {
+            return text(value);
+        }
+        String type = typed.getTagName();
+        if (type.equals("string")) {
+            return text(typed);
+        } else if (type.equals("int") || type.equals("i4")) {
+            return Integer.valueOf(text(typed).trim());
+        } else if (type.equals("i8")) {
+            return Long.valueOf(text(typed).trim());
+        } else if (type.equals("boolean")) {
+            return Boolean.valueOf(text(typed).trim().equals("1"));
+        } else if (type.equals("double")) {
+            return Double.valueOf(text(typed).trim());
+        } else if (type.equals("base64")) {
+            return Base64.decode(text(typed).trim());
+        } else if (type.equals("nil")) {
+            return null;
+        } else if (type.equals("array")) {
+            List<Object> items = new ArrayList<Object>();
+            Element data = child(typed, "data");
+            if (data != null) {
+                for (Element item : children(data, "value")) {
+                    items.add(parseValue(item));
+                }
+            }
+            return items;
+        } else if (type.equals("struct")) {
+            Map<String, Object> members = new HashMap<String, Object>();
+            for (Element member : children(typed, "member")) {
+                members.put(text(child(member, "name")), parseValue(child(member, "value")));
+            }
+            return members;
+        }
+        // dateTime.iso8601 and unknown types are passed on as text
+        return text(typed);
+    }
+
+    static String response(Object value) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<methodResponse><params><param>");
+        value(sb, value);
+        sb.append("</param></params></methodResponse>\n");
+        return sb.toString();
+    }
+
+    static String fault(int code, String message) {
+        Map<String, Object> fault = new HashMap<String, Object>();
+        fault.put("faultCode", code);
+        fault.put("faultString", message);
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<methodResponse><fault>");
+        value(sb, fault);
+        sb.append("</fault></methodResponse>\n");
+        return sb.toString();
+    }
+
+    /* Values without an XML-RPC type, e.g. the Sikuli matches, are sent as their string form */
+    static void value(StringBuilder sb, Object v) {
+        sb.append("<value>");
+        if (v == null) {
+            sb.append("<string></string>");
+        } else if (v instanceof String || v instanceof Character) {
+            sb.append("<string>");
+            escape(sb, v.toString());
+            sb.append("</string>");
+        } else if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            sb.append("<int>").append(v).append("</int>");
+        } else if (v instanceof Long) {
+            long l = (Long) v;
+            if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                sb.append("<int>").append(l).append("</int>");
+            } else {
+                sb.append("<i8>").append(l).append("</i8>");
+            }
+        } else if (v instanceof Boolean) {
+            sb.append("<boolean>").append(((Boolean) v) ? "1" : "0").append("</boolean>");
+        } else if (v instanceof Double || v instanceof Float) {
+            sb.append("<double>").append(((Number) v).doubleValue()).append("</double>");
+        } else if (v instanceof byte[]) {
+            sb.append("<base64>").append(Base64.encode((byte[]) v)).append("</base64>");
+        } else if (v instanceof Map) {
+            sb.append("<struct>");
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                sb.append("<member><name>");
+                escape(sb, String.valueOf(e.getKey()));
+                sb.append("</name>");
+                value(sb, e.getValue());
+                sb.append("</member>");
+            }
+            sb.append("</struct>");
+        } else if (v instanceof Iterable || v.getClass().isArray()) {
+            sb.append("<array><data>");
+            if (v instanceof Iterable) {
+                for (Object item : (Iterable<?>) v) {
+                    value(sb, item);
+                }
+            } else {
+                for (int i = 0, n = Array.getLength(v); i < n; i++) {
+                    value(sb, Array.get(v, i));
+                }
+            }
+            sb.append("</data></array>");
+        } else {
+            sb.append("<string>");
+            escape(sb, v.toString());
+            sb.append("</string>");
+        }
+        sb.append("</value>");
+    }
+
+    /* Escapes the markup characters and drops the control characters that XML 1.0 does not allow */
+    static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '<') {
+                sb.append("&lt;");
+            } else if (c == '>') {
+                sb.append("&gt;");
+            } else if (c == '&') {
+                sb.append("&amp;");
+            } else if (c >= 0x20 || c == '\n' || c == '\r' || c == '\t') {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static Element child(Element parent, String name) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element && ((Element) n).getTagName().equals(name)) {
+                return (Element) n;
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        List<Element> list = new ArrayList<Element>();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element && ((Element) n).getTagName().equals(name)) {
+                list.add((Element) n);
+            }
+        }
+        return list;
+    }
+
+    private static Element firstChild(Element parent) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) {
+                return (Element) n;
+            }
+        }
+        return null;
+    }
+
+    private static String text(Element e) {
+        return (e == null) ? "" : e.getTextContent();
+    }
+}
@@ -0,0 +1,150 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* Frames read from the screen file of Xvfb started with -fbdir, e.g.        */
+/* Xvfb :1 -screen 0 1920x1080x24 -fbdir /var/tmp, which keeps the screen     */
+/* in XWD format in /var/tmp/Xvfb_screen0. The file is memory-mapped once    */
+/* and each capture copies the pixels from the mapping straight into the     */
+/* frame in bulk, instead of going through java.awt.Robot and the X server.  */
+/* Only the 32 bits per pixel TrueColor layout of the 24 and 32 bit depths   */
+/* is supported; the mapping is redone if Xvfb recreates the file.           */
+class XvfbScreenSource implements ScreenSource {
+
+    /* XWD header fields, 32-bit big-endian words */
+    private static final int HEADER_SIZE = 0;
+    private static final int FILE_VERSION = 1;
+    private static final int PIXMAP_FORMAT = 2;
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 5;
+    private static final int BYTE_ORDER = 7;
+    private static final int BITS_PER_PIXEL = 11;
+    private static final int BYTES_PER_LINE = 12;
+    private static final int RED_MASK = 14;
+    private static final int GREEN_MASK = 15;
+    private static final int BLUE_MASK = 16;
+    private static final int NCOLORS = 19;
+    private static final int XWD_COLOR_SIZE = 12;
+    private static final int Z_PIXMAP = 2;
+
+    private final File file;
+    private MappedByteBuffer mapping;
+    private long mappedLength;
+    private IntBuffer pixels;
+    private int width;
+    private int height;
+    private int stride;
+    private boolean swapRedBlue;
+
+    XvfbScreenSource(File file) throws IOException {
+        this.file = file;
+        map();
+    }
+
+    public synchronized Rectangle getBounds() {
+        return new Rectangle(0, 0, width, height);
+    }
+
+    public synchronized BufferedImage capture() {
+        if (file.length() != mappedLength) {
+            try {
+                map();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map the Xvfb screen " + file, e);
+            }
+        }
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        read(((DataBufferInt) img.getRaster().getDataBuffer()).getData());
+        return img;
+    }
+
+    /* A mapping of its own, so the captures of the two readers do not wait for each other */
+    public ScreenSource observer() throws IOException {
+        return new XvfbScreenSource(file);
+    }
+
+    public synchronized BufferedImage capture(BufferedImage reuse) {
+        if (file.length() != mappedLength || reuse == null || reuse.getType() != BufferedImage.TYPE_INT_RGB
+            || reuse.getWidth() != width || reuse.getHeight() != height || reuse.getRaster().getParent() != null) {
+            return capture();
+        }
+        read(((DataBufferInt) reuse.getRaster().getDataBuffer()).getData());
+        return reuse;
+    }
+
+    /* Copies the screen into the packed RGB array of width * height pixels */
+    synchronized void read(int[] rgb) {
+        if (stride == width) {
+            pixels.position(0);
+            pixels.get(rgb, 0, width * height);
+        } else {
+            for (int y = 0; y < height; y++) {
+                pixels.position(y * stride);
+                pixels.get(rgb, y * width, width);
+            }
+        }
+        if (swapRedBlue) {
+            for (int i = 0; i < width * height; i++) {
+                int p = rgb[i];
+                rgb[i] = ((p & 0xff) << 16) | (p & 0xff00) | ((p >> 16) & 0xff);
+            }
+        } else {
+            // the unused top byte of the 24 bit depth is not always zero
+            for (int i = 0; i < width * height; i++) {
+                rgb[i] &= 0xffffff;
+            }
+        }
+    }
+
+    private void map() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            mappedLength = channel.size();
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, mappedLength);
+        } finally {
+            // the mapping stays valid after the file is closed
+            raf.close();
+        }
+        ByteBuffer header = mapping.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (mappedLength < 100 || header.getInt(4 * FILE_VERSION) != 7) {
+            throw new IOException(file + " is not an XWD screen file");
+        }
+        if (header.getInt(4 * PIXMAP_FORMAT) != Z_PIXMAP || header.getInt(4 * BITS_PER_PIXEL) != 32) {
+            throw new IOException(file + ": only 32 bits per pixel ZPixmap screens are supported");
+        }
+        int red = header.getInt(4 * RED_MASK);
+        int green = header.getInt(4 * GREEN_MASK);
+        int blue = header.getInt(4 * BLUE_MASK);
+        if (green != 0xff00 || !((red == 0xff0000 && blue == 0xff) || (red == 0xff && blue == 0xff0000))) {
+            throw new IOException(file + ": unsupported pixel layout");
+        }
+        swapRedBlue = (red == 0xff);
+        width = header.getInt(4 * WIDTH);
+        height = header.getInt(4 * HEIGHT);
+        stride = header.getInt(4 * BYTES_PER_LINE) / 4;
+        long offset = header.getInt(4 * HEADER_SIZE) + (long) header.getInt(4 * NCOLORS) * XWD_COLOR_SIZE;
+        if (offset + 4L * stride * height > mappedLength) {
+            throw new IOException(file + " is shorter than its " + width + "x" + height + " screen");
+        }
+        ByteOrder order = (header.getInt(4 * BYTE_ORDER) == 0) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        ByteBuffer data = mapping.duplicate();
+        data.position((int) offset);
+        pixels = data.slice().order(order).asIntBuffer();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Xvfb screen " + width + "x" + height + " mapped from " + file;
+    }
+}
@@ -0,0 +1,38 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for parsing the steps of ExecuteActionSequence.
+ */
+public class ActionSequenceTest
+    extends TestCase
+{
+    public void testStepsAndTargets()
+    {
+        ActionSequence sequence = new ActionSequence( new String[] {
+            "CLICK C:\\images\\name field.png", "TYPE John  Smith", "press TAB",
+            "double-click Save as", "PRESS_COMBINATION CTRL+A", "CLICK Save as" } );
+        List<ActionSequence.Step> steps = sequence.steps();
+        assertEquals( 6, steps.size() );
+        assertEquals( ActionSequence.Action.CLICK, steps.get( 0 ).action );
+        assertEquals( "C:\\images\\name field.png", steps.get( 0 ).argument );
+        assertEquals( "John  Smith", steps.get( 1 ).argument );
+        assertEquals( ActionSequence.Action.PRESS, steps.get( 2 ).action );
+        assertEquals( ActionSequence.Action.DOUBLE_CLICK, steps.get( 3 ).action );
+        assertEquals( Arrays.asList( "C:\\images\\name field.png", "Save as" ), sequence.targets() );
+    }
+
+    public void testUnknownAction()
+    {
+        try {
+            new ActionSequence( new String[] { "CLICK ok.png", "DRAG ok.png" } );
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            assertTrue( e.getMessage().startsWith( "Step 2" ) );
+        }
+    }
+}
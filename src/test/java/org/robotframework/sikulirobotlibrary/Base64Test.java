@@ -0,0 +1,52 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the base64 codec of the XML-RPC values.
+ */
+public class Base64Test
+    extends TestCase
+{
+    public void testRfcVectors() throws Exception
+    {
+        String[][] vectors = { { "", "" }, { "f", "Zg==" }, { "fo", "Zm8=" }, { "foo", "Zm9v" },
+                               { "foob", "Zm9vYg==" }, { "fooba", "Zm9vYmE=" }, { "foobar", "Zm9vYmFy" } };
+        for ( String[] v : vectors ) {
+            assertEquals( v[1], Base64.encode( v[0].getBytes( "US-ASCII" ) ) );
+            assertEquals( v[0], new String( Base64.decode( v[1] ), "US-ASCII" ) );
+        }
+    }
+
+    public void testRoundTripOfAllByteValues()
+    {
+        Random random = new Random( 17 );
+        for ( int length = 0; length < 300; length++ ) {
+            byte[] data = new byte[length];
+            random.nextBytes( data );
+            assertTrue( Arrays.equals( data, Base64.decode( Base64.encode( data ) ) ) );
+        }
+        assertEquals( "+/8=", Base64.encode( new byte[] { (byte) 0xfb, (byte) 0xff } ) );
+    }
+
+    public void testWhitespaceIsSkipped() throws Exception
+    {
+        assertEquals( "foobar", new String( Base64.decode( " Zm9v\r\nYmFy\n" ), "US-ASCII" ) );
+        assertEquals( "fo", new String( Base64.decode( "Zm\n8=\n" ), "US-ASCII" ) );
+    }
+
+    public void testInvalidValues()
+    {
+        for ( String text : new String[] { "Zm9", "Zm9v!A==", "Zg==Zg==", "Z===", "Zg=a", "Zm9vä===" } ) {
+            try {
+                Base64.decode( text );
+                fail( text + " was decoded" );
+            } catch ( IllegalArgumentException e ) {
+                // expected
+            }
+        }
+    }
+}
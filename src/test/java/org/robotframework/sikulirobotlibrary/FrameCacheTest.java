@@ -0,0 +1,109 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sikuli.script.ScreenImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the frame cache and the reuse of the unchanged captures.
+ */
+public class FrameCacheTest
+    extends TestCase
+{
+    /* Paints the current color into the given image when it fits, and keeps the images it was given */
+    private static class PaintingScreen
+        implements ScreenSource
+    {
+        final List<BufferedImage> reused = new ArrayList<BufferedImage>();
+        Color color = Color.RED;
+
+        public Rectangle getBounds()
+        {
+            return new Rectangle( 0, 0, 16, 8 );
+        }
+
+        public BufferedImage capture()
+        {
+            return capture( null );
+        }
+
+        public BufferedImage capture( BufferedImage reuse )
+        {
+            BufferedImage img = reuse;
+            if ( img == null ) {
+                img = new BufferedImage( 16, 8, BufferedImage.TYPE_INT_RGB );
+            } else {
+                reused.add( reuse );
+            }
+            Graphics2D g = img.createGraphics();
+            g.setColor( color );
+            g.fillRect( 0, 0, 16, 8 );
+            g.dispose();
+            return img;
+        }
+
+        public ScreenSource observer()
+        {
+            return this;
+        }
+    }
+
+    private static int rgb( ScreenImage frame )
+    {
+        return frame.getImage().getRGB( 3, 3 ) & 0xffffff;
+    }
+
+    public void testUnchangedCaptureFeedsTheNextOne()
+    {
+        PaintingScreen source = new PaintingScreen();
+        FrameCache frames = new FrameCache( source );
+        frames.setMaxAge( 10000 );
+        ScreenImage earlier = frames.refresh();
+        ScreenImage latest = frames.refresh();
+        assertSame( earlier, frames.unchanged( earlier, latest ) );
+        assertSame( earlier, frames.get() );
+        source.color = Color.BLUE;
+        ScreenImage next = frames.refresh();
+        assertSame( latest.getImage(), next.getImage() );
+        assertEquals( 1, source.reused.size() );
+        assertEquals( 0x0000ff, rgb( next ) );
+        assertEquals( 0xff0000, rgb( earlier ) );
+        assertEquals( 1, frames.getRecycled() );
+        // the spare image is taken once only
+        assertNotSame( next.getImage(), frames.refresh().getImage() );
+    }
+
+    public void testFrameFromGetIsNeverReused() throws Exception
+    {
+        PaintingScreen source = new PaintingScreen();
+        FrameCache frames = new FrameCache( source );
+        // a frame captured by get() and then reported unchanged by a poll loop
+        frames.setMaxAge( 0 );
+        ScreenImage earlier = frames.refresh();
+        Thread.sleep( 5 );
+        ScreenImage handed = frames.get();
+        assertNotSame( earlier, handed );
+        assertSame( handed, frames.unchanged( earlier, handed ) );
+        // a cached frame returned by get()
+        frames.setMaxAge( 10000 );
+        ScreenImage latest = frames.refresh();
+        ScreenImage cached = frames.get();
+        assertSame( latest, cached );
+        assertSame( cached, frames.unchanged( earlier, latest ) );
+        source.color = Color.BLUE;
+        for ( int i = 0; i < 3; i++ ) {
+            frames.refresh();
+        }
+        assertTrue( source.reused.isEmpty() );
+        assertEquals( 0, frames.getRecycled() );
+        assertEquals( 0xff0000, rgb( handed ) );
+        assertEquals( 0xff0000, rgb( cached ) );
+    }
+}
@@ -0,0 +1,81 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the pooled gray scale conversion.
+ */
+public class GrayscaleTest
+    extends TestCase
+{
+    private static BufferedImage noise( int width, int height )
+    {
+        BufferedImage img = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+        Random random = new Random( 7 );
+        for ( int y = 0; y < height; y++ ) {
+            for ( int x = 0; x < width; x++ ) {
+                img.setRGB( x, y, random.nextInt() );
+            }
+        }
+        return img;
+    }
+
+    /* The conversion Sikuli uses, drawing into a gray image */
+    private static BufferedImage drawn( BufferedImage rgb )
+    {
+        BufferedImage gray = new BufferedImage( rgb.getWidth(), rgb.getHeight(), BufferedImage.TYPE_BYTE_GRAY );
+        Graphics g = gray.getGraphics();
+        g.drawImage( rgb, 0, 0, null );
+        g.dispose();
+        return gray;
+    }
+
+    private static void assertSamePixels( BufferedImage expected, BufferedImage actual )
+    {
+        assertEquals( expected.getWidth(), actual.getWidth() );
+        assertEquals( expected.getHeight(), actual.getHeight() );
+        for ( int y = 0; y < expected.getHeight(); y++ ) {
+            for ( int x = 0; x < expected.getWidth(); x++ ) {
+                assertEquals( "pixel " + x + "," + y, expected.getRaster().getSample( x, y, 0 ),
+                              actual.getRaster().getSample( x, y, 0 ) );
+            }
+        }
+    }
+
+    public void testSameLumaAsJava2D()
+    {
+        BufferedImage rgb = noise( 64, 48 );
+        assertSamePixels( drawn( rgb ), new Grayscale( 1 ).convert( rgb ) );
+    }
+
+    public void testParallelBandsOfSubimage()
+    {
+        BufferedImage rgb = noise( 900, 700 );
+        BufferedImage sub = rgb.getSubimage( 37, 11, 801, 651 );
+        assertTrue( 801 * 651 >= Grayscale.PARALLEL_PIXELS );
+        assertSamePixels( drawn( sub ), new Grayscale( 3 ).convert( sub ) );
+    }
+
+    public void testBufferIsReused()
+    {
+        Grayscale grayscale = new Grayscale( 2 );
+        grayscale.convert( noise( 100, 80 ) );
+        BufferedImage smaller = noise( 50, 40 );
+        BufferedImage second = grayscale.convert( smaller );
+        assertSamePixels( drawn( smaller ), second );
+        assertTrue( grayscale.toString().contains( "reallocated 1 times" ) );
+        assertSame( second, grayscale.convert( noise( 50, 40 ) ) );
+    }
+
+    public void testOtherImageTypes()
+    {
+        BufferedImage rgb = noise( 40, 30 );
+        BufferedImage bgr = new BufferedImage( 40, 30, BufferedImage.TYPE_3BYTE_BGR );
+        bgr.getGraphics().drawImage( rgb, 0, 0, null );
+        assertSamePixels( drawn( bgr ), new Grayscale( 1 ).convert( bgr ) );
+    }
+}
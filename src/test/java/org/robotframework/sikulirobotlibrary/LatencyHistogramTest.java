@@ -0,0 +1,52 @@
+package org.robotframework.sikulirobotlibrary;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the latency histogram and its exports.
+ */
+public class LatencyHistogramTest
+    extends TestCase
+{
+    public void testBucketsCoverValuesWithBoundedError()
+    {
+        for ( long v = 0; v < 1000000L; v = v * 3 / 2 + 1 ) {
+            int i = LatencyHistogram.index( v );
+            assertTrue( LatencyHistogram.highestValue( i ) >= v );
+            assertTrue( LatencyHistogram.highestValue( i ) <= v + v / 16 + 1 );
+            if ( i > 0 ) {
+                assertTrue( LatencyHistogram.highestValue( i - 1 ) < v );
+            }
+        }
+    }
+
+    public void testPercentiles()
+    {
+        LatencyHistogram h = new LatencyHistogram();
+        for ( int v = 1; v <= 100; v++ ) {
+            h.record( v * 1000L );
+        }
+        assertEquals( 100, h.getCount() );
+        assertEquals( 100000L, h.getMax() );
+        assertEquals( 50500.0D, h.getMean(), 0.001D );
+        long p50 = h.percentile( 0.5D );
+        assertTrue( p50 >= 50000L && p50 <= 50000L * 17 / 16 );
+        long p99 = h.percentile( 0.99D );
+        assertTrue( p99 >= 99000L && p99 <= 100000L );
+    }
+
+    public void testExportFormats()
+    {
+        PerformanceStats stats = new PerformanceStats();
+        stats.keywordStarted();
+        stats.retry();
+        stats.keywordFinished( "click" );
+        String prometheus = stats.toPrometheus();
+        assertTrue( prometheus.contains( "sikuli_keyword_seconds_count{keyword=\"click\"} 1\n" ) );
+        assertTrue( prometheus.contains( "sikuli_keyword_phase_seconds_count{keyword=\"click\",phase=\"capture\"} 1\n" ) );
+        assertTrue( prometheus.contains( "sikuli_keyword_retries_total{keyword=\"click\"} 1\n" ) );
+        String json = stats.toJson();
+        assertTrue( json.contains( "\"click\": {" ) );
+        assertTrue( json.contains( "\"retries\": 1" ) );
+    }
+}
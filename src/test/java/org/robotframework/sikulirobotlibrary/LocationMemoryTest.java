@@ -0,0 +1,52 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the remembered object locations.
+ */
+public class LocationMemoryTest
+    extends TestCase
+{
+    public void testMostRecentFirstAndBoundedDepth()
+    {
+        LocationMemory memory = new LocationMemory( 2 );
+        memory.remember( "ok.png", new Rectangle( 1, 1, 10, 10 ) );
+        memory.remember( "ok.png", new Rectangle( 2, 2, 10, 10 ) );
+        memory.remember( "ok.png", new Rectangle( 1, 1, 10, 10 ) );
+        memory.remember( "ok.png", new Rectangle( 3, 3, 10, 10 ) );
+        List<Rectangle> rects = memory.recall( "ok.png" );
+        assertEquals( 2, rects.size() );
+        assertEquals( new Rectangle( 3, 3, 10, 10 ), rects.get( 0 ) );
+        assertEquals( new Rectangle( 1, 1, 10, 10 ), rects.get( 1 ) );
+        assertTrue( memory.recall( "other.png" ).isEmpty() );
+    }
+
+    public void testSaveAndLoad() throws Exception
+    {
+        File file = File.createTempFile( "locations", ".properties" );
+        try {
+            LocationMemory memory = new LocationMemory( 3 );
+            memory.remember( "C:\\images\\ok.png", new Rectangle( 10, 20, 30, 40 ) );
+            memory.remember( "C:\\images\\ok.png", new Rectangle( 50, 60, 30, 40 ) );
+            memory.remember( "Some text = 1", new Rectangle( 0, 0, 5, 5 ) );
+            memory.save( file );
+
+            LocationMemory loaded = new LocationMemory( 3 );
+            loaded.load( file );
+            assertEquals( memory.recall( "C:\\images\\ok.png" ), loaded.recall( "C:\\images\\ok.png" ) );
+            assertEquals( memory.recall( "Some text = 1" ), loaded.recall( "Some text = 1" ) );
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testSearchAreaAroundLocation()
+    {
+        assertEquals( new Rectangle( 69, 69, 92, 92 ), LocationMemory.around( new Rectangle( 100, 100, 30, 30 ) ) );
+    }
+}
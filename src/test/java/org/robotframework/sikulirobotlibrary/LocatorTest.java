@@ -0,0 +1,129 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the locator syntax and its parse cache.
+ */
+public class LocatorTest
+    extends TestCase
+{
+    public void testAllOptions()
+    {
+        Locator l = Locator.parse( "ok.png[2]@sim=0.9@region=0,0,800,600@offset=10,-5@timeout=2.5" );
+        assertEquals( "ok.png", l.object );
+        assertEquals( 2, l.selector.index );
+        assertEquals( 0.9D, l.similarity, 1e-9 );
+        assertEquals( new Rectangle( 0, 0, 800, 600 ), l.region );
+        assertEquals( 10, l.dx );
+        assertEquals( -5, l.dy );
+        assertEquals( 2.5D, l.timeout, 1e-9 );
+        assertFalse( l.isPlain() );
+        assertEquals( "ok.png@sim=0.9@region=0,0,800,600", l.searchKey );
+    }
+
+    public void testOptionsInAnyOrder()
+    {
+        Locator l = Locator.parse( "Save As[last]@timeout=1@SIM=0.8" );
+        assertEquals( "Save As", l.object );
+        assertEquals( -1, l.selector.index );
+        assertEquals( 0.8D, l.similarity, 1e-9 );
+        assertNull( l.region );
+        assertFalse( l.hasOffset() );
+    }
+
+    public void testPlainArguments()
+    {
+        Locator l = Locator.parse( "C:\\images\\ok.png" );
+        assertTrue( l.isPlain() );
+        assertEquals( "C:\\images\\ok.png", l.object );
+        assertEquals( l.object, l.searchKey );
+        // an @ not followed by a known option is a part of the text
+        for ( String text : new String[] { "mail john@example.com", "a=b@c", "@sim=0.9", "x@size=3" } ) {
+            l = Locator.parse( text );
+            assertTrue( text, l.isPlain() );
+            assertEquals( text, l.object );
+        }
+        l = Locator.parse( "icon.png[3,1]" );
+        assertEquals( "icon.png", l.object );
+        assertEquals( 3, l.selector.row );
+        assertEquals( 1, l.selector.col );
+    }
+
+    public void testTimeoutPrecedence()
+    {
+        Locator l = Locator.parse( "ok.png@timeout=4" );
+        assertEquals( 7.0D, l.timeout( 7.0D, 3.0D ), 1e-9 );
+        assertEquals( 4.0D, l.timeout( -1.0D, 3.0D ), 1e-9 );
+        assertEquals( 3.0D, Locator.parse( "ok.png" ).timeout( -1.0D, 3.0D ), 1e-9 );
+    }
+
+    public void testInvalidOptions()
+    {
+        String[] invalid = { "ok.png@sim=1.5", "ok.png@sim=high", "ok.png@region=0,0,800", "ok.png@region=0,0,0,600",
+                             "ok.png@offset=1", "ok.png@timeout=-1", "ok.png@sim=0.9@sim=0.8" };
+        for ( String argument : invalid ) {
+            try {
+                Locator.parse( argument );
+                fail( argument + " was accepted" );
+            } catch ( IllegalArgumentException e ) {
+                assertTrue( e.getMessage(), e.getMessage().contains( argument ) );
+            }
+        }
+    }
+
+    public void testCachedByArgument()
+    {
+        Locator first = Locator.of( "cached.png[1]@sim=0.7" );
+        assertSame( first, Locator.of( "cached.png[1]@sim=0.7" ) );
+        assertNotSame( first, Locator.of( "cached.png[1]@sim=0.75" ) );
+        for ( int i = 0; i < Locator.MAX_CACHED + 10; i++ ) {
+            Locator.of( "text " + i );
+        }
+        assertEquals( Locator.MAX_CACHED, Locator.cached() );
+    }
+
+    public void testInvalidOptionIsNotReportedAsTimeout() throws Exception
+    {
+        SikuliKeywords keywords =
+            new SikuliKeywords( new InMemoryScreenSource( new BufferedImage( 40, 30, BufferedImage.TYPE_INT_RGB ) ) );
+        try {
+            keywords.waitForObjectToDisappear( "ok.png@sim=2", "0.1" );
+            fail( "the invalid option was accepted" );
+        } catch ( IllegalArgumentException e ) {
+            assertTrue( e.getMessage(), e.getMessage().contains( "similarity" ) );
+        }
+        try {
+            keywords.findFirstOf( new String[] { "Save", "ok.png[2]@region=0,0,800" } );
+            fail( "the invalid option was accepted" );
+        } catch ( IllegalArgumentException e ) {
+            assertTrue( e.getMessage(), e.getMessage().contains( "region" ) );
+        }
+    }
+
+    public void testUndecodableTemplateIsNotReportedAsTimeout() throws Exception
+    {
+        File broken = File.createTempFile( "broken", ".png" );
+        try {
+            FileOutputStream out = new FileOutputStream( broken );
+            out.write( "not an image".getBytes( "US-ASCII" ) );
+            out.close();
+            SikuliKeywords keywords =
+                new SikuliKeywords( new InMemoryScreenSource( new BufferedImage( 40, 30, BufferedImage.TYPE_INT_RGB ) ) );
+            try {
+                keywords.waitForAnyObject( "0.1", new String[] { broken.getAbsolutePath() } );
+                fail( "the broken template was not reported" );
+            } catch ( IOException e ) {
+                assertTrue( e.getMessage(), e.getMessage().contains( "decode" ) );
+            }
+        } finally {
+            broken.delete();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the reading order index of matches.
+ */
+public class MatchIndexTest
+    extends TestCase
+{
+    /* A 3x3 grid of icons, rows slightly misaligned, given in scrambled order */
+    private static final int[] XS = { 300, 100, 200, 100, 300, 200, 200, 100, 300 };
+    private static final int[] YS = { 52, 50, 148, 150, 151, 49, 250, 252, 248 };
+    private static final String[] NAMES = { "r1c3", "r1c1", "r2c2", "r2c1", "r2c3", "r1c2", "r3c2", "r3c1", "r3c3" };
+
+    private MatchIndex<String> grid()
+    {
+        return new MatchIndex<String>( "icon.png", this, Arrays.asList( NAMES ), XS, YS, 10 );
+    }
+
+    private String select( MatchIndex<String> index, String notation )
+    {
+        return index.select( MatchIndex.Selector.parse( "icon.png" + notation ) );
+    }
+
+    public void testNotationParsing()
+    {
+        assertTrue( MatchIndex.isIndexed( "ok.png[3]" ) );
+        assertTrue( MatchIndex.isIndexed( "ok.png[last]" ) );
+        assertTrue( MatchIndex.isIndexed( "ok.png[-2]" ) );
+        assertTrue( MatchIndex.isIndexed( "Some text[2, 3]" ) );
+        assertFalse( MatchIndex.isIndexed( "ok.png" ) );
+        assertFalse( MatchIndex.isIndexed( "ok.png[x]" ) );
+        MatchIndex.Selector s = MatchIndex.Selector.parse( "C:\\dir[1]\\ok.png[2,3]" );
+        assertEquals( "C:\\dir[1]\\ok.png", s.object );
+        assertEquals( 2, s.row );
+        assertEquals( 3, s.col );
+    }
+
+    public void testReadingOrder()
+    {
+        MatchIndex<String> index = grid();
+        assertEquals( 3, index.rows() );
+        assertEquals( "r1c1", select( index, "[1]" ) );
+        assertEquals( "r1c3", select( index, "[3]" ) );
+        assertEquals( "r2c1", select( index, "[4]" ) );
+        assertEquals( "r3c3", select( index, "[9]" ) );
+        assertEquals( "r3c3", select( index, "[last]" ) );
+        assertEquals( "r3c2", select( index, "[-2]" ) );
+        assertEquals( "r2c3", select( index, "[2,3]" ) );
+    }
+
+    public void testOutOfRange()
+    {
+        MatchIndex<String> index = grid();
+        assertNull( select( index, "[10]" ) );
+        assertNull( select( index, "[0]" ) );
+        assertNull( select( index, "[-10]" ) );
+        assertNull( select( index, "[4,1]" ) );
+        assertNull( select( index, "[1,4]" ) );
+    }
+
+    public void testSelectionMatchesFullSort()
+    {
+        Random random = new Random( 42 );
+        int n = 500;
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        List<Integer> items = new ArrayList<Integer>();
+        for ( int i = 0; i < n; i++ ) {
+            xs[i] = random.nextInt( 3840 );
+            ys[i] = 40 * random.nextInt( 50 );
+            items.add( ys[i] * 10000 + xs[i] );
+        }
+        List<Integer> expected = new ArrayList<Integer>( items );
+        java.util.Collections.sort( expected );
+        for ( int k = 1; k <= n; k += 37 ) {
+            // a fresh index uses the partial selection, a reused one the sorted keys
+            MatchIndex<Integer> fresh = new MatchIndex<Integer>( "a", this, items, xs, ys, 5 );
+            assertEquals( expected.get( k - 1 ), fresh.select( MatchIndex.Selector.parse( "a[" + k + "]" ) ) );
+            assertEquals( expected.get( k - 1 ), fresh.select( MatchIndex.Selector.parse( "a[" + k + "]" ) ) );
+        }
+    }
+
+    public void testBoundToFrameAndObject()
+    {
+        MatchIndex<String> index = grid();
+        assertTrue( index.isFor( "icon.png", this ) );
+        assertFalse( index.isFor( "icon.png", new Object() ) );
+        assertFalse( index.isFor( "other.png", this ) );
+    }
+}
@@ -0,0 +1,23 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the keys of the OCR result cache.
+ */
+public class OcrCacheTest
+    extends TestCase
+{
+    public void testCacheKeyFollowsPixelsAndPosition()
+    {
+        BufferedImage img = new BufferedImage( 8, 8, BufferedImage.TYPE_INT_RGB );
+        long key = OcrCache.key( img, new Rectangle( 0, 0, 8, 8 ) );
+        assertEquals( key, OcrCache.key( img, new Rectangle( 0, 0, 8, 8 ) ) );
+        assertFalse( key == OcrCache.key( img, new Rectangle( 8, 0, 8, 8 ) ) );
+        img.setRGB( 7, 7, 0x010101 );
+        assertFalse( key == OcrCache.key( img, new Rectangle( 0, 0, 8, 8 ) ) );
+    }
+}
@@ -0,0 +1,183 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the OCR engine pool and the Tesseract output parser.
+ */
+public class OcrPoolTest
+    extends TestCase
+{
+    /* "Recognizes" a word every 100 rows of the screen, one line of text high */
+    private static class LineEngine
+        implements OcrEngine
+    {
+        final AtomicInteger running;
+        final AtomicInteger peak;
+
+        LineEngine( AtomicInteger running, AtomicInteger peak )
+        {
+            this.running = running;
+            this.peak = peak;
+        }
+
+        public List<OcrWord> recognize( BufferedImage image, Rectangle area ) throws Exception
+        {
+            int now = running.incrementAndGet();
+            synchronized ( peak ) {
+                peak.set( Math.max( peak.get(), now ) );
+            }
+            try {
+                Thread.sleep( 30 );
+                List<OcrWord> words = new ArrayList<OcrWord>();
+                for ( int y = 10; y < 1000; y += 100 ) {
+                    Rectangle box = new Rectangle( 20, y, 60, 20 );
+                    if ( area.contains( box ) ) {
+                        words.add( new OcrWord( "line" + y, box, 0.9D ) );
+                    }
+                }
+                return words;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    private static List<OcrEngine> engines( int n, AtomicInteger running, AtomicInteger peak )
+    {
+        List<OcrEngine> list = new ArrayList<OcrEngine>();
+        for ( int i = 0; i < n; i++ ) {
+            list.add( new LineEngine( running, peak ) );
+        }
+        return list;
+    }
+
+    public void testBandsCoverTheAreaWithOverlap()
+    {
+        assertEquals( 1, OcrPool.bands( 300, 8 ).size() );
+        assertEquals( 1, OcrPool.bands( 2000, 1 ).size() );
+        List<int[]> bands = OcrPool.bands( 1000, 4 );
+        assertEquals( 4, bands.size() );
+        int covered = 0;
+        for ( int[] b : bands ) {
+            assertEquals( covered, b[0] );
+            covered = b[1];
+            assertTrue( b[2] == 0 || b[0] - b[2] == OcrPool.OVERLAP );
+            assertTrue( b[3] == 1000 || b[3] - b[1] == OcrPool.OVERLAP );
+        }
+        assertEquals( 1000, covered );
+    }
+
+    public void testBandsAreRecognizedInParallelWithoutDuplicates() throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        OcrPool pool = new OcrPool( engines( 4, running, peak ) );
+        try {
+            // the words at rows 210 and 710 are cut or doubled by the band edges at 250 and 750
+            Rectangle area = new Rectangle( 0, 0, 100, 1000 );
+            List<OcrWord> words = pool.recognize( new BufferedImage( 100, 1000, BufferedImage.TYPE_BYTE_GRAY ), area );
+            List<String> texts = new ArrayList<String>();
+            for ( OcrWord w : words ) {
+                texts.add( w.text );
+            }
+            assertEquals( Arrays.asList( "line10", "line110", "line210", "line310", "line410", "line510", "line610",
+                                         "line710", "line810", "line910" ), texts );
+            assertEquals( 4, peak.get() );
+            String stats = pool.toString();
+            assertTrue( stats, stats.contains( "recognitions 1 in 4 bands" ) );
+            assertTrue( stats, stats.contains( "engine 4: 1 calls, 0 failed" ) );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testScreenCoordinatesOfAnOffsetArea() throws Exception
+    {
+        OcrPool pool = new OcrPool( engines( 2, new AtomicInteger(), new AtomicInteger() ) );
+        try {
+            List<OcrWord> words =
+                pool.recognize( new BufferedImage( 100, 400, BufferedImage.TYPE_INT_RGB ), new Rectangle( 0, 200, 100, 400 ) );
+            assertEquals( 4, words.size() );
+            assertEquals( 210, words.get( 0 ).box.y );
+            assertEquals( 510, words.get( 3 ).box.y );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testConcurrentCallersShareTheEngines() throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        final OcrPool pool = new OcrPool( engines( 2, running, peak ) );
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[6];
+        for ( int i = 0; i < threads.length; i++ ) {
+            threads[i] = new Thread( new Runnable() {
+                public void run() {
+                    try {
+                        pool.recognize( new BufferedImage( 100, 100, BufferedImage.TYPE_BYTE_GRAY ),
+                                        new Rectangle( 0, 0, 100, 100 ) );
+                    } catch ( Throwable t ) {
+                        synchronized ( errors ) {
+                            errors.add( t );
+                        }
+                    }
+                }
+            } );
+            threads[i].start();
+        }
+        for ( Thread t : threads ) {
+            t.join();
+        }
+        pool.shutdown();
+        assertTrue( errors.toString(), errors.isEmpty() );
+        assertEquals( 2, peak.get() );
+        String stats = pool.toString();
+        assertTrue( stats, stats.contains( "recognitions 6 in 6 bands" ) );
+        assertTrue( stats, stats.contains( "utilization" ) );
+    }
+
+    public void testFailedRecognitionReleasesTheEngine() throws Exception
+    {
+        OcrEngine failing = new OcrEngine() {
+            public List<OcrWord> recognize( BufferedImage image, Rectangle area ) throws Exception {
+                throw new java.io.IOException( "tesseract not found" );
+            }
+        };
+        OcrPool pool = new OcrPool( Arrays.asList( failing ) );
+        for ( int i = 0; i < 2; i++ ) {
+            try {
+                pool.recognize( new BufferedImage( 10, 10, BufferedImage.TYPE_BYTE_GRAY ), new Rectangle( 0, 0, 10, 10 ) );
+                fail( "the failure was not reported" );
+            } catch ( java.io.IOException e ) {
+                assertEquals( "tesseract not found", e.getMessage() );
+            }
+        }
+        assertTrue( pool.toString().contains( "2 calls, 2 failed" ) );
+    }
+
+    public void testTesseractTsvWords()
+    {
+        String tsv = "level\tpage_num\tblock_num\tpar_num\tline_num\tword_num\tleft\ttop\twidth\theight\tconf\ttext\n"
+            + "1\t1\t0\t0\t0\t0\t0\t0\t200\t100\t-1\t\n"
+            + "4\t1\t1\t1\t1\t0\t10\t5\t120\t20\t-1\t\n"
+            + "5\t1\t1\t1\t1\t1\t10\t5\t50\t20\t91.5\tHello\n"
+            + "5\t1\t1\t1\t1\t2\t70\t6\t60\t19\t88\tworld\n"
+            + "5\t1\t1\t1\t1\t3\t140\t6\t10\t19\t95\t \n";
+        List<OcrWord> words = TesseractOcrEngine.parseTsv( tsv, 100, 200 );
+        assertEquals( 2, words.size() );
+        assertEquals( "Hello", words.get( 0 ).text );
+        assertEquals( new Rectangle( 110, 205, 50, 20 ), words.get( 0 ).box );
+        assertEquals( 0.915D, words.get( 0 ).score, 1e-9 );
+        assertEquals( "world", words.get( 1 ).text );
+    }
+}
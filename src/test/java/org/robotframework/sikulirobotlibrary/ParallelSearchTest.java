@@ -0,0 +1,123 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the concurrent search of several candidate objects.
+ */
+public class ParallelSearchTest
+    extends TestCase
+{
+    /* The searches find their score itself */
+    private static final ParallelSearch.Scorer<Double> SCORE = new ParallelSearch.Scorer<Double>() {
+        public double score( Double match )
+        {
+            return match;
+        }
+    };
+
+    private ParallelSearch<Double> search;
+
+    @Override
+    protected void setUp()
+    {
+        search = new ParallelSearch<Double>( 4, SCORE );
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        search.shutdown();
+    }
+
+    /* Finds the score after the delay, a null score is not found */
+    private static Callable<Double> found( final Double score, final long delayMillis )
+    {
+        return new Callable<Double>() {
+            public Double call() throws Exception
+            {
+                Thread.sleep( delayMillis );
+                return score;
+            }
+        };
+    }
+
+    private static Callable<Double> failing()
+    {
+        return new Callable<Double>() {
+            public Double call() throws Exception
+            {
+                throw new IllegalStateException( "search failed" );
+            }
+        };
+    }
+
+    public void testOrderWaitsForTheEarlierCandidates() throws Exception
+    {
+        List<Callable<Double>> searches = new ArrayList<Callable<Double>>();
+        searches.add( found( 0.5D, 100 ) );
+        searches.add( found( 0.9D, 0 ) );
+        ParallelSearch.Hit<Double> hit = search.first( searches );
+        assertEquals( 0, hit.index );
+        assertEquals( 0.5D, hit.match, 1e-9 );
+
+        searches.set( 0, found( null, 100 ) );
+        hit = search.first( searches );
+        assertEquals( 1, hit.index );
+    }
+
+    public void testScorePicksTheBestWithTheOrderBreakingTies() throws Exception
+    {
+        search.setPriority( ParallelSearch.Priority.SCORE );
+        List<Callable<Double>> searches = new ArrayList<Callable<Double>>();
+        searches.add( found( 0.8D, 0 ) );
+        searches.add( found( 0.95D, 50 ) );
+        searches.add( found( 0.95D, 0 ) );
+        searches.add( found( null, 0 ) );
+        ParallelSearch.Hit<Double> hit = search.first( searches );
+        assertEquals( 1, hit.index );
+        assertEquals( 0.95D, hit.match, 1e-9 );
+    }
+
+    public void testNothingFound() throws Exception
+    {
+        assertNull( search.first( Arrays.asList( found( null, 10 ), failing() ) ) );
+        search.setPriority( ParallelSearch.Priority.SCORE );
+        assertNull( search.first( Arrays.asList( failing(), found( null, 0 ) ) ) );
+    }
+
+    public void testDecidedSearchCancelsTheRest() throws Exception
+    {
+        final CountDownLatch cancelled = new CountDownLatch( 1 );
+        Callable<Double> slow = new Callable<Double>() {
+            public Double call() throws Exception
+            {
+                try {
+                    Thread.sleep( 10000 );
+                } catch ( InterruptedException e ) {
+                    cancelled.countDown();
+                    throw e;
+                }
+                return 1.0D;
+            }
+        };
+        long t0 = System.currentTimeMillis();
+        ParallelSearch.Hit<Double> hit = search.first( Arrays.asList( found( 0.7D, 0 ), slow ) );
+        assertEquals( 0, hit.index );
+        assertTrue( System.currentTimeMillis() - t0 < 5000 );
+        assertTrue( cancelled.await( 5, TimeUnit.SECONDS ) );
+    }
+
+    public void testAllKeepsTheOrderOfTheSearches() throws Exception
+    {
+        List<Double> results = search.all( Arrays.asList( found( 0.6D, 50 ), failing(), found( 0.9D, 0 ) ) );
+        assertEquals( Arrays.asList( 0.6D, null, 0.9D ), results );
+    }
+}
@@ -0,0 +1,44 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the coarse level of the pyramid matching.
+ */
+public class PyramidMatcherTest
+    extends TestCase
+{
+    public void testDownsampleAveragesBlocks()
+    {
+        BufferedImage src = new BufferedImage( 4, 2, BufferedImage.TYPE_INT_RGB );
+        src.setRGB( 0, 0, 0x000000 );
+        src.setRGB( 1, 0, 0xff0000 );
+        src.setRGB( 0, 1, 0x00ff00 );
+        src.setRGB( 1, 1, 0x0000ff );
+        for ( int y = 0; y < 2; y++ ) {
+            src.setRGB( 2, y, 0x808080 );
+            src.setRGB( 3, y, 0x808080 );
+        }
+        BufferedImage dst = PyramidMatcher.downsample( src, 2 );
+        assertEquals( 2, dst.getWidth() );
+        assertEquals( 1, dst.getHeight() );
+        assertEquals( 0x3f3f3f, dst.getRGB( 0, 0 ) & 0xffffff );
+        assertEquals( 0x808080, dst.getRGB( 1, 0 ) & 0xffffff );
+    }
+
+    public void testFactorDependsOnScreenAndTemplateSize()
+    {
+        Rectangle fullHd = new Rectangle( 0, 0, 1920, 1080 );
+        Rectangle uhd = new Rectangle( 0, 0, 3840, 2160 );
+        BufferedImage big = new BufferedImage( 64, 64, BufferedImage.TYPE_INT_RGB );
+        BufferedImage medium = new BufferedImage( 30, 30, BufferedImage.TYPE_INT_RGB );
+        BufferedImage tiny = new BufferedImage( 16, 40, BufferedImage.TYPE_INT_RGB );
+        assertEquals( 2, PyramidMatcher.factorFor( fullHd, big ) );
+        assertEquals( 4, PyramidMatcher.factorFor( uhd, big ) );
+        assertEquals( 2, PyramidMatcher.factorFor( uhd, medium ) );
+        assertEquals( 1, PyramidMatcher.factorFor( uhd, tiny ) );
+    }
+}
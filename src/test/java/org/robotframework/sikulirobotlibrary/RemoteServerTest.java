@@ -0,0 +1,108 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.robotframework.javalib.library.KeywordDocumentationRepository;
+import org.robotframework.javalib.library.RobotJavaLibrary;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the XML-RPC remote library server.
+ */
+public class RemoteServerTest
+    extends TestCase
+{
+    /* Library with one keyword echoing its arguments and one failing */
+    private static class EchoLibrary
+        implements RobotJavaLibrary, KeywordDocumentationRepository
+    {
+        public String[] getKeywordNames()
+        {
+            return new String[] { "echo", "failNow" };
+        }
+
+        public Object runKeyword( String name, Object[] args )
+        {
+            if ( name.equals( "failNow" ) ) {
+                throw new RuntimeException( new IllegalStateException( "failed on purpose" ) );
+            }
+            System.out.println( "*DEBUG* echoing" );
+            return Arrays.asList( args );
+        }
+
+        public String getKeywordDocumentation( String name )
+        {
+            return "Doc of " + name;
+        }
+
+        public String[] getKeywordArguments( String name )
+        {
+            return new String[] { "*values" };
+        }
+    }
+
+    public void testParseCall() throws Exception
+    {
+        String xml = "<?xml version=\"1.0\"?><methodCall><methodName>run_keyword</methodName><params>"
+                     + "<param><value><string>Echo</string></value></param>"
+                     + "<param><value><array><data><value>a &amp; b</value><value><int>7</int></value>"
+                     + "<value><boolean>1</boolean></value></data></array></value></param>"
+                     + "</params></methodCall>";
+        XmlRpc.Call call = XmlRpc.parseCall( new ByteArrayInputStream( xml.getBytes( "UTF-8" ) ) );
+        assertEquals( "run_keyword", call.method );
+        assertEquals( "Echo", call.params.get( 0 ) );
+        assertEquals( Arrays.<Object>asList( "a & b", 7, Boolean.TRUE ), call.params.get( 1 ) );
+    }
+
+    public void testRunKeywordResult()
+    {
+        RemoteServer server = new RemoteServer( new EchoLibrary(), new EchoLibrary() );
+        Map<String, Object> ok = server.runKeyword( "Echo", Arrays.<Object>asList( "x", 3 ) );
+        assertEquals( "PASS", ok.get( "status" ) );
+        assertEquals( Arrays.<Object>asList( "x", "3" ), ok.get( "return" ) );
+        assertTrue( ok.get( "output" ).toString().startsWith( "*DEBUG* echoing" ) );
+
+        Map<String, Object> failed = server.runKeyword( "fail_now", Arrays.<Object>asList() );
+        assertEquals( "FAIL", failed.get( "status" ) );
+        assertEquals( "failed on purpose", failed.get( "error" ) );
+    }
+
+    public void testServeOverHttp() throws Exception
+    {
+        RemoteServer server = new RemoteServer( new EchoLibrary(), new EchoLibrary() );
+        int port = server.serve( 0, 0 );
+        try {
+            String xml = "<?xml version=\"1.0\"?><methodCall><methodName>get_keyword_names</methodName>"
+                         + "<params></params></methodCall>";
+            HttpURLConnection conn = (HttpURLConnection) new URL( "http://127.0.0.1:" + port + "/RPC2" ).openConnection();
+            conn.setDoOutput( true );
+            conn.setRequestMethod( "POST" );
+            OutputStream out = conn.getOutputStream();
+            out.write( xml.getBytes( "UTF-8" ) );
+            out.close();
+            InputStream in = conn.getInputStream();
+            String response = new java.util.Scanner( in, "UTF-8" ).useDelimiter( "\\A" ).next();
+            in.close();
+            assertTrue( response, response.contains( "<string>echo</string>" ) );
+            assertTrue( response, response.contains( "<string>" + RemoteServer.STOP + "</string>" ) );
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void testEncodeStruct()
+    {
+        StringBuilder sb = new StringBuilder();
+        XmlRpc.value( sb, java.util.Collections.singletonMap( "return", (Object) Arrays.asList( 1, "<a>" ) ) );
+        assertEquals( "<value><struct><member><name>return</name><value><array><data>"
+                      + "<value><int>1</int></value><value><string>&lt;a&gt;</string></value>"
+                      + "</data></array></value></member></struct></value>", sb.toString() );
+    }
+}
@@ -0,0 +1,84 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the delta-encoded ring buffer of the screen recorder.
+ */
+public class ScreenRecorderTest
+    extends TestCase
+{
+    private static final Rectangle SCREEN = new Rectangle( 0, 0, 70, 40 );
+
+    private static BufferedImage frame( int marker )
+    {
+        BufferedImage img = new BufferedImage( SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_RGB );
+        img.setRGB( 65, 35, marker );
+        img.setRGB( 5 + marker % 50, 5, 0xffffff );
+        return img;
+    }
+
+    public void testOldestRecordsFoldIntoBase() throws Exception
+    {
+        // each record holds a full tile and the 6x8 corner tile, the ring keeps three records
+        long ringBytes = 4L * 3 * ( 4 + 1 + 32 * 32 + 1 + 6 * 8 );
+        ScreenRecorder recorder = new ScreenRecorder( new InMemoryScreenSource( frame( 0 ) ), 5, 60, ringBytes );
+        for ( int i = 0; i < 6; i++ ) {
+            recorder.add( frame( i ), SCREEN, 1000L + 200 * i );
+        }
+        assertEquals( 4, recorder.frames() );
+
+        File dir = new File( System.getProperty( "java.io.tmpdir" ), "recording-" + System.nanoTime() );
+        try {
+            assertEquals( 4, recorder.dump( dir, Arrays.asList( "Object: test" ) ) );
+            BufferedImage first = ImageIO.read( new File( dir, "frame-000.png" ) );
+            BufferedImage last = ImageIO.read( new File( dir, "frame-003.png" ) );
+            assertEquals( 2, first.getRGB( 65, 35 ) & 0xffffff );
+            assertEquals( 5, last.getRGB( 65, 35 ) & 0xffffff );
+            assertEquals( 0xffffff, last.getRGB( 10, 5 ) & 0xffffff );
+            assertEquals( 0, last.getRGB( 9, 5 ) & 0xffffff );
+        } finally {
+            File[] files = dir.listFiles();
+            if ( files != null ) {
+                for ( File f : files ) {
+                    f.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    public void testOldFramesLeaveTheWindow()
+    {
+        ScreenRecorder recorder = new ScreenRecorder( new InMemoryScreenSource( frame( 0 ) ), 5, 1, 1024L * 1024 );
+        for ( int i = 0; i < 10; i++ ) {
+            recorder.add( frame( i ), SCREEN, 1000L + 200 * i );
+        }
+        // one second at 200 ms: the base frame and the five records after it
+        assertEquals( 6, recorder.frames() );
+    }
+
+    public void testKeywordRejectsNonPositiveSettings() throws Exception
+    {
+        SikuliKeywords keywords =
+            new SikuliKeywords( new InMemoryScreenSource( new BufferedImage( 8, 6, BufferedImage.TYPE_INT_RGB ) ) );
+        String[][] invalid = { { "10", "0", "64" }, { "10", "-5", "64" }, { "10", "5", "0" }, { "10", "5", "-1" },
+                               { "0", "5", "64" }, { "10", "NaN", "64" } };
+        for ( String[] args : invalid ) {
+            try {
+                keywords.startScreenRecorder( args[0], args[1], args[2] );
+                fail( Arrays.toString( args ) + " was accepted" );
+            } catch ( IllegalArgumentException e ) {
+                assertTrue( e.getMessage(), e.getMessage().contains( "must be positive" ) );
+            }
+        }
+        assertNull( keywords.sessionFor( 0 ).recorder );
+    }
+}
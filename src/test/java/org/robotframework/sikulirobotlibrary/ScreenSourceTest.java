@@ -0,0 +1,223 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.sikuli.script.ScreenImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the recorded, Xvfb and in-memory screen sources and the frame recycling.
+ */
+public class ScreenSourceTest
+    extends TestCase
+{
+    public void testInMemoryFrame()
+    {
+        BufferedImage first = new BufferedImage( 40, 30, BufferedImage.TYPE_INT_RGB );
+        BufferedImage second = new BufferedImage( 20, 10, BufferedImage.TYPE_INT_RGB );
+        InMemoryScreenSource source = new InMemoryScreenSource( first );
+        assertSame( first, source.capture() );
+        source.setFrame( second, 100, 50 );
+        assertEquals( new Rectangle( 100, 50, 20, 10 ), source.getBounds() );
+        assertSame( second, source.capture() );
+        assertEquals( 2, source.getCaptures() );
+    }
+
+    public void testRecordedFramesInNameOrder() throws Exception
+    {
+        File dir = File.createTempFile( "frames", "" );
+        dir.delete();
+        dir.mkdir();
+        try {
+            for ( int i = 0; i < 3; i++ ) {
+                BufferedImage img = new BufferedImage( 8, 6, BufferedImage.TYPE_INT_RGB );
+                img.setRGB( 0, 0, i );
+                ImageIO.write( img, "png", new File( dir, "frame" + i + ".png" ) );
+            }
+            RecordedScreenSource source = new RecordedScreenSource( dir );
+            assertEquals( new Rectangle( 0, 0, 8, 6 ), source.getBounds() );
+            assertEquals( 0, source.capture().getRGB( 0, 0 ) & 0xffffff );
+            assertEquals( 1, source.capture().getRGB( 0, 0 ) & 0xffffff );
+            assertEquals( 2, source.capture().getRGB( 0, 0 ) & 0xffffff );
+            assertEquals( 2, source.capture().getRGB( 0, 0 ) & 0xffffff );
+            source.rewind();
+            assertEquals( 0, source.capture().getRGB( 0, 0 ) & 0xffffff );
+        } finally {
+            for ( File f : dir.listFiles() ) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    public void testObserverDoesNotMoveTheReplay() throws Exception
+    {
+        File dir = File.createTempFile( "frames", "" );
+        dir.delete();
+        dir.mkdir();
+        try {
+            for ( int i = 0; i < 3; i++ ) {
+                BufferedImage img = new BufferedImage( 8, 6, BufferedImage.TYPE_INT_RGB );
+                img.setRGB( 0, 0, i );
+                ImageIO.write( img, "png", new File( dir, "frame" + i + ".png" ) );
+            }
+            SikuliKeywords keywords =
+                new SikuliKeywords( new InMemoryScreenSource( new BufferedImage( 40, 30, BufferedImage.TYPE_INT_RGB ) ) );
+            keywords.startScreenRecorder( "1", "100", "1" );
+            try {
+                keywords.useScreenSource( dir.getPath() );
+                RecordedScreenSource replay = (RecordedScreenSource) keywords.sessionFor( 0 ).frameCache.getSource();
+                ScreenSource observer = replay.observer();
+                assertEquals( 0, observer.capture().getRGB( 0, 0 ) & 0xffffff );
+                replay.capture();
+                replay.capture();
+                assertEquals( 1, observer.capture().getRGB( 0, 0 ) & 0xffffff );
+                Thread.sleep( 200 );
+                // the recorder captured the replay all the time without moving it
+                assertEquals( 2, replay.getPosition() );
+                String report = keywords.stopScreenRecorder();
+                assertFalse( report, report.contains( "captured 0 " ) );
+                File recording = new File( dir, "recording" );
+                keywords.sessionFor( 0 ).recorder.dump( recording, java.util.Collections.<String>emptyList() );
+                java.util.Scanner in = new java.util.Scanner( new File( recording, "recording.txt" ), "UTF-8" );
+                String index = in.useDelimiter( "\\A" ).next();
+                in.close();
+                assertTrue( index, index.contains( " 8x6, " ) );
+                for ( File f : recording.listFiles() ) {
+                    f.delete();
+                }
+                recording.delete();
+            } finally {
+                keywords.stopScreenRecorder();
+            }
+        } finally {
+            for ( File f : dir.listFiles() ) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    public void testXvfbScreenFile() throws Exception
+    {
+        File file = File.createTempFile( "Xvfb_screen", "" );
+        try {
+            // little-endian pixels with padded lines, as Xvfb writes them on x86
+            writeXwd( file, 5, 3, 8, false, 0xff0000, 0xff );
+            XvfbScreenSource source = new XvfbScreenSource( file );
+            assertEquals( new Rectangle( 0, 0, 5, 3 ), source.getBounds() );
+            BufferedImage img = source.capture();
+            assertEquals( 5, img.getWidth() );
+            assertEquals( 3, img.getHeight() );
+            for ( int y = 0; y < 3; y++ ) {
+                for ( int x = 0; x < 5; x++ ) {
+                    assertEquals( pixel( x, y ), img.getRGB( x, y ) & 0xffffff );
+                }
+            }
+            // the file is recreated with another size and layout
+            writeXwd( file, 4, 2, 4, true, 0xff, 0xff0000 );
+            img = source.capture();
+            assertEquals( new Rectangle( 0, 0, 4, 2 ), source.getBounds() );
+            assertEquals( pixel( 3, 1 ), img.getRGB( 3, 1 ) & 0xffffff );
+            assertEquals( pixel( 1, 0 ), img.getRGB( 1, 0 ) & 0xffffff );
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testXvfbCaptureIntoReusedFrame() throws Exception
+    {
+        File file = File.createTempFile( "Xvfb_screen", "" );
+        try {
+            writeXwd( file, 6, 4, 6, false, 0xff0000, 0xff );
+            XvfbScreenSource source = new XvfbScreenSource( file );
+            BufferedImage frame = source.capture( null );
+            assertSame( frame, source.capture( frame ) );
+            assertEquals( pixel( 5, 3 ), frame.getRGB( 5, 3 ) & 0xffffff );
+            BufferedImage other = new BufferedImage( 6, 5, BufferedImage.TYPE_INT_RGB );
+            assertNotSame( other, source.capture( other ) );
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testUnchangedFrameIsRecycled() throws Exception
+    {
+        File file = File.createTempFile( "Xvfb_screen", "" );
+        try {
+            writeXwd( file, 6, 4, 6, false, 0xff0000, 0xff );
+            FrameCache frames = new FrameCache( new XvfbScreenSource( file ) );
+            ScreenImage earlier = frames.refresh();
+            ScreenImage latest = frames.refresh();
+            assertSame( earlier, frames.unchanged( earlier, latest ) );
+            assertSame( earlier, frames.get() );
+            // the pixels of the dropped capture take the next one
+            assertSame( latest.getImage(), frames.refresh().getImage() );
+            assertEquals( 1, frames.getRecycled() );
+            // a frame already handed out is kept
+            ScreenImage shared = frames.refresh();
+            assertSame( shared, frames.get() );
+            assertSame( shared, frames.unchanged( earlier, shared ) );
+            assertEquals( 1, frames.getRecycled() );
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testNotAnXwdFile() throws Exception
+    {
+        File file = File.createTempFile( "frame", ".png" );
+        try {
+            ImageIO.write( new BufferedImage( 8, 6, BufferedImage.TYPE_INT_RGB ), "png", file );
+            new XvfbScreenSource( file );
+            fail( "a PNG file was mapped" );
+        } catch ( java.io.IOException e ) {
+            assertTrue( e.getMessage().contains( "XWD" ) );
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static int pixel( int x, int y )
+    {
+        return ( x * 40 << 16 ) | ( y * 70 << 8 ) | ( x + y );
+    }
+
+    /* An XWD file of 32 bits per pixel with the given line length in pixels */
+    private static void writeXwd( File file, int width, int height, int stride, boolean bigEndian,
+                                  int redMask, int blueMask ) throws Exception
+    {
+        String name = "Xvfb main window";
+        int headerSize = 100 + name.length() + 1;
+        DataOutputStream out = new DataOutputStream( new FileOutputStream( file ) );
+        try {
+            int[] header = { headerSize, 7, 2, 24, width, height, 0, bigEndian ? 1 : 0, 32, bigEndian ? 1 : 0,
+                             32, 32, stride * 4, 4, redMask, 0xff00, blueMask, 8, 256, 0, width, height, 0, 0, 0 };
+            for ( int v : header ) {
+                out.writeInt( v );
+            }
+            out.write( name.getBytes( "US-ASCII" ) );
+            out.write( 0 );
+            for ( int y = 0; y < height; y++ ) {
+                for ( int x = 0; x < stride; x++ ) {
+                    int p = ( x < width ) ? pixel( x, y ) : 0x123456;
+                    if ( redMask == 0xff ) {
+                        p = ( ( p & 0xff ) << 16 ) | ( p & 0xff00 ) | ( p >> 16 );
+                    }
+                    // the unused top byte is not zero
+                    p |= 0xff000000;
+                    out.writeInt( bigEndian ? p : Integer.reverseBytes( p ) );
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the text lookups of the screen text index.
+ */
+public class ScreenTextIndexTest
+    extends TestCase
+{
+    // deliberately not in reading order
+    private static final List<OcrWord> WORDS = Arrays.asList(
+        new OcrWord( "as", new Rectangle( 60, 80, 15, 11 ), 0.9D ),
+        new OcrWord( "Save", new Rectangle( 10, 40, 40, 12 ), 0.95D ),
+        new OcrWord( "as", new Rectangle( 55, 11, 15, 11 ), 0.8D ),
+        new OcrWord( "Save", new Rectangle( 10, 10, 40, 12 ), 0.9D ) );
+
+    public void testPhraseOnOneRow()
+    {
+        List<OcrWord> found = new ScreenTextIndex( null, false, WORDS ).lookup( "Save  as", false, 0 );
+        assertEquals( 1, found.size() );
+        assertEquals( new Rectangle( 10, 10, 60, 12 ), found.get( 0 ).box );
+        assertEquals( 0.8D, found.get( 0 ).score, 0.0D );
+    }
+
+    public void testReadingOrderAndCase()
+    {
+        ScreenTextIndex index = new ScreenTextIndex( null, false, WORDS );
+        List<OcrWord> found = index.lookup( "Save", false, 0 );
+        assertEquals( 2, found.size() );
+        assertEquals( 10, found.get( 0 ).box.y );
+        assertEquals( 40, found.get( 1 ).box.y );
+        assertTrue( index.lookup( "save", false, 0 ).isEmpty() );
+        assertEquals( 2, index.lookup( "SAVE", true, 0 ).size() );
+    }
+
+    public void testFuzzyLookup()
+    {
+        ScreenTextIndex index = new ScreenTextIndex( null, false, WORDS );
+        assertTrue( index.lookup( "Sane a", false, 1 ).isEmpty() );
+        assertEquals( 1, index.lookup( "Sane a", false, 2 ).size() );
+        assertEquals( 1, ScreenTextIndex.distance( "kitten", "sitten", 3 ) );
+        assertEquals( 3, ScreenTextIndex.distance( "kitten", "sitting", 3 ) );
+        assertEquals( 2, ScreenTextIndex.distance( "kitten", "sitting", 1 ) );
+    }
+
+    public void testUpdateReplacesWordsInChangedAreas()
+    {
+        ScreenTextIndex index = new ScreenTextIndex( null, false, WORDS );
+        Rectangle area = index.cover( new Rectangle( 20, 38, 5, 5 ) );
+        assertEquals( new Rectangle( 10, 38, 40, 14 ), area );
+        List<OcrWord> fresh = Collections.singletonList( new OcrWord( "Open", new Rectangle( 10, 40, 40, 12 ), 0.9D ) );
+        ScreenTextIndex updated = index.update( null, Collections.singletonList( area ), fresh );
+        assertEquals( 4, updated.size() );
+        assertEquals( 1, updated.lookup( "Save", false, 0 ).size() );
+        assertEquals( 1, updated.lookup( "Open", false, 0 ).size() );
+    }
+}
@@ -0,0 +1,75 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the background screenshot writer.
+ */
+public class ScreenshotWriterTest
+    extends TestCase
+{
+    private File dir;
+
+    protected void setUp()
+    {
+        dir = new File( System.getProperty( "java.io.tmpdir" ), "scrshots-" + System.nanoTime() );
+    }
+
+    protected void tearDown()
+    {
+        File[] files = dir.listFiles();
+        if ( files != null ) {
+            for ( File f : files ) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    public void testSameSecondDoesNotOverwrite() throws Exception
+    {
+        ScreenshotWriter writer = new ScreenshotWriter( 1024L * 1024 );
+        BufferedImage img = new BufferedImage( 32, 24, BufferedImage.TYPE_INT_RGB );
+        File first = writer.write( img, dir );
+        File second = writer.write( img, dir );
+        writer.flush();
+        assertFalse( first.equals( second ) );
+        assertEquals( 32, ImageIO.read( first ).getWidth() );
+        assertEquals( 24, ImageIO.read( second ).getHeight() );
+    }
+
+    public void testRetentionDeletesOldest() throws Exception
+    {
+        ScreenshotWriter writer = new ScreenshotWriter( 1024L * 1024 );
+        writer.setFormat( "jpg", 0.8F );
+        writer.setRetention( 2, 0L );
+        BufferedImage img = new BufferedImage( 16, 16, BufferedImage.TYPE_INT_ARGB );
+        File first = writer.write( img, dir );
+        writer.write( img, dir );
+        File last = writer.write( img, dir );
+        writer.flush();
+        assertTrue( last.getName().endsWith( ".jpg" ) );
+        assertFalse( first.exists() );
+        assertEquals( 2, dir.listFiles().length );
+    }
+
+    public void testFailedEncodingDeletesTheReservedFile() throws Exception
+    {
+        ScreenshotWriter writer = new ScreenshotWriter( 1024L * 1024 );
+        // the WBMP writer takes bilevel images only
+        writer.setFormat( "wbmp", -1.0F );
+        File failed = writer.write( new BufferedImage( 16, 16, BufferedImage.TYPE_INT_RGB ), dir );
+        writer.flush();
+        assertTrue( failed.getName().endsWith( ".wbmp" ) );
+        assertFalse( failed.exists() );
+        assertTrue( writer.toString(), writer.toString().contains( "failed 1" ) );
+        File written = writer.write( new BufferedImage( 16, 16, BufferedImage.TYPE_BYTE_BINARY ), dir );
+        writer.flush();
+        assertTrue( written.exists() );
+    }
+}
@@ -0,0 +1,36 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the per-thread binding of the screen sessions.
+ */
+public class SessionTest
+    extends TestCase
+{
+    public void testSettingsStayInTheBoundSession() throws Exception
+    {
+        final SikuliKeywords keywords =
+            new SikuliKeywords( new InMemoryScreenSource( new BufferedImage( 40, 30, BufferedImage.TYPE_INT_RGB ) ) );
+        final Session primary = keywords.sessionFor( 0 );
+        final double defaultSimilarity = primary.minSimilarity;
+        Thread worker = new Thread( new Runnable() {
+            public void run() {
+                keywords.useScreen( "1" );
+                keywords.setMinSimilarity( "0.95" );
+                keywords.setFindObjectTimeout( "3.0" );
+            }
+        } );
+        worker.start();
+        worker.join();
+        Session second = keywords.sessionFor( 1 );
+        assertNotSame( primary, second );
+        assertEquals( 1, second.screenIndex );
+        assertEquals( 0.95D, second.minSimilarity, 1e-9 );
+        assertEquals( 3.0D, second.waitTimeout, 1e-9 );
+        assertEquals( defaultSimilarity, primary.minSimilarity, 1e-9 );
+        assertEquals( 15.0D, primary.waitTimeout, 1e-9 );
+    }
+}
@@ -0,0 +1,77 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the wait until the screen has settled.
+ */
+public class SettleDetectorTest
+    extends TestCase
+{
+    /* A square blinking at 200,200 for the given number of captures, then the screen stays */
+    private static class BlinkingScreen
+        extends InMemoryScreenSource
+    {
+        private int blinks;
+
+        BlinkingScreen( int blinks )
+        {
+            super( WaitEngineTest.screen() );
+            this.blinks = blinks;
+        }
+
+        @Override
+        public synchronized BufferedImage capture()
+        {
+            if ( blinks > 0 ) {
+                setFrame( ( blinks-- % 2 == 0 ) ? WaitEngineTest.screen( 200, 200 ) : WaitEngineTest.screen() );
+            }
+            return super.capture();
+        }
+    }
+
+    private static SettleDetector detector( InMemoryScreenSource source )
+    {
+        FrameCache frames = new FrameCache( source );
+        frames.setMaxAge( 0 );
+        return new SettleDetector( frames );
+    }
+
+    public void testStableScreenEndsTheWaitEarly() throws Exception
+    {
+        SettleDetector settle = detector( new InMemoryScreenSource( WaitEngineTest.screen( 10, 10 ) ) );
+        long waited = settle.settle( null, 100, 3000 );
+        assertTrue( waited + " ms", waited >= 100 && waited < 1500 );
+        String stats = settle.toString();
+        assertTrue( stats, stats.contains( "1 waits, 0 reached the upper bound" ) );
+    }
+
+    public void testChangingScreenReachesTheUpperBound() throws Exception
+    {
+        SettleDetector settle = detector( new BlinkingScreen( Integer.MAX_VALUE ) );
+        long waited = settle.settle( null, 100, 400 );
+        assertTrue( waited + " ms", waited >= 400 );
+        assertTrue( settle.toString(), settle.toString().contains( "1 reached the upper bound" ) );
+    }
+
+    public void testStableTimeCountsFromTheLastChange() throws Exception
+    {
+        // the screen changes on the first five captures, some 200 ms at a poll every 40 ms
+        SettleDetector settle = detector( new BlinkingScreen( 5 ) );
+        long waited = settle.settle( null, 100, 3000 );
+        assertTrue( waited + " ms", waited >= 4 * 40 + 100 && waited < 1500 );
+    }
+
+    public void testChangesOutsideTheAreaAreIgnored() throws Exception
+    {
+        SettleDetector settle = detector( new BlinkingScreen( Integer.MAX_VALUE ) );
+        long waited = settle.settle( new Rectangle( 0, 0, 64, 64 ), 100, 3000 );
+        assertTrue( waited + " ms", waited >= 100 && waited < 1500 );
+        waited = settle.settle( new Rectangle( 190, 190, 20, 20 ), 100, 400 );
+        assertTrue( waited + " ms", waited >= 400 );
+        assertTrue( settle.toString(), settle.toString().contains( "2 waits, 1 reached the upper bound" ) );
+    }
+}
@@ -0,0 +1,107 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the lazy subsystem initialization and the warm-up.
+ */
+public class StartupTest
+    extends TestCase
+{
+    /* Counts the initializations instead of loading the native libraries */
+    private static class CountingStartup
+        extends Startup
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean fail;
+
+        @Override
+        String initialize( Subsystem subsystem ) throws Exception
+        {
+            calls.incrementAndGet();
+            Thread.sleep( 20 );
+            if ( fail ) {
+                throw new java.io.IOException( "no tessdata" );
+            }
+            return null;
+        }
+    }
+
+    public void testInitializedOnceByConcurrentCallers() throws Exception
+    {
+        final CountingStartup startup = new CountingStartup();
+        Thread[] threads = new Thread[4];
+        for ( int i = 0; i < threads.length; i++ ) {
+            threads[i] = new Thread( new Runnable() {
+                public void run() {
+                    startup.ensure( Startup.Subsystem.MATCHER );
+                }
+            } );
+            threads[i].start();
+        }
+        for ( Thread t : threads ) {
+            t.join();
+        }
+        assertEquals( 1, startup.calls.get() );
+        assertTrue( startup.isReady( Startup.Subsystem.MATCHER ) );
+        assertFalse( startup.isReady( Startup.Subsystem.OCR ) );
+        assertTrue( startup.getMillis( Startup.Subsystem.MATCHER ) >= 10 );
+        assertEquals( -1L, startup.getMillis( Startup.Subsystem.OCR ) );
+        String report = startup.toString();
+        assertTrue( report, report.contains( "OpenCV matcher: " ) );
+        assertTrue( report, report.contains( "on first use" ) );
+        assertTrue( report, report.contains( "OCR: not loaded" ) );
+    }
+
+    public void testFailedInitializationIsRetried() throws Exception
+    {
+        CountingStartup startup = new CountingStartup();
+        startup.fail = true;
+        try {
+            startup.ensure( Startup.Subsystem.OCR, "WarmUp" );
+            fail( "the initialization did not fail" );
+        } catch ( IllegalStateException e ) {
+            assertTrue( e.getMessage().contains( "OCR" ) );
+        }
+        assertFalse( startup.isReady( Startup.Subsystem.OCR ) );
+        assertTrue( startup.toString().contains( "failed, java.io.IOException: no tessdata" ) );
+        startup.fail = false;
+        startup.ensure( Startup.Subsystem.OCR, "WarmUp" );
+        assertTrue( startup.isReady( Startup.Subsystem.OCR ) );
+        assertEquals( 2, startup.calls.get() );
+        assertTrue( startup.toString().contains( "on WarmUp" ) );
+    }
+
+    public void testWarmUpLoadsTemplatesOnly() throws Exception
+    {
+        File dir = File.createTempFile( "templates", "" );
+        dir.delete();
+        dir.mkdir();
+        try {
+            for ( int i = 0; i < 5; i++ ) {
+                ImageIO.write( new BufferedImage( 8, 8, BufferedImage.TYPE_INT_RGB ), "png", new File( dir, i + ".png" ) );
+            }
+            SikuliKeywords keywords =
+                new SikuliKeywords( new InMemoryScreenSource( new BufferedImage( 40, 30, BufferedImage.TYPE_INT_RGB ) ) );
+            String report = keywords.warmUp( new String[] { dir.getPath() } );
+            assertTrue( report, report.contains( "templates: 5 images" ) );
+            try {
+                keywords.warmUp( new String[] { new File( dir, "missing.png" ).getPath() } );
+                fail( "a missing template was loaded" );
+            } catch ( java.io.FileNotFoundException e ) {
+                assertTrue( e.getMessage().contains( "missing.png" ) );
+            }
+        } finally {
+            for ( File f : dir.listFiles() ) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+}
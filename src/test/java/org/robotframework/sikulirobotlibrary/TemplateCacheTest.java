@@ -0,0 +1,148 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the template image cache.
+ */
+public class TemplateCacheTest
+    extends TestCase
+{
+    private File dir;
+
+    /* The image path of Sikuli needs its native runtime, here the test directory stands for it */
+    private class ImagePathCache
+        extends TemplateCache
+    {
+        ImagePathCache( long maxBytes )
+        {
+            super( maxBytes );
+        }
+
+        ImagePathCache( long maxBytes, long textRecheckMillis )
+        {
+            super( maxBytes, textRecheckMillis );
+        }
+
+        @Override
+        File lookup( String name )
+        {
+            File file = new File( dir, name );
+            return file.isFile() ? file : null;
+        }
+    }
+
+    protected void setUp() throws Exception
+    {
+        dir = File.createTempFile( "templates", "" );
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    protected void tearDown()
+    {
+        for ( File f : dir.listFiles() ) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private File writeImage( String name, int size ) throws Exception
+    {
+        File file = new File( dir, name );
+        ImageIO.write( new BufferedImage( size, size, BufferedImage.TYPE_INT_RGB ), "png", file );
+        return file;
+    }
+
+    public void testClassification() throws Exception
+    {
+        File file = writeImage( "ok.png", 4 );
+        TemplateCache cache = new ImagePathCache( 1024 * 1024 );
+        assertEquals( TemplateCache.Kind.IMAGE, cache.classify( file.getPath() ) );
+        assertEquals( TemplateCache.Kind.IMAGE, cache.classify( file.getPath().replace( ".png", "" ) ) );
+        assertEquals( TemplateCache.Kind.INDEXED, cache.classify( file.getPath() + "[2]" ) );
+        assertEquals( TemplateCache.Kind.TEXT, cache.classify( "Some text" ) );
+        assertNull( cache.get( "Some text" ) );
+    }
+
+    public void testBareNameFromImagePath() throws Exception
+    {
+        writeImage( "button.png", 6 );
+        TemplateCache cache = new ImagePathCache( 1024 * 1024 );
+        assertEquals( TemplateCache.Kind.IMAGE, cache.classify( "button" ) );
+        assertEquals( TemplateCache.Kind.IMAGE, cache.classify( "button.png" ) );
+        assertEquals( 6, cache.get( "button" ).getWidth() );
+        assertEquals( TemplateCache.Kind.TEXT, cache.classify( "button.jpg" ) );
+    }
+
+    public void testTemplateSavedDuringTheRun() throws Exception
+    {
+        TemplateCache cache = new ImagePathCache( 1024 * 1024, 50 );
+        File file = new File( dir, "saved.png" );
+        assertEquals( TemplateCache.Kind.TEXT, cache.classify( file.getPath() ) );
+        writeImage( "saved.png", 5 );
+        // still text until the recheck is due
+        assertEquals( TemplateCache.Kind.TEXT, cache.classify( file.getPath() ) );
+        Thread.sleep( 60 );
+        assertEquals( TemplateCache.Kind.IMAGE, cache.classify( file.getPath() ) );
+        assertEquals( 5, cache.get( file.getPath() ).getWidth() );
+        file.delete();
+        assertEquals( TemplateCache.Kind.TEXT, cache.classify( file.getPath() ) );
+        assertNull( cache.get( file.getPath() ) );
+    }
+
+    public void testClassificationsAreBounded() throws Exception
+    {
+        TemplateCache cache = new ImagePathCache( 1024 * 1024 );
+        for ( int i = 0; i < TemplateCache.MAX_CLASSIFIED + 100; i++ ) {
+            cache.classify( "text " + i );
+        }
+        assertTrue( cache.toString(), cache.toString().endsWith( "classified arguments " + TemplateCache.MAX_CLASSIFIED ) );
+    }
+
+    public void testDecodedImageIsReused() throws Exception
+    {
+        File file = writeImage( "ok.png", 4 );
+        TemplateCache cache = new ImagePathCache( 1024 * 1024 );
+        BufferedImage first = cache.get( file.getPath() );
+        assertSame( first, cache.get( file.getPath() ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+    }
+
+    public void testModifiedFileIsReloaded() throws Exception
+    {
+        File file = writeImage( "ok.png", 4 );
+        TemplateCache cache = new ImagePathCache( 1024 * 1024 );
+        BufferedImage first = cache.get( file.getPath() );
+        writeImage( "ok.png", 8 );
+        file.setLastModified( file.lastModified() + 2000 );
+        BufferedImage second = cache.get( file.getPath() );
+        assertNotSame( first, second );
+        assertEquals( 8, second.getWidth() );
+        assertEquals( 1, cache.size() );
+    }
+
+    public void testLeastRecentlyUsedImageIsEvicted() throws Exception
+    {
+        File a = writeImage( "a.png", 10 );
+        File b = writeImage( "b.png", 10 );
+        File c = writeImage( "c.png", 10 );
+        TemplateCache cache = new ImagePathCache( 2 * 4 * 10 * 10 );
+        cache.get( a.getPath() );
+        cache.get( b.getPath() );
+        cache.get( a.getPath() );
+        cache.get( c.getPath() );
+        assertEquals( 2, cache.size() );
+        assertEquals( 800, cache.getUsedBytes() );
+        cache.get( a.getPath() );
+        assertEquals( 2, cache.getHits() );
+        cache.get( b.getPath() );
+        assertEquals( 4, cache.getMisses() );
+    }
+}
@@ -0,0 +1,64 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the tile based frame differ.
+ */
+public class TileDifferTest
+    extends TestCase
+{
+    private static final Rectangle SCREEN = new Rectangle( 0, 0, 640, 480 );
+
+    private BufferedImage frame()
+    {
+        return new BufferedImage( SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_RGB );
+    }
+
+    public void testFirstFrameIsDirty()
+    {
+        TileDiffer differ = new TileDiffer();
+        List<Rectangle> dirty = differ.update( frame(), SCREEN );
+        assertEquals( 1, dirty.size() );
+        assertEquals( SCREEN, dirty.get( 0 ) );
+    }
+
+    public void testUnchangedFrameIsClean()
+    {
+        TileDiffer differ = new TileDiffer();
+        differ.update( frame(), SCREEN );
+        assertTrue( differ.update( frame(), SCREEN ).isEmpty() );
+    }
+
+    public void testChangedPixelsAreGroupedByTiles()
+    {
+        TileDiffer differ = new TileDiffer();
+        differ.update( frame(), SCREEN );
+        BufferedImage img = frame();
+        img.setRGB( 10, 10, 0xffffff );
+        img.setRGB( 70, 10, 0xffffff );
+        img.setRGB( 600, 400, 0xffffff );
+        List<Rectangle> dirty = differ.update( img, SCREEN );
+        assertEquals( 2, dirty.size() );
+        assertTrue( dirty.contains( new Rectangle( 0, 0, 128, 64 ) ) );
+        assertTrue( dirty.contains( new Rectangle( 576, 384, 64, 64 ) ) );
+    }
+
+    public void testExpandGrowsClipsAndMerges()
+    {
+        List<Rectangle> dirty = new ArrayList<Rectangle>();
+        dirty.add( new Rectangle( 0, 0, 64, 64 ) );
+        dirty.add( new Rectangle( 128, 0, 64, 64 ) );
+        dirty.add( new Rectangle( 512, 384, 64, 64 ) );
+        List<Rectangle> areas = TileDiffer.expand( dirty, new Dimension( 40, 20 ), SCREEN );
+        assertEquals( 2, areas.size() );
+        assertTrue( areas.contains( new Rectangle( 0, 0, 232, 84 ) ) );
+        assertTrue( areas.contains( new Rectangle( 472, 364, 144, 104 ) ) );
+    }
+}
@@ -0,0 +1,272 @@
+package org.robotframework.sikulirobotlibrary;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sikuli.script.ScreenImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the polling loops of the find and vanish keywords.
+ */
+public class WaitEngineTest
+    extends TestCase
+{
+    private static final int SIZE = 256;
+    private static final int SQUARE = 8;
+
+    /* Gives the frames of the script one per capture, the last one stays on the screen */
+    private static class ScriptedScreen
+        extends InMemoryScreenSource
+    {
+        private final BufferedImage[] script;
+        private int next = 1;
+
+        ScriptedScreen( BufferedImage... script )
+        {
+            super( script[0] );
+            this.script = script;
+        }
+
+        @Override
+        public synchronized BufferedImage capture()
+        {
+            BufferedImage frame = super.capture();
+            if ( next < script.length ) {
+                setFrame( script[next++] );
+            }
+            return frame;
+        }
+    }
+
+    /* Keeps the time of every capture */
+    private static class TimedScreen
+        extends InMemoryScreenSource
+    {
+        final List<Long> nanos = new ArrayList<Long>();
+
+        TimedScreen( BufferedImage frame )
+        {
+            super( frame );
+        }
+
+        @Override
+        public synchronized BufferedImage capture()
+        {
+            nanos.add( System.nanoTime() );
+            return super.capture();
+        }
+    }
+
+    /* Finds the black squares of the frame in reading order, within the area if given */
+    private static class Squares
+        implements WaitEngine.Matcher<Rectangle>
+    {
+        final List<Rectangle> areas = new ArrayList<Rectangle>();
+        final int select;
+
+        Squares( int select )
+        {
+            this.select = select;
+        }
+
+        public Rectangle match( ScreenImage frame, Rectangle area )
+        {
+            areas.add( area );
+            List<Rectangle> found = squares( frame.getImage(), area );
+            return ( found.size() > select ) ? found.get( select ) : null;
+        }
+    }
+
+    /* A white screen with black squares at the given top-left corners */
+    static BufferedImage screen( int... xy )
+    {
+        BufferedImage img = new BufferedImage( SIZE, SIZE, BufferedImage.TYPE_INT_RGB );
+        Graphics2D g = img.createGraphics();
+        g.setColor( Color.WHITE );
+        g.fillRect( 0, 0, SIZE, SIZE );
+        g.setColor( Color.BLACK );
+        for ( int i = 0; i < xy.length; i += 2 ) {
+            g.fillRect( xy[i], xy[i + 1], SQUARE, SQUARE );
+        }
+        g.dispose();
+        return img;
+    }
+
+    static List<Rectangle> squares( BufferedImage img, Rectangle area )
+    {
+        Rectangle r = ( area == null ) ? new Rectangle( 0, 0, SIZE, SIZE ) : area;
+        List<Rectangle> found = new ArrayList<Rectangle>();
+        for ( int y = r.y; y < r.y + r.height; y++ ) {
+            for ( int x = r.x; x < r.x + r.width; x++ ) {
+                boolean corner = ( img.getRGB( x, y ) & 0xffffff ) == 0
+                    && ( x == 0 || ( img.getRGB( x - 1, y ) & 0xffffff ) != 0 )
+                    && ( y == 0 || ( img.getRGB( x, y - 1 ) & 0xffffff ) != 0 );
+                if ( corner ) {
+                    found.add( new Rectangle( x, y, SQUARE, SQUARE ) );
+                }
+            }
+        }
+        return found;
+    }
+
+    static WaitEngine engine( InMemoryScreenSource source, long initialMillis, long maxMillis )
+    {
+        FrameCache frames = new FrameCache( source );
+        frames.setMaxAge( 0 );
+        WaitEngine engine = new WaitEngine( frames );
+        engine.setDelays( initialMillis, maxMillis );
+        return engine;
+    }
+
+    /* Squares at the given tiles, column and row pairs, so only those tiles differ from a white screen */
+    static BufferedImage tiles( int... colRow )
+    {
+        int[] xy = new int[colRow.length];
+        for ( int i = 0; i < colRow.length; i++ ) {
+            xy[i] = 10 + colRow[i] * TileDiffer.TILE;
+        }
+        return screen( xy );
+    }
+
+    public void testPollingBacksOffToTheCap() throws Exception
+    {
+        TimedScreen source = new TimedScreen( screen( 10, 10 ) );
+        WaitEngine engine = engine( source, 10, 40 );
+        assertNull( engine.waitFor( new Squares( 1 ), null, 0.3D ) );
+        // the pauses double from 10 ms up to 40 ms, a fixed 10 ms pause would poll 30 times
+        long[] pauses = { 10, 20, 40, 40, 40 };
+        assertTrue( engine.toString(), source.nanos.size() > pauses.length + 1 );
+        assertTrue( engine.toString(), engine.getPolls() <= 10 );
+        for ( int i = 0; i < pauses.length; i++ ) {
+            long gap = ( source.nanos.get( i + 1 ) - source.nanos.get( i ) ) / 1000000L;
+            assertTrue( "pause " + i + ": " + gap + " ms", gap >= pauses[i] - 1 );
+        }
+    }
+
+    public void testUnchangedPollsAreNotSearched() throws Exception
+    {
+        WaitEngine engine = engine( new InMemoryScreenSource( screen( 10, 10 ) ), 5, 10 );
+        Squares missing = new Squares( 1 );
+        assertNull( engine.waitFor( missing, new Dimension( SQUARE, SQUARE ), 0.1D ) );
+        assertTrue( engine.toString(), engine.getPolls() > 2 );
+        assertEquals( engine.getPolls() - 1, engine.getSkippedPolls() );
+        // only the first frame is searched
+        assertEquals( 1, missing.areas.size() );
+        assertNull( missing.areas.get( 0 ) );
+    }
+
+    public void testOnlyTheChangedTilesAreSearched() throws Exception
+    {
+        ScriptedScreen source = new ScriptedScreen( screen(), screen(), screen( 100, 100 ) );
+        WaitEngine engine = engine( source, 5, 5 );
+        Squares object = new Squares( 0 );
+        assertEquals( new Rectangle( 100, 100, SQUARE, SQUARE ),
+                      engine.waitFor( object, new Dimension( SQUARE, SQUARE ), 5.0D ) );
+        assertEquals( 1, engine.getSkippedPolls() );
+        assertEquals( 2, object.areas.size() );
+        // the changed tile grown by the size of the object
+        int t = TileDiffer.TILE;
+        assertEquals( new Rectangle( t - SQUARE, t - SQUARE, t + 2 * SQUARE, t + 2 * SQUARE ), object.areas.get( 1 ) );
+        assertTrue( engine.toString(), engine.toString().contains( "partial searches 1," ) );
+    }
+
+    public void testWholeFrameIsSearchedWhenHalfTheScreenChanged() throws Exception
+    {
+        // six changed tiles grown by the margin are 136 x 200 pixels, below half of the 256 x 256 screen
+        ScriptedScreen source = new ScriptedScreen( screen(), tiles( 0, 0, 1, 0, 0, 1, 1, 1, 0, 2, 1, 2 ) );
+        WaitEngine engine = engine( source, 5, 5 );
+        Squares object = new Squares( 5 );
+        assertNotNull( engine.waitFor( object, new Dimension( SQUARE, SQUARE ), 5.0D ) );
+        assertEquals( new Rectangle( 0, 0, 2 * TileDiffer.TILE + SQUARE, 3 * TileDiffer.TILE + SQUARE ),
+                      object.areas.get( 1 ) );
+        // nine tiles grown by the margin are 200 x 200 pixels, above the half
+        source = new ScriptedScreen( screen(), tiles( 0, 0, 1, 0, 2, 0, 0, 1, 1, 1, 2, 1, 0, 2, 1, 2, 2, 2 ) );
+        engine = engine( source, 5, 5 );
+        object = new Squares( 8 );
+        assertNotNull( engine.waitFor( object, new Dimension( SQUARE, SQUARE ), 5.0D ) );
+        assertEquals( 2, object.areas.size() );
+        assertNull( object.areas.get( 1 ) );
+        assertTrue( engine.toString(), engine.toString().contains( "partial searches 0," ) );
+    }
+
+    public void testIndexedVanishAfterAChangeElsewhere() throws Exception
+    {
+        // the second square in reading order is gone once the first one is removed,
+        // although nothing changed where the second square was seen
+        ScriptedScreen source = new ScriptedScreen( screen( 10, 10, 200, 200 ), screen( 10, 10, 200, 200 ),
+                                                    screen( 200, 200 ) );
+        WaitEngine engine = engine( source, 5, 5 );
+        Squares second = new Squares( 1 );
+        long vanished = engine.waitVanish( second, null, false, 5.0D );
+        assertTrue( engine.toString(), vanished >= 0 );
+        assertEquals( 3, engine.getPolls() );
+        assertEquals( 1, engine.getSkippedPolls() );
+        assertEquals( 2, second.areas.size() );
+        assertNull( second.areas.get( 1 ) );
+    }
+
+    public void testLocalVanishSkipsChangesElsewhere() throws Exception
+    {
+        ScriptedScreen source = new ScriptedScreen( screen( 200, 200 ), screen( 10, 10, 200, 200 ), screen() );
+        WaitEngine engine = engine( source, 5, 5 );
+        Squares object = new Squares( 0 ) {
+            @Override
+            public Rectangle match( ScreenImage frame, Rectangle area )
+            {
+                Rectangle found = super.match( frame, area );
+                // the square at 10,10 is some other object
+                return ( found != null && found.x == 200 ) ? found : null;
+            }
+        };
+        long vanished = engine.waitVanish( object, new Rectangle( 200, 200, SQUARE, SQUARE ), true, 5.0D );
+        assertTrue( engine.toString(), vanished >= 0 );
+        assertEquals( 3, engine.getPolls() );
+        assertEquals( 1, engine.getSkippedPolls() );
+        // around the hint, around the place seen when it changed, and the whole frame
+        assertEquals( 3, object.areas.size() );
+        assertNotNull( object.areas.get( 0 ) );
+        assertTrue( object.areas.get( 1 ).contains( new Rectangle( 200, 200, SQUARE, SQUARE ) ) );
+        assertNull( object.areas.get( 2 ) );
+    }
+
+    public void testVanishTimeout() throws Exception
+    {
+        WaitEngine engine = engine( new InMemoryScreenSource( screen( 10, 10, 200, 200 ) ), 5, 20 );
+        long t0 = System.currentTimeMillis();
+        assertEquals( -1L, engine.waitVanish( new Squares( 1 ), null, false, 0.2D ) );
+        assertTrue( System.currentTimeMillis() - t0 >= 200 );
+        assertEquals( engine.getPolls() - 1, engine.getSkippedPolls() );
+    }
+
+    public void testTraceKeepsTheBestScoreOfEachPoll() throws Exception
+    {
+        ScriptedScreen source = new ScriptedScreen( screen( 10, 10 ), screen( 10, 10 ), screen( 10, 10, 100, 100 ) );
+        final WaitEngine engine = engine( source, 5, 5 );
+        final double[] scores = { 0.3D, 0.55D, 0.4D };
+        WaitEngine.Matcher<Rectangle> never = new WaitEngine.Matcher<Rectangle>() {
+            private int calls;
+            public Rectangle match( ScreenImage frame, Rectangle area ) {
+                // the second search reports two candidates, the better one counts
+                engine.score( scores[Math.min( calls, 1 )] );
+                if ( calls++ == 1 ) {
+                    engine.score( scores[2] );
+                }
+                return null;
+            }
+        };
+        assertNull( engine.waitFor( never, null, 0.1D ) );
+        List<String> trace = engine.getTrace();
+        assertEquals( engine.getPolls(), trace.size() );
+        assertTrue( trace.get( 0 ), trace.get( 0 ).endsWith( ": best score 0.300" ) );
+        assertTrue( trace.get( 1 ), trace.get( 1 ).endsWith( ": unchanged, not searched" ) );
+        assertTrue( trace.get( 2 ), trace.get( 2 ).endsWith( ": best score 0.550" ) );
+        assertTrue( trace.get( 2 ), trace.get( 2 ).startsWith( "Poll frame -" ) );
+    }
+}